@@ -248,6 +248,8 @@ public class TLC {
      *  o -lncheck: Check liveness properties at different times
      *					of model checking.
      *		Defaults to false increasing the overall model checking time.
+     *		"onthefly" checks the cycles closed since the previous check
+     *		only, which keeps each check (and the final one) short.
      *  o -nowarning: disable all the warnings
      *		Defaults to report warnings if not specified
      *  o -fp num: use the num'th irreducible polynomial from the list
@@ -383,6 +385,11 @@ public class TLC {
 
         boolean asJson = false;
         boolean generateGo = false;
+        boolean offHeapNetwork = false;
+        boolean incrementalPathCover = false;
+        boolean binaryDump = false;
+        boolean compressDump = false;
+        boolean valueDictionary = false;
 
 		boolean generateTESpec = true;
 		boolean generateTESpecBinaryTrace = true;
@@ -561,11 +568,17 @@ public class TLC {
                     snapshot = dotArgs.contains("snapshot");
                     stuttering = dotArgs.contains("stuttering");
                     dumpFile = getDumpFile(args[index++], ".dot");
-                } else if (((index + 1) < args.length) && args[index].startsWith("json")) {
+                } else if (((index + 1) < args.length)
+                        && (args[index].startsWith("json") || args[index].startsWith("binary"))) {
                     final String jsonArgs = args[index].toLowerCase();
                     index++;
                     asJson = true;
+                    binaryDump = jsonArgs.startsWith("binary");
+                    compressDump = jsonArgs.contains("gzip");
+                    valueDictionary = jsonArgs.contains("dict");
                     generateGo = jsonArgs.contains("go");
+                    offHeapNetwork = jsonArgs.contains("offheap");
+                    incrementalPathCover = jsonArgs.contains("incremental");
                     dumpFile = args[index++];
                 } else if (index < args.length) {
 					dumpFile = getDumpFile(args[index++], ".dump");
@@ -1073,7 +1086,8 @@ public class TLC {
 			}
 			try {
 				if (asJson) {
-                    this.stateWriter = new JsonStateWriter(dumpFile, generateGo);
+                    this.stateWriter = new JsonStateWriter(dumpFile, generateGo, offHeapNetwork ? metadir : null,
+                            incrementalPathCover, binaryDump, compressDump, valueDictionary);
                 } else if (asDot) {
                     this.stateWriter = new DotStateWriter(dumpFile, colorize, actionLabels, snapshot, stuttering);
                 } else {
@@ -66,6 +66,17 @@ public class TLCGlobals
 		return lnCheck.startsWith("seq");
 	}
 
+	/**
+	 * @return true iff liveness is checked incrementally, i.e. whenever a
+	 *         transition has closed a new cycle in the behavior graph, instead
+	 *         of when the behavior graph has grown by
+	 *         {@link TLCGlobals#livenessThreshold} (see
+	 *         tlc2.tool.liveness.AbstractDiskGraph#addSeedNode(long, int)).
+	 */
+	public static boolean doOnTheFlyLiveness() {
+		return lnCheck.equals("onthefly") || lnCheck.equals("seqonthefly");
+	}
+
 	public synchronized static void setNumWorkers(int n)
     {
         numWorkers = n;
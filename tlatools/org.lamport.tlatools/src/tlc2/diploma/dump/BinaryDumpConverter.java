@@ -0,0 +1,152 @@
+package tlc2.diploma.dump;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+import tlc2.module.Json;
+import tlc2.value.IValue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Converts a dump written with -dump binary into the layout written by -dump json:
+//   java tlc2.diploma.dump.BinaryDumpConverter <binary dump dir> <json dump dir>
+public class BinaryDumpConverter {
+    private static final int FLUSH_PERIOD = 128;
+
+    private final Path sourceDir;
+    private final Path targetDir;
+    private final JSONObject meta;
+    private final boolean compressed;
+    private final List<String> variables;
+
+    public BinaryDumpConverter(Path sourceDir, Path targetDir) throws IOException {
+        this.sourceDir = sourceDir;
+        this.targetDir = targetDir;
+        this.meta = JSON.parseObject(Files.readString(sourceDir.resolve("meta.json")));
+        if (!"binary".equals(meta.getString("format"))) {
+            throw new IOException(sourceDir + " does not contain a binary dump");
+        }
+        this.compressed = meta.getBooleanValue("compressed");
+        this.variables = meta.getList("state_variables", String.class);
+        BinaryRecordReader.registerModelValues(meta.getList("model_values", String.class));
+    }
+
+    private interface RecordConverter {
+        void convert(BinaryRecordReader reader, JSONWriter jsonWriter) throws IOException;
+    }
+
+    private String toJsonFileName(String fileName) {
+        return fileName.replaceAll("\\.bin(\\.gz)?$", ".json");
+    }
+
+    private void convertFile(String fileName, boolean sparse, RecordConverter converter) throws IOException {
+        Path targetFile = targetDir.resolve(toJsonFileName(fileName));
+        Files.createDirectories(targetFile.getParent());
+        try (BinaryRecordReader reader = new BinaryRecordReader(sourceDir.resolve(fileName), compressed);
+             BufferedWriter writer = Files.newBufferedWriter(targetFile);
+             JSONWriter jsonWriter = JSONWriter.ofUTF8()) {
+            if (sparse) {
+                jsonWriter.startObject();
+            } else {
+                jsonWriter.startArray();
+            }
+            for (int i = 0; reader.nextRecord(); i++) {
+                if (!sparse && i > 0) {
+                    jsonWriter.writeComma();
+                }
+                converter.convert(reader, jsonWriter);
+                if (i % FLUSH_PERIOD == FLUSH_PERIOD - 1) {
+                    jsonWriter.flushTo(writer);
+                }
+            }
+            if (sparse) {
+                jsonWriter.endObject();
+            } else {
+                jsonWriter.endArray();
+            }
+            jsonWriter.flushTo(writer);
+        }
+    }
+
+    private void convertState(BinaryRecordReader reader, JSONWriter jsonWriter) throws IOException {
+        jsonWriter.writeName(Integer.toString(reader.readVarInt()));
+        jsonWriter.writeColon();
+        jsonWriter.startObject();
+        int count = reader.readVarInt();
+        for (int i = 0; i < count; i++) {
+            jsonWriter.writeName(variables.get(i));
+            jsonWriter.writeColon();
+            jsonWriter.writeAny(toJson(reader.readValue()));
+        }
+        jsonWriter.endObject();
+    }
+
+    private void convertAction(BinaryRecordReader reader, JSONWriter jsonWriter) throws IOException {
+        jsonWriter.writeName(Integer.toString(reader.readVarInt()));
+        jsonWriter.writeColon();
+        jsonWriter.startArray();
+        jsonWriter.writeInt32(reader.readVarInt());
+        int count = reader.readVarInt();
+        for (int i = 0; i < count; i++) {
+            jsonWriter.writeComma();
+            jsonWriter.writeAny(toJson(reader.readValue()));
+        }
+        jsonWriter.endArray();
+    }
+
+    private void convertExecution(BinaryRecordReader reader, JSONWriter jsonWriter) throws IOException {
+        jsonWriter.startArray();
+        int length = reader.readVarInt();
+        if (length > 0) {
+            jsonWriter.writeInt32(reader.readVarInt());
+        }
+        for (int i = 0; i < 2 * length; i++) {
+            jsonWriter.writeComma();
+            jsonWriter.writeInt32(reader.readVarInt());
+        }
+        jsonWriter.endArray();
+    }
+
+    private static Object toJson(IValue value) throws IOException {
+        return Json.getNode(value);
+    }
+
+    public void convert() throws IOException {
+        for (String fileName : meta.getList("state_files", String.class)) {
+            convertFile(fileName, true, this::convertState);
+        }
+        for (String fileName : meta.getList("action_files", String.class)) {
+            convertFile(fileName, true, this::convertAction);
+        }
+        for (String fileName : meta.getList("execution_files", String.class)) {
+            convertFile(fileName, false, this::convertExecution);
+        }
+
+        meta.put("format", "json");
+        meta.remove("compressed");
+        meta.remove("state_variables");
+        meta.remove("model_values");
+        for (String key : List.of("state_files", "action_files", "execution_files")) {
+            JSONArray files = new JSONArray();
+            for (String fileName : meta.getList(key, String.class)) {
+                files.add(toJsonFileName(fileName));
+            }
+            meta.put(key, files);
+        }
+        Files.writeString(targetDir.resolve("meta.json"), meta.toJSONString());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + BinaryDumpConverter.class.getName()
+                    + " <binary dump dir> <json dump dir>");
+            System.exit(1);
+        }
+        new BinaryDumpConverter(Path.of(args[0]), Path.of(args[1])).convert();
+    }
+}
@@ -0,0 +1,58 @@
+package tlc2.diploma.dump;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// execution records start with the edge count, so the edges of the current path are buffered
+public class BinaryExecutionWriter implements ExecutionWriter {
+    private final BinaryRecordWriter writer;
+    private final MutableIntList edges;
+    private int first;
+    private int pathCount;
+
+    public BinaryExecutionWriter(Path path, boolean compress) throws IOException {
+        this.writer = new BinaryRecordWriter(path, compress);
+        this.edges = new IntArrayList();
+        this.pathCount = 0;
+    }
+
+    @Override
+    public void startPath() {
+        edges.clear();
+    }
+
+    @Override
+    public void addTransition(int transition, int from, int to) {
+        if (edges.isEmpty()) {
+            first = from;
+        }
+        edges.add(transition);
+        edges.add(to);
+    }
+
+    @Override
+    public void endPath() throws IOException {
+        writer.writeVarInt(edges.size() / 2);
+        if (!edges.isEmpty()) {
+            writer.writeVarInt(first);
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            writer.writeVarInt(edges.get(i));
+        }
+        writer.endRecord();
+        pathCount++;
+    }
+
+    @Override
+    public int getPathCount() {
+        return pathCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,96 @@
+package tlc2.diploma.dump;
+
+import tlc2.value.IValue;
+import tlc2.value.ValueInputStream;
+import tlc2.value.impl.ModelValue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+// Streams the records of a file written by BinaryRecordWriter: nextRecord advances to the next
+// record, whose fields are then read in the order they have been written.
+public class BinaryRecordReader implements Closeable {
+    private final DataInputStream in;
+    private byte[] buffer = new byte[4096];
+    private ValueInputStream record = null;
+
+    public BinaryRecordReader(Path path, boolean compressed) throws IOException {
+        InputStream is = Files.newInputStream(path);
+        this.in = new DataInputStream(new BufferedInputStream(compressed ? new GZIPInputStream(is) : is));
+        if (in.readInt() != BinaryRecordWriter.MAGIC) {
+            throw new IOException(path + " is not a binary dump file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != BinaryRecordWriter.VERSION) {
+            throw new IOException(path + " has unsupported version " + version);
+        }
+    }
+
+    // model values are written as indices, so outside of TLC they have to be recreated in the
+    // order listed in meta.json before any value is read
+    public static void registerModelValues(List<String> names) {
+        ModelValue.init();
+        for (String name : names) {
+            ModelValue.make(name);
+        }
+        ModelValue.setValues();
+    }
+
+    private int readVarInt(InputStream is) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = is.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    public boolean nextRecord() throws IOException {
+        in.mark(1);
+        if (in.read() == -1) {
+            return false;
+        }
+        in.reset();
+        int length = readVarInt(in);
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+        }
+        in.readFully(buffer, 0, length);
+        record = new ValueInputStream(new ByteArrayInputStream(buffer, 0, length));
+        return true;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = record.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    public IValue readValue() throws IOException {
+        return record.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
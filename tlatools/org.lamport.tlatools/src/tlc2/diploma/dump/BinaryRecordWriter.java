@@ -0,0 +1,94 @@
+package tlc2.diploma.dump;
+
+import tla2sany.semantic.OpDeclNode;
+import tlc2.tool.TLCState;
+import tlc2.value.IValue;
+import tlc2.value.impl.StringValue;
+import util.BufferedDataOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Binary counterpart of the JSON dump files. A file starts with MAGIC and VERSION, followed by
+// records, each of which is a varint payload length and the payload. Payloads consist of
+// unsigned varints and TLC values in the ValueOutputStream encoding:
+//   state:     id, variable count, values in the order of the variables in meta.json
+//   action:    id, action id, argument count, arguments
+//   execution: edge count, first state, then for every edge its id and target state
+//              (see BinaryExecutionWriter)
+public class BinaryRecordWriter implements Closeable {
+    public static final int MAGIC = 0x544c4342; // "TLCB"
+    public static final int VERSION = 1;
+
+    private final BufferedDataOutputStream out;
+    private final ByteArrayOutputStream payload;
+    private final BufferedDataOutputStream payloadOut;
+    private final RecordValueOutputStream valueOut;
+
+    public BinaryRecordWriter(Path path, boolean compress) throws IOException {
+        OutputStream os = Files.newOutputStream(path);
+        this.out = new BufferedDataOutputStream(compress ? new GZIPOutputStream(os) : os);
+        this.payload = new ByteArrayOutputStream();
+        this.payloadOut = new BufferedDataOutputStream(payload);
+        this.valueOut = new RecordValueOutputStream(payloadOut);
+        this.out.writeInt(MAGIC);
+        this.out.writeByte((byte) VERSION);
+    }
+
+    private static void writeVarInt(BufferedDataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((byte) value);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarInt(payloadOut, value);
+    }
+
+    public void writeValue(Object value) throws IOException {
+        if (!(value instanceof IValue)) {
+            value = new StringValue(String.valueOf(value));
+        }
+        ((IValue) value).write(valueOut);
+    }
+
+    public void endRecord() throws IOException {
+        payloadOut.flush();
+        writeVarInt(out, payload.size());
+        payload.writeTo(out);
+        payload.reset();
+    }
+
+    public void writeState(int id, TLCState state) throws IOException {
+        OpDeclNode[] vars = state.getVars();
+        writeVarInt(id);
+        writeVarInt(vars.length);
+        for (OpDeclNode var : vars) {
+            writeValue(state.lookup(var.getName()));
+        }
+        endRecord();
+    }
+
+    public void writeAction(int id, int actionId, List<Object> args) throws IOException {
+        writeVarInt(id);
+        writeVarInt(actionId);
+        writeVarInt(args.size());
+        for (Object arg : args) {
+            writeValue(arg);
+        }
+        endRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
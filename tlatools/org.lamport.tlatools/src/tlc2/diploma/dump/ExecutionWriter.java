@@ -0,0 +1,10 @@
+package tlc2.diploma.dump;
+
+import tlc2.diploma.graph.PathSink;
+
+import java.io.Closeable;
+
+// writes the paths it receives to one execution file
+public interface ExecutionWriter extends PathSink, Closeable {
+    int getPathCount();
+}
@@ -0,0 +1,83 @@
+package tlc2.diploma.dump;
+
+import tlc2.value.IValueOutputStream;
+import util.BufferedDataOutputStream;
+
+import java.io.IOException;
+
+// Same encoding as ValueOutputStream, but values are never replaced by handles to values
+// written earlier, so that every record can be decoded without the records before it.
+class RecordValueOutputStream implements IValueOutputStream {
+    private final BufferedDataOutputStream dos;
+
+    RecordValueOutputStream(BufferedDataOutputStream dos) {
+        this.dos = dos;
+    }
+
+    @Override
+    public void writeShort(short x) throws IOException {
+        dos.writeShort(x);
+    }
+
+    @Override
+    public void writeInt(int x) throws IOException {
+        dos.writeInt(x);
+    }
+
+    @Override
+    public void writeLong(long x) throws IOException {
+        dos.writeLong(x);
+    }
+
+    @Override
+    public void close() throws IOException {
+        dos.close();
+    }
+
+    @Override
+    public void writeShortNat(short x) throws IOException {
+        if (x > 0x7f) {
+            dos.writeShort((short) -x);
+        } else {
+            dos.writeByte((byte) x);
+        }
+    }
+
+    @Override
+    public void writeNat(int x) throws IOException {
+        if (x > 0x7fff) {
+            dos.writeInt(-x);
+        } else {
+            dos.writeShort((short) x);
+        }
+    }
+
+    @Override
+    public void writeLongNat(long x) throws IOException {
+        if (x <= 0x7fffffff) {
+            dos.writeInt((int) x);
+        } else {
+            dos.writeLong(-x);
+        }
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        dos.writeByte(b);
+    }
+
+    @Override
+    public void writeBoolean(boolean b) throws IOException {
+        dos.writeBoolean(b);
+    }
+
+    @Override
+    public BufferedDataOutputStream getOutputStream() {
+        return dos;
+    }
+
+    @Override
+    public int put(Object obj) {
+        return -1;
+    }
+}
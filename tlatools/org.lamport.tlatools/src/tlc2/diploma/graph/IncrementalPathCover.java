@@ -0,0 +1,140 @@
+package tlc2.diploma.graph;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import tlc2.diploma.graph.algo.FlowPathExtractor;
+import tlc2.diploma.util.IntArrayStore;
+import tlc2.diploma.util.ParallelTasks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Greedy path cover maintained while the state graph is explored: a new transition continues
+// one of the paths currently ending in its source state, or starts a new path if there is none.
+// Paths starting in a state other than an initial one are prefixed with the exploration tree
+// path leading to that state, so the cover can be exported even if exploration never finishes.
+public class IncrementalPathCover implements FlowPathExtractor, Closeable {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final StateNetwork network;
+    // all stores hold ids shifted by one, so that zero means "none"
+    // per node: last transition ending in the node whose path still awaits a continuation
+    private final IntArrayStore waitingHead;
+    // per transition: next transition waiting in the same node
+    private final IntArrayStore waitingNext;
+    // per transition: transition continuing its path
+    private final IntArrayStore continuation;
+    // per transition: non-zero if the transition starts a path
+    private final IntArrayStore pathStart;
+    // per node: transition by which the node has been discovered
+    private final IntArrayStore parent;
+    private final AtomicInteger pathCount;
+
+    IncrementalPathCover(StateNetwork network) {
+        this.network = network;
+        this.waitingHead = network.newStore("cover-waiting-head");
+        this.waitingNext = network.newStore("cover-waiting-next");
+        this.continuation = network.newStore("cover-continuation");
+        this.pathStart = network.newStore("cover-path-start");
+        this.parent = network.newStore("cover-parent");
+        this.pathCount = new AtomicInteger();
+    }
+
+    // every transition is pushed exactly once, so popping cannot suffer from ABA
+    private void pushWaiting(int v, int t) {
+        int head;
+        do {
+            head = waitingHead.getVolatile(v);
+            waitingNext.set(t, head);
+        } while (!waitingHead.compareAndSet(v, head, t + 1));
+    }
+
+    private int popWaiting(int v) {
+        int head;
+        do {
+            head = waitingHead.getVolatile(v);
+            if (head == 0) {
+                return -1;
+            }
+        } while (!waitingHead.compareAndSet(v, head, waitingNext.get(head - 1)));
+        return head - 1;
+    }
+
+    public void addTransition(int t, boolean discovering) {
+        int from = network.getFrom(2 * t), to = network.getTo(2 * t);
+        if (discovering) {
+            parent.set(to, t + 1);
+        }
+        continuation.set(t, 0);
+        int previous = popWaiting(from);
+        if (previous == -1) {
+            pathStart.set(t, 1);
+            pathCount.incrementAndGet();
+        } else {
+            pathStart.set(t, 0);
+            continuation.set(previous, t + 1);
+        }
+        pushWaiting(to, t);
+    }
+
+    public int getPathCount() {
+        return pathCount.get();
+    }
+
+    private void emit(PathSink sink, int t) throws IOException {
+        sink.addTransition(t, network.getFrom(2 * t) - 1, network.getTo(2 * t) - 1);
+    }
+
+    private void extractPath(int start, MutableIntList prefix, PathSink sink) throws IOException {
+        prefix.clear();
+        for (int v = network.getFrom(2 * start); parent.get(v) != 0; ) {
+            int t = parent.get(v) - 1;
+            prefix.add(t);
+            v = network.getFrom(2 * t);
+        }
+        sink.startPath();
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+            emit(sink, prefix.get(i));
+        }
+        for (int t = start; ; ) {
+            emit(sink, t);
+            int next = continuation.get(t);
+            if (next == 0) {
+                break;
+            }
+            t = next - 1;
+        }
+        sink.endPath();
+    }
+
+    // must not be called before exploration has stopped
+    @Override
+    public void extractPaths(PathSink[] sinks) throws IOException {
+        int transitions = network.getEdgeCount() / 2;
+        // initial states are never discovered, so their part of the store may not exist yet
+        parent.ensureCapacity(network.getNodeCount());
+        AtomicInteger cursor = new AtomicInteger();
+        ParallelTasks.run("tlc-path-export", sinks.length, i -> {
+            MutableIntList prefix = new IntArrayList();
+            int from;
+            while ((from = cursor.getAndAdd(CHUNK_SIZE)) < transitions) {
+                int to = Math.min(transitions, from + CHUNK_SIZE);
+                for (int t = from; t < to; t++) {
+                    if (pathStart.get(t) != 0) {
+                        extractPath(t, prefix, sinks[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        waitingHead.close();
+        waitingNext.close();
+        continuation.close();
+        pathStart.close();
+        parent.close();
+    }
+}
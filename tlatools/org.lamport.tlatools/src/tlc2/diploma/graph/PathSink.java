@@ -0,0 +1,13 @@
+package tlc2.diploma.graph;
+
+import java.io.IOException;
+
+// Receives the paths of a path cover one transition at a time, so that paths never have to be
+// kept in memory as a whole. States and transitions are identified by their dump ids.
+public interface PathSink {
+    void startPath() throws IOException;
+
+    void addTransition(int transition, int from, int to) throws IOException;
+
+    void endPath() throws IOException;
+}
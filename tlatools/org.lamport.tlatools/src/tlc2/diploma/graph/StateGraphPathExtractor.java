@@ -1,8 +1,5 @@
 package tlc2.diploma.graph;
 
-import org.eclipse.collections.api.list.primitive.IntList;
-import org.eclipse.collections.api.list.primitive.MutableIntList;
-import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import tlc2.TLCGlobals;
 import tlc2.diploma.graph.algo.*;
 import tlc2.output.EC;
@@ -10,49 +7,92 @@ import tlc2.output.MP;
 import tlc2.tool.ModelChecker;
 import tlc2.tool.TLCState;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 
-public class StateGraphPathExtractor {
+public class StateGraphPathExtractor implements Closeable {
     private static final SimpleDateFormat SDF = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
     private static final int INF = Integer.MAX_VALUE;
-
-    private final StateNetwork network = new StateNetwork();
+    // dinic, pushrelabel or parallel; by default the naive solver is used for acyclic graphs
+    // and Dinic's algorithm for cyclic ones
+    private static final String SOLVER = System.getProperty(StateGraphPathExtractor.class.getName() + ".solver", "auto");
+    // mincost, heuristic (the former optimizer, acyclic graphs only) or none
+    private static final String OPTIMIZER = System.getProperty(StateGraphPathExtractor.class.getName() + ".optimizer", "mincost");
+    // time budget of the mincost optimizer in seconds, 0 for none
+    private static final long OPTIMIZER_TIME_LIMIT = Long.getLong(StateGraphPathExtractor.class.getName() + ".optimizerTimeLimit", 0);
+    // cost of one path in transitions; by default larger than any cycle, so that the number
+    // of paths is minimized before their total length
+    private static final int PATH_COST = Integer.getInteger(StateGraphPathExtractor.class.getName() + ".pathCost", 0);
+
+    private final StateNetwork network;
+    // null unless a path cover is maintained during exploration
+    private IncrementalPathCover incrementalPathCover = null;
 
     private int stateCount = 0;
 
     private int actionCount = 0;
     private int pathCount = 0;
     public StateGraphPathExtractor() {
+        this.network = new StateNetwork();
+        network.setCancelled(StateGraphPathExtractor::isCheckerDone);
+        network.addNode(null); // source
+    }
+
+    public StateGraphPathExtractor(Path networkDir) throws IOException {
+        this.network = new StateNetwork(networkDir);
+        network.setCancelled(StateGraphPathExtractor::isCheckerDone);
         network.addNode(null); // source
     }
 
+    // a worker adding a transition may wait for the target state to be added by another one,
+    // which never happens if that worker stops early, e.g. on an invariant violation
+    private static boolean isCheckerDone() {
+        return TLCGlobals.mainChecker != null && TLCGlobals.mainChecker.isDone();
+    }
+
     public int addState(TLCState state) {
         return network.addNode(state) - 1;
     }
 
+    // must be called before the first action is added
+    public void enableIncrementalPathCover() {
+        this.incrementalPathCover = new IncrementalPathCover(network);
+    }
+
+    public boolean hasIncrementalPathCover() {
+        return incrementalPathCover != null;
+    }
+
     public int addAction(TLCState from, TLCState to) {
-        return network.addEdge(from, to, INF) / 2;
+        return addAction(from, to, false);
+    }
+
+    // discovering is true if the action is the one by which the state to has been found
+    public int addAction(TLCState from, TLCState to, boolean discovering) {
+        int id = network.addEdge(from, to, INF) / 2;
+        if (incrementalPathCover != null) {
+            incrementalPathCover.addTransition(id, discovering);
+        }
+        return id;
     }
 
-    private void constructNetwork() {
+    StateNetwork getNetwork() {
+        return network;
+    }
+
+    void constructNetwork() {
         network.addNode(null); // sink
         network.shutdown();
         network.ensureEdgeCapacity(network.getEdgeCount() + 4 * network.getNodeCount());
 
-        MutableIntList degInOutDiffs = IntArrayList.newWithNValues(network.getNodeCount(), 0);
-        for (int i = 0; i < network.getEdgeCount(); i += 2) {
-            StateNetwork.Edge edge = network.getEdge(i);
-            degInOutDiffs.set(edge.getFrom(), degInOutDiffs.get(edge.getFrom()) - 1);
-            degInOutDiffs.set(edge.getTo(), degInOutDiffs.get(edge.getTo()) + 1);
-        }
-
         for (int i = 0; i < network.getNodeCount(); i++) {
             if (i == network.getSource() || i == network.getSink()) {
                 continue;
             }
-            int degInOutDiff = degInOutDiffs.get(i);
+            int degInOutDiff = network.getBalance(i);
             if (degInOutDiff > 0) {
                 network.addEdge(network.getSource(), i, degInOutDiff);
             } else if (degInOutDiff < 0) {
@@ -69,9 +109,8 @@ public class StateGraphPathExtractor {
     private int calculatePathCount() {
         pathCount = 0;
         for (int i = 0; i < network.getEdgeCount(); i += 2) {
-            StateNetwork.Edge fwd = network.getEdge(i);
-            if (fwd.getFrom() != network.getSource() && fwd.getTo() == network.getRoot()) {
-                pathCount += fwd.getFlow() + (fwd.hasAction() ? 1 : 0);
+            if (network.getFrom(i) != network.getSource() && network.getTo(i) == network.getRoot()) {
+                pathCount += network.getFlow(i) + (network.hasAction(i) ? 1 : 0);
             }
         }
         return pathCount;
@@ -94,49 +133,92 @@ public class StateGraphPathExtractor {
     private int calculatePathCoverTotalLength() {
         int result = 0;
         for (int i = 0; i < network.getEdgeCount(); i += 2) {
-            StateNetwork.Edge fwd = network.getEdge(i);
-            if (fwd.hasAction()) {
-                result += fwd.getFlow();
+            if (network.hasAction(i)) {
+                result += network.getFlow(i);
             }
         }
         return result;
     }
 
-    private boolean checkAcyclicDfs(int v, MutableIntList color) {
-        color.set(v, 1);
-        IntList adjListV = network.getAdjacentEdgeIds(v);
-        for (int i = 0; i < adjListV.size(); i++) {
-            StateNetwork.Edge edge = network.getEdge(adjListV.get(i));
-            if (!edge.isForward()) {
+    // depth-first search for a back edge with an explicit stack, so that deep state graphs
+    // do not overflow the thread stack
+    boolean isGraphAcyclic() {
+        int nodeCount = network.getNodeCount();
+        int[] color = new int[nodeCount];
+        int[] adjListPt = new int[nodeCount];
+        int[] stack = new int[nodeCount];
+        int top = 0;
+
+        stack[top++] = network.getRoot();
+        color[network.getRoot()] = 1;
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (adjListPt[v] == network.getAdjacentEdgeCount(v)) {
+                color[v] = 2;
+                top--;
                 continue;
             }
-            int to = edge.getTo();
-            if ((to == network.getRoot() && !edge.hasAction()) || to == network.getSink() || to == v) {
+            int eId = network.getAdjacentEdgeId(v, adjListPt[v]++);
+            if (!StateNetwork.isForward(eId)) {
                 continue;
             }
-            if (color.get(to) == 1) {
-                return false;
-            }
-            if (color.get(to) != 0) {
+            int to = network.getTo(eId);
+            if ((to == network.getRoot() && !network.hasAction(eId)) || to == network.getSink() || to == v) {
                 continue;
             }
-            if (!checkAcyclicDfs(to, color)) {
+            if (color[to] == 1) {
                 return false;
             }
+            if (color[to] == 0) {
+                color[to] = 1;
+                stack[top++] = to;
+            }
         }
-        color.set(v, 2);
         return true;
     }
 
-    private boolean isGraphAcyclic() {
-        return checkAcyclicDfs(network.getRoot(), IntArrayList.newWithNValues(network.getNodeCount(), 0));
-    }
-
     private String now() {
         return SDF.format(new Date());
     }
 
-    public Iterable<List<Edge>> extractPaths() {
+    private MaxFlowSolver createMaxFlowSolver(boolean graphAcyclic) {
+        switch (SOLVER) {
+            case "dinic":
+                return new DinicMaxFlowSolver(this.network);
+            case "pushrelabel":
+                return new PushRelabelMaxFlowSolver(this.network);
+            case "parallel":
+                return new ParallelPushRelabelMaxFlowSolver(this.network, TLCGlobals.getNumWorkers());
+            default:
+                return graphAcyclic
+                        ? new NaiveMaxFlowSolver(this.network)
+                        : new DinicMaxFlowSolver(this.network);
+        }
+    }
+
+    private NetworkPathOptimizer createHeuristicPathOptimizer() {
+        int depth = INF;
+        try {
+            depth = ((ModelChecker) TLCGlobals.mainChecker).trace.getLevel();
+        } catch (Exception ignored) { }
+        return new HeuristicNetworkPathOptimizer(this.network, Math.min(8, depth - 1));
+    }
+
+    // the greedy cover built during exploration; usable if exploration has been interrupted,
+    // but neither minimal nor optimized
+    public FlowPathExtractor extractIncrementalPaths() {
+        stateCount = network.getNodeCount() - 1;
+        actionCount = network.getEdgeCount() / 2;
+        pathCount = incrementalPathCover.getPathCount();
+
+        MP.printMessage(EC.GENERAL, "Using incremental path cover ("
+                + MP.format(stateCount) + " states, "
+                + MP.format(actionCount) + " transitions, "
+                + MP.format(pathCount) + " paths, " + now() + ")");
+        return incrementalPathCover;
+    }
+
+    public FlowPathExtractor extractPaths() {
         stateCount = network.getNodeCount() - 1;
         actionCount = network.getEdgeCount() / 2;
 
@@ -151,27 +233,28 @@ public class StateGraphPathExtractor {
             MP.printMessage(EC.GENERAL, "  WARNING: model state graph contains CYCLES!");
         }
 
-        MaxFlowSolver maxFlowSolver = graphAcyclic
-                ? new NaiveMaxFlowSolver(this.network)
-                : new DinicMaxFlowSolver(this.network);
+        MaxFlowSolver maxFlowSolver = this.createMaxFlowSolver(graphAcyclic);
         maxFlowSolver.findMaxFlow();
 
         int pathCount = this.calculatePathCount();
         MP.printMessage(EC.GENERAL, "  Constructed initial path cover ("
                 + MP.format(pathCount) + " paths, " + now() + ").");
 
-        int depth = INF;
-        try {
-            depth = ((ModelChecker) TLCGlobals.mainChecker).trace.getLevel();
-        } catch (Exception ignored) { }
-
-        // remove negative cycles from network
-        int newPathCount = pathCount;
-        if (graphAcyclic) {
-            NetworkPathOptimizer pathOptimizer = new HeuristicNetworkPathOptimizer(this.network, Math.min(8, depth - 1));
+        // remove negative cycles from network; the cheap heuristic runs first, so that a
+        // min-cost optimizer running out of time is no worse than the heuristic alone
+        if (graphAcyclic && !OPTIMIZER.equals("none")) {
+            this.createHeuristicPathOptimizer().optimizePaths();
+        }
+        if (OPTIMIZER.equals("mincost")) {
+            int pathCost = PATH_COST > 0 ? PATH_COST : network.getNodeCount();
+            MinCostNetworkPathOptimizer pathOptimizer =
+                    new MinCostNetworkPathOptimizer(this.network, pathCost, OPTIMIZER_TIME_LIMIT * 1000);
             pathOptimizer.optimizePaths();
-            newPathCount = this.calculatePathCount();
+            if (!pathOptimizer.isOptimal()) {
+                MP.printMessage(EC.GENERAL, "  Path cover optimization stopped before reaching the optimum.");
+            }
         }
+        int newPathCount = this.calculatePathCount();
         if (newPathCount < pathCount) {
             MP.printMessage(EC.GENERAL, "  Removed " + MP.format(pathCount - newPathCount)
                     + " redundant paths (" + MP.format(newPathCount) + " paths, " + now() + ").");
@@ -182,8 +265,7 @@ public class StateGraphPathExtractor {
 
         // transform flow to circulation
         for (int i = 0; i < network.getEdgeCount(); i += 2) {
-            StateNetwork.Edge fwd = network.getEdge(i);
-            if (fwd.hasAction()) {
+            if (network.hasAction(i)) {
                 network.incFlow(i, 1);
             }
         }
@@ -200,27 +282,11 @@ public class StateGraphPathExtractor {
                 : new EulerFlowPathExtractor(network);
     }
 
-    public static class Edge {
-        private final int id;
-        private final int from;
-        private final int to;
-
-        public Edge(int id, int from, int to) {
-            this.id = id;
-            this.from = from;
-            this.to = to;
-        }
-
-        public int getId() {
-            return id;
-        }
-
-        public int getFrom() {
-            return from;
-        }
-
-        public int getTo() {
-            return to;
+    @Override
+    public void close() throws IOException {
+        if (incrementalPathCover != null) {
+            incrementalPathCover.close();
         }
+        network.close();
     }
 }
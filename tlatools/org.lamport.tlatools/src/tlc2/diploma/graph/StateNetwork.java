@@ -1,36 +1,82 @@
 package tlc2.diploma.graph;
 
-import org.eclipse.collections.api.list.primitive.IntList;
-import org.eclipse.collections.api.list.primitive.MutableIntList;
-import org.eclipse.collections.api.map.primitive.MutableLongIntMap;
-import org.eclipse.collections.impl.list.mutable.FastList;
-import org.eclipse.collections.impl.list.mutable.primitive.BooleanArrayList;
-import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
-import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import tlc2.diploma.util.IntArrayStore;
+import tlc2.diploma.util.MappedIntArray;
+import tlc2.diploma.util.MappedLongIntTable;
+import tlc2.diploma.util.PagedIntArray;
+import tlc2.diploma.util.StripedLongIntMap;
+import tlc2.output.EC;
 import tlc2.tool.TLCState;
+import util.Assert;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
-public class StateNetwork {
+public class StateNetwork implements Closeable {
     public static final int INF = Integer.MAX_VALUE;
-    private final List<MutableIntList> adjList;
+    // every node gets at most one source/sink edge and one root edge during network construction
+    private static final int AUX_EDGES_PER_NODE = 2;
+
+    // null if the network is kept on heap, otherwise the directory of its memory-mapped files
+    private final Path storeDir;
+    private final AtomicInteger nodeCount = new AtomicInteger();
     private final EdgeArrayList edges;
-    private final MutableLongIntMap fpToId = new LongIntHashMap();
+    private final StripedLongIntMap fpToId;
+    // in-degree minus out-degree of every node over the edges added during exploration
+    private final IntArrayStore balance;
+    // adjacency is only needed by the flow algorithms, so it is built once on shutdown in
+    // compressed sparse row form instead of being maintained under locks during exploration
+    private IntArrayStore adjStart = null;
+    private IntArrayStore adjSize = null;
+    private IntArrayStore adjIds = null;
     private boolean shutDown = false;
+    // polled by addEdge while it waits for the id of a state another thread has yet to add
+    private BooleanSupplier cancelled = () -> false;
 
     private int source;
     private int sink;
     private int root;
 
     public StateNetwork() {
-        this.adjList = new FastList<>();
-        this.edges = new EdgeArrayList();
+        this.storeDir = null;
+        this.edges = new EdgeArrayList(this::newStore);
+        this.fpToId = new StripedLongIntMap();
+        this.balance = newStore("node-balance");
+        this.source = 0;
+        this.sink = -1;
+        this.root = 1;
+    }
+
+    public StateNetwork(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.storeDir = Files.createTempDirectory(dir, "network-");
+        this.storeDir.toFile().deleteOnExit();
+        this.edges = new EdgeArrayList(this::newStore);
+        this.fpToId = new StripedLongIntMap(i -> new MappedLongIntTable(storeDir, String.format("fp-%04d", i)));
+        this.balance = newStore("node-balance");
         this.source = 0;
         this.sink = -1;
         this.root = 1;
     }
 
+    IntArrayStore newStore(String name) {
+        if (storeDir == null) {
+            return new PagedIntArray();
+        }
+        try {
+            return new MappedIntArray(storeDir.resolve(name + ".dat"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private static int mod(int a, int b) {
         int res = a % b;
         if (a < 0) {
@@ -40,7 +86,7 @@ public class StateNetwork {
     }
 
     public int getSource() {
-        return mod(source, adjList.size());
+        return mod(source, getNodeCount());
     }
 
     public void setSource(int source) {
@@ -49,7 +95,7 @@ public class StateNetwork {
     }
 
     public int getSink() {
-        return mod(sink, adjList.size());
+        return mod(sink, getNodeCount());
     }
 
     public void setSink(int sink) {
@@ -66,19 +112,17 @@ public class StateNetwork {
         this.root = root;
     }
 
+    // lets addEdge give up waiting once exploration stops, because then the state it waits
+    // for may never be added; must be called before the first edge is added
+    public void setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+    }
+
     public int addNode(TLCState state) {
         ensureNotShutDown();
-        int id;
-        synchronized (adjList) {
-            id = adjList.size();
-            adjList.add(new IntArrayList(4));
-        }
+        int id = nodeCount.getAndIncrement();
         if (state != null) {
-            long stateFp = state.fingerPrint();
-            synchronized (fpToId) {
-                fpToId.put(stateFp, id);
-                fpToId.notifyAll();
-            }
+            fpToId.put(state.fingerPrint(), id);
         }
         return id;
     }
@@ -89,15 +133,60 @@ public class StateNetwork {
         }
     }
 
+    private void ensureShutDown() {
+        if (!shutDown) {
+            throw new IllegalStateException("network is not shut down yet");
+        }
+    }
+
     public void shutdown() {
         ensureNotShutDown();
-        System.gc();
         shutDown = true;
         fpToId.clear();
+        edges.markActionEdges();
+        System.gc();
+
+        int nodes = getNodeCount();
+        balance.ensureCapacity(nodes);
+        adjStart = newStore("adj-start");
+        adjSize = newStore("adj-size");
+        adjIds = newStore("adj-ids");
+
+        adjSize.ensureCapacity(nodes);
+        for (int i = 0; i < edges.size(); i += 2) {
+            int from = edges.fromList.get(i / 2), to = edges.toList.get(i / 2);
+            adjSize.set(from, adjSize.get(from) + 1);
+            adjSize.set(to, adjSize.get(to) + 1);
+        }
+        long offset = 0;
+        for (int v = 0; v < nodes; v++) {
+            adjStart.setLong(v, offset);
+            offset += adjSize.get(v) + AUX_EDGES_PER_NODE;
+            // source, sink and root are connected to every other node
+            if (v == getSource() || v == getSink() || v == getRoot()) {
+                offset += nodes;
+            }
+            adjSize.set(v, 0);
+        }
+        adjStart.setLong(nodes, offset);
+        for (int i = 0; i < edges.size(); i += 2) {
+            appendAdjacentEdgeId(edges.fromList.get(i / 2), i);
+            appendAdjacentEdgeId(edges.toList.get(i / 2), i + 1);
+        }
+    }
+
+    private void appendAdjacentEdgeId(int v, int eId) {
+        int size = adjSize.get(v);
+        long pos = adjStart.getLong(v) + size;
+        if (pos >= adjStart.getLong(v + 1)) {
+            throw new IllegalStateException("adjacency list of node " + v + " is full");
+        }
+        adjIds.set(pos, eId);
+        adjSize.set(v, size + 1);
     }
 
     public int getNodeCount() {
-        return adjList.size();
+        return nodeCount.get();
     }
 
     public int getEdgeCount() {
@@ -105,54 +194,28 @@ public class StateNetwork {
     }
 
     public int addEdge(TLCState fromState, TLCState toState, int cap) {
-        long fromFp = fromState.fingerPrint(), toFp = toState.fingerPrint();
+        ensureNotShutDown();
         int from, to;
         try {
-            synchronized (fpToId) {
-                while (true) {
-                    from = fpToId.getIfAbsent(fromFp, -1);
-                    if (from != -1) {
-                        break;
-                    }
-                    fpToId.wait();
-                }
-                while (true) {
-                    to = fpToId.getIfAbsent(toFp, -1);
-                    if (to != -1) {
-                        break;
-                    }
-                    fpToId.wait();
-                }
-            }
+            from = fpToId.await(fromState.fingerPrint(), cancelled);
+            to = fpToId.await(toState.fingerPrint(), cancelled);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
-        return addEdge(from, to, cap, true);
+        balance.getAndAdd(from, -1);
+        balance.getAndAdd(to, 1);
+        return edges.add(from, to, cap);
     }
 
-    public int addEdge(int from, int to, int cap) {
-        return addEdge(from, to, cap, false);
+    public int getBalance(int v) {
+        return balance.get(v);
     }
 
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-    private int addEdge(int from, int to, int cap, boolean hasAction) {
-        MutableIntList adjListFrom, adjListTo;
-        synchronized (adjList) {
-            adjListFrom = adjList.get(from);
-            adjListTo = adjList.get(to);
-        }
-
-        int id;
-        synchronized (edges) {
-            id = edges.size();
-            edges.add(from, to, cap, hasAction);
-        }
-        synchronized (adjListFrom) {
-            adjListFrom.add(id);
-        }
-        synchronized (adjListTo) {
-            adjListTo.add(id + 1);
-        }
+    public int addEdge(int from, int to, int cap) {
+        ensureShutDown();
+        int id = edges.add(from, to, cap);
+        appendAdjacentEdgeId(from, id);
+        appendAdjacentEdgeId(to, id + 1);
         return id;
     }
 
@@ -160,12 +223,53 @@ public class StateNetwork {
         return edges.get(i);
     }
 
+    // Allocation-free access to the edge with the given id. Even ids denote forward edges,
+    // odd ids the backward (residual) edge of the same transition.
+
+    public static boolean isForward(int eId) {
+        return eId % 2 == 0;
+    }
+
+    public static int getTwin(int eId) {
+        return eId ^ 1;
+    }
+
+    public int getFrom(int eId) {
+        return isForward(eId) ? edges.fromList.get(eId / 2) : edges.toList.get(eId / 2);
+    }
+
+    public int getTo(int eId) {
+        return isForward(eId) ? edges.toList.get(eId / 2) : edges.fromList.get(eId / 2);
+    }
+
+    public int getCapacity(int eId) {
+        return edges.capacityList.get(eId / 2);
+    }
+
+    public int getFlow(int eId) {
+        int flow = edges.flowList.get(eId / 2);
+        return isForward(eId) ? flow : getCapacity(eId) - flow;
+    }
+
+    public int getResidualCapacity(int eId) {
+        int flow = edges.flowList.get(eId / 2);
+        return isForward(eId) ? getCapacity(eId) - flow : flow;
+    }
+
+    public boolean hasAction(int eId) {
+        return isForward(eId) && edges.hasAction(eId / 2);
+    }
+
     public void ensureEdgeCapacity(int capacity) {
         edges.ensureCapacity(capacity);
     }
 
-    public IntList getAdjacentEdgeIds(int i) {
-        return adjList.get(i).asUnmodifiable();
+    public int getAdjacentEdgeCount(int v) {
+        return adjSize.get(v);
+    }
+
+    public int getAdjacentEdgeId(int v, int i) {
+        return adjIds.get(adjStart.getLong(v) + i);
     }
 
     public void incFlow(int index, int flow) {
@@ -174,6 +278,41 @@ public class StateNetwork {
         edges.flowList.set(newIndex, edges.flowList.get(newIndex) + df);
     }
 
+    // counterparts of getResidualCapacity and incFlow for solvers updating flow from several threads
+
+    public int getResidualCapacityAtomically(int eId) {
+        int flow = edges.flowList.getVolatile(eId / 2);
+        return isForward(eId) ? getCapacity(eId) - flow : flow;
+    }
+
+    public void incFlowAtomically(int eId, int flow) {
+        edges.flowList.getAndAdd(eId / 2, isForward(eId) ? flow : -flow);
+    }
+
+    // takes one unit of flow from a forward edge if there is any left
+    public boolean decFlowIfPositive(int eId) {
+        while (true) {
+            int flow = edges.flowList.getVolatile(eId / 2);
+            if (flow <= 0) {
+                return false;
+            }
+            if (edges.flowList.compareAndSet(eId / 2, flow, flow - 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        edges.close();
+        balance.close();
+        if (shutDown) {
+            adjStart.close();
+            adjSize.close();
+            adjIds.close();
+        }
+    }
+
     public interface Edge {
         int getFrom();
         int getTo();
@@ -185,23 +324,46 @@ public class StateNetwork {
     }
 
     public static class EdgeArrayList extends AbstractList<Edge> {
-        private final IntArrayList fromList;
-        private final IntArrayList toList;
-        private final IntArrayList flowList;
-        private final IntArrayList capacityList;
-        private final BooleanArrayList hasActionList;
-
-        public EdgeArrayList() {
-            this.fromList = new IntArrayList();
-            this.toList = new IntArrayList();
-            this.flowList = new IntArrayList();
-            this.capacityList = new IntArrayList();
-            this.hasActionList = new BooleanArrayList();
+        // the forward and backward edge of the last transition get the ids 2 * MAX_ID and
+        // 2 * MAX_ID + 1, which is Integer.MAX_VALUE
+        private static final int MAX_ID = Integer.MAX_VALUE / 2;
+
+        private final AtomicInteger count;
+        private final IntArrayStore fromList;
+        private final IntArrayStore toList;
+        private final IntArrayStore flowList;
+        private final IntArrayStore capacityList;
+        // edges added before the network is shut down are exactly the ones backed by an action
+        private int actionCount;
+
+        public EdgeArrayList(Function<String, IntArrayStore> storeFactory) {
+            this.count = new AtomicInteger();
+            this.fromList = storeFactory.apply("edge-from");
+            this.toList = storeFactory.apply("edge-to");
+            this.flowList = storeFactory.apply("edge-flow");
+            this.capacityList = storeFactory.apply("edge-capacity");
+            this.actionCount = -1;
+        }
+
+        public int add(int from, int to, int capacity) {
+            int id = count.getAndIncrement();
+            if (id < 0 || id > MAX_ID) {
+                Assert.fail(EC.GENERAL, "The path cover network cannot hold more than "
+                        + (MAX_ID + 1) + " transitions of the state graph.");
+            }
+            fromList.set(id, from);
+            toList.set(id, to);
+            flowList.set(id, 0);
+            capacityList.set(id, capacity);
+            return 2 * id;
         }
 
-        public boolean add(int from, int to, int capacity, boolean hasAction) {
-            hasActionList.add(hasAction);
-            return fromList.add(from) & toList.add(to) & flowList.add(0) & capacityList.add(capacity);
+        private void markActionEdges() {
+            actionCount = count.get();
+        }
+
+        private boolean hasAction(int id) {
+            return actionCount < 0 || id < actionCount;
         }
 
         @Override
@@ -211,7 +373,8 @@ public class StateNetwork {
 
         @Override
         public int size() {
-            return 2 * hasActionList.size();
+            // count keeps growing when add fails
+            return 2 * Math.min(count.get(), MAX_ID + 1);
         }
 
         public void ensureCapacity(int capacity) {
@@ -220,7 +383,13 @@ public class StateNetwork {
             toList.ensureCapacity(newCapacity);
             flowList.ensureCapacity(newCapacity);
             capacityList.ensureCapacity(newCapacity);
-//            hasActionList.ensureCapacity(newCapacity);
+        }
+
+        private void close() throws IOException {
+            fromList.close();
+            toList.close();
+            flowList.close();
+            capacityList.close();
         }
 
         private class ForwardEdgeView implements Edge {
@@ -252,7 +421,7 @@ public class StateNetwork {
 
             @Override
             public boolean hasAction() {
-                return EdgeArrayList.this.hasActionList.get(id);
+                return EdgeArrayList.this.hasAction(id);
             }
 
             @Override
@@ -1,68 +1,64 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.MutableList;
-import org.eclipse.collections.api.list.primitive.IntList;
-import org.eclipse.collections.api.list.primitive.MutableIntList;
-import org.eclipse.collections.impl.list.mutable.FastList;
-import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
-import tlc2.diploma.graph.StateGraphPathExtractor.Edge;
+import tlc2.diploma.graph.PathSink;
 import tlc2.diploma.graph.StateNetwork;
+import tlc2.diploma.util.ParallelTasks;
 
-import java.util.Iterator;
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+// Every path follows one unit of flow from the root. Flow units are taken atomically, so paths
+// are extracted by one thread per sink.
 public class AcyclicFlowPathExtractor implements FlowPathExtractor {
     private final StateNetwork network;
     private final int pathCount;
-    private final MutableIntList adjListPt;
-    private int i = 0;
+    // edges before the pointer of a node carry no flow anymore; flow is only ever taken away,
+    // so pointers can be advanced by any thread
+    private final AtomicIntegerArray adjListPt;
+    private final AtomicInteger startedPaths;
 
     public AcyclicFlowPathExtractor(StateNetwork network, int pathCount) {
         this.network = network;
         this.pathCount = pathCount;
-        this.adjListPt = IntArrayList.newWithNValues(network.getNodeCount(), 0);
+        this.adjListPt = new AtomicIntegerArray(network.getNodeCount());
+        this.startedPaths = new AtomicInteger();
     }
 
-    private void extractPathAcyclicDfs(int v, MutableList<Edge> path) {
-        IntList adjListV = network.getAdjacentEdgeIds(v);
-        for (; adjListPt.get(v) < adjListV.size(); adjListPt.set(v, adjListPt.get(v) + 1)) {
-            int eId = adjListV.get(adjListPt.get(v));
-            StateNetwork.Edge fwd = network.getEdge(eId);
-            if (!fwd.isForward()) {
-                continue;
-            }
-
-            int to = fwd.getTo();
-            if (to == network.getSink()) {
-                continue;
+    private int takeFlowEdge(int v) {
+        int degV = network.getAdjacentEdgeCount(v);
+        for (int i = adjListPt.get(v); i < degV; i = adjListPt.get(v)) {
+            int eId = network.getAdjacentEdgeId(v, i);
+            if (StateNetwork.isForward(eId) && network.getTo(eId) != network.getSink()
+                    && network.decFlowIfPositive(eId)) {
+                return eId;
             }
+            adjListPt.compareAndSet(v, i, i + 1);
+        }
+        return -1;
+    }
 
-            if (fwd.getFlow() > 0) {
-                network.incFlow(eId, -1);
-                if (to != network.getRoot()) {
-                    extractPathAcyclicDfs(to, path);
-                    path.add(new Edge(eId / 2, fwd.getFrom() - 1, fwd.getTo() - 1));
-                }
+    // follows flow from the root until it returns to the root or runs into a dead end
+    private void extractPathAcyclic(PathSink sink) throws IOException {
+        sink.startPath();
+        int v = network.getRoot();
+        while (true) {
+            int next = takeFlowEdge(v);
+            if (next == -1 || network.getTo(next) == network.getRoot()) {
                 break;
             }
+            sink.addTransition(next / 2, network.getFrom(next) - 1, network.getTo(next) - 1);
+            v = network.getTo(next);
         }
+        sink.endPath();
     }
 
     @Override
-    public Iterator<List<Edge>> iterator() {
-        return new Iterator<>() {
-            @Override
-            public boolean hasNext() {
-                return i < pathCount;
-            }
-
-            @Override
-            public List<Edge> next() {
-                i++;
-                MutableList<Edge> path = new FastList<>();
-                extractPathAcyclicDfs(network.getRoot(), path);
-                return path.reverseThis();
+    public void extractPaths(PathSink[] sinks) throws IOException {
+        ParallelTasks.run("tlc-path-export", sinks.length, i -> {
+            while (startedPaths.getAndIncrement() < pathCount) {
+                extractPathAcyclic(sinks[i]);
             }
-        };
+        });
     }
 }
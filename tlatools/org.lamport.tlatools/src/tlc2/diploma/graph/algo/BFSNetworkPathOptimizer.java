@@ -1,6 +1,5 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.primitive.IntList;
 import tlc2.diploma.graph.StateNetwork;
 
 import java.util.*;
@@ -28,15 +27,14 @@ public class BFSNetworkPathOptimizer implements NetworkPathOptimizer {
     private boolean tryRemovePath() {
         Collections.fill(distance, INF);
         Collections.fill(parent, -1);
-        IntList adjListRoot = network.getAdjacentEdgeIds(network.getRoot());
-        for (int i = 0; i < adjListRoot.size(); i++) {
-            int eId = adjListRoot.get(i);
-            StateNetwork.Edge edge = network.getEdge(eId);
-            if (edge.isForward()) {
+        int degRoot = network.getAdjacentEdgeCount(network.getRoot());
+        for (int i = 0; i < degRoot; i++) {
+            int eId = network.getAdjacentEdgeId(network.getRoot(), i);
+            if (StateNetwork.isForward(eId)) {
                 continue;
             }
-            int to = edge.getTo();
-            if (edge.getCapacity() - edge.getFlow() > 0) {
+            int to = network.getTo(eId);
+            if (network.getResidualCapacity(eId) > 0) {
                 distance.set(to, 0);
                 parent.set(to, eId);
                 queue.add(to);
@@ -45,19 +43,18 @@ public class BFSNetworkPathOptimizer implements NetworkPathOptimizer {
 
         while (!queue.isEmpty() && distance.get(network.getRoot()) == INF) {
             int cur = queue.poll();
-            IntList adjListCur = network.getAdjacentEdgeIds(cur);
-            for (int i = 0; i < adjListCur.size(); i++) {
-                int eId = adjListCur.get(i);
-                StateNetwork.Edge edge = network.getEdge(eId);
-                int to = edge.getTo();
-                if (to == network.getRoot() && edge.isForward()) {
+            int degCur = network.getAdjacentEdgeCount(cur);
+            for (int i = 0; i < degCur; i++) {
+                int eId = network.getAdjacentEdgeId(cur, i);
+                int to = network.getTo(eId);
+                if (to == network.getRoot() && StateNetwork.isForward(eId)) {
                     continue;
                 }
-                if (distance.get(to) == INF && edge.getCapacity() - edge.getFlow() > 0) {
+                if (distance.get(to) == INF && network.getResidualCapacity(eId) > 0) {
                     distance.set(to, distance.get(cur) + 1);
                     parent.set(to, eId);
                     queue.add(to);
-                    count.set(to, count.get(cur) + (edge.isForward() ? 1 : 0));
+                    count.set(to, count.get(cur) + (StateNetwork.isForward(eId) ? 1 : 0));
                 }
             }
         }
@@ -70,9 +67,8 @@ public class BFSNetworkPathOptimizer implements NetworkPathOptimizer {
             int cur = network.getRoot();
             do {
                 int eId = parent.get(cur);
-                StateNetwork.Edge fwd = network.getEdge(eId);
                 network.incFlow(eId, 1);
-                cur = fwd.getFrom();
+                cur = network.getFrom(eId);
             } while (cur != network.getRoot());
             return true;
         }
@@ -1,6 +1,5 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.primitive.IntList;
 import tlc2.diploma.graph.StateNetwork;
 import util.ToolIO;
 
@@ -16,6 +15,7 @@ public class DinicMaxFlowSolver implements MaxFlowSolver {
     private int queueLeft;
     private int queueRight;
     private final int[] adjListPt;
+    private final int[] path;
 
     public DinicMaxFlowSolver(StateNetwork network) {
         this.network = network;
@@ -24,6 +24,7 @@ public class DinicMaxFlowSolver implements MaxFlowSolver {
         this.queueLeft = 0;
         this.queueRight = 0;
         this.adjListPt = new int[network.getNodeCount()];
+        this.path = new int[network.getNodeCount()];
     }
 
     private boolean dinicBfs() {
@@ -36,12 +37,11 @@ public class DinicMaxFlowSolver implements MaxFlowSolver {
         while (queueRight > queueLeft && distance[sink] == INF) {
             int cur = queue[queueLeft++];
             int dist = distance[cur];
-            IntList adjListCur = network.getAdjacentEdgeIds(cur);
-            for (int i = 0; i < adjListCur.size(); i++) {
-                int eId = adjListCur.get(i);
-                StateNetwork.Edge edge = network.getEdge(eId);
-                int to = edge.getTo();
-                if (distance[to] == INF && edge.getCapacity() - edge.getFlow() > 0) {
+            int degCur = network.getAdjacentEdgeCount(cur);
+            for (int i = 0; i < degCur; i++) {
+                int eId = network.getAdjacentEdgeId(cur, i);
+                int to = network.getTo(eId);
+                if (distance[to] == INF && network.getResidualCapacity(eId) > 0) {
                     distance[to] = dist + 1;
                     queue[queueRight++] = to;
                 }
@@ -55,27 +55,42 @@ public class DinicMaxFlowSolver implements MaxFlowSolver {
         return distance[sink] < INF;
     }
 
-    private int dinicDfs(int v, int flow) {
-        if (v == network.getSink()) {
-            return flow;
-        }
-        int dist = distance[v];
-        IntList adjListV = network.getAdjacentEdgeIds(v);
-        for (; adjListPt[v] < adjListV.size(); adjListPt[v]++) {
-            int eId = adjListV.get(adjListPt[v]);
-            StateNetwork.Edge fwd = network.getEdge(eId);
-            int to = fwd.getTo();
-
-            int cap = fwd.getCapacity() - fwd.getFlow();
-            if (distance[to] == dist + 1 && cap > 0) {
-                int df = dinicDfs(to, Math.min(flow, cap));
-                if (df > 0) {
-                    network.incFlow(eId, df);
-                    return df;
+    // Finds one augmenting path in the level graph with an explicit stack of path edges,
+    // so that the search depth is not bounded by the thread stack.
+    private int dinicDfs() {
+        int sink = network.getSink();
+        int v = network.getSource();
+        int top = 0;
+        while (v != sink) {
+            int dist = distance[v];
+            int degV = network.getAdjacentEdgeCount(v);
+            for (; adjListPt[v] < degV; adjListPt[v]++) {
+                int eId = network.getAdjacentEdgeId(v, adjListPt[v]);
+                if (distance[network.getTo(eId)] == dist + 1 && network.getResidualCapacity(eId) > 0) {
+                    break;
                 }
             }
+            if (adjListPt[v] < degV) {
+                int eId = network.getAdjacentEdgeId(v, adjListPt[v]);
+                path[top++] = eId;
+                v = network.getTo(eId);
+            } else if (top == 0) {
+                return 0;
+            } else {
+                // dead end, retreat and skip the edge leading here
+                v = network.getFrom(path[--top]);
+                adjListPt[v]++;
+            }
+        }
+
+        int df = INF;
+        for (int i = 0; i < top; i++) {
+            df = Math.min(df, network.getResidualCapacity(path[i]));
+        }
+        for (int i = 0; i < top; i++) {
+            network.incFlow(path[i], df);
         }
-        return 0;
+        return df;
     }
 
     @Override
@@ -84,7 +99,7 @@ public class DinicMaxFlowSolver implements MaxFlowSolver {
         while (dinicBfs()) {
             Arrays.fill(adjListPt, 0);
             while (true) {
-                if (dinicDfs(network.getSource(), INF) == 0) {
+                if (dinicDfs() == 0) {
                     break;
                 }
             }
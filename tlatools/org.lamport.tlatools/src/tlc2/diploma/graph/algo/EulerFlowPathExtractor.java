@@ -1,11 +1,8 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.MutableList;
-import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.api.list.primitive.MutableIntList;
-import org.eclipse.collections.impl.list.mutable.FastList;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
-import tlc2.diploma.graph.StateGraphPathExtractor.Edge;
+import tlc2.diploma.graph.PathSink;
 import tlc2.diploma.graph.StateNetwork;
 import tlc2.diploma.util.FileIntStack;
 
@@ -13,9 +10,10 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.List;
 
+// Hierholzer's algorithm over the flow circulation. The circuit is inherently sequential, so paths
+// are handed to the sinks in turn; since the stack yields a path back to front, only the edge
+// ids of the current path are buffered.
 public class EulerFlowPathExtractor implements FlowPathExtractor {
     private final StateNetwork network;
     private final FileIntStack edgeStack;
@@ -29,7 +27,7 @@ public class EulerFlowPathExtractor implements FlowPathExtractor {
             this.edgeStack = new FileIntStack(tempDir);
             this.adjListPt = IntArrayList.newWithNValues(network.getNodeCount(), 0);
 
-            int firstEdge = network.getAdjacentEdgeIds(network.getRoot()).get(0);
+            int firstEdge = network.getAdjacentEdgeId(network.getRoot(), 0);
             network.incFlow(firstEdge, -1);
             edgeStack.push(firstEdge);
         } catch (IOException e) {
@@ -37,58 +35,58 @@ public class EulerFlowPathExtractor implements FlowPathExtractor {
         }
     }
 
-    @Override
-    public Iterator<List<Edge>> iterator() {
-        return new Iterator<>() {
-            @Override
-            public boolean hasNext() {
-                return !edgeStack.isEmpty();
-            }
-
-            @Override
-            public List<Edge> next() {
-                try {
-                    MutableList<Edge> path = new FastList<>();
-
-                    while (!edgeStack.isEmpty()) {
-                        StateNetwork.Edge edge = network.getEdge(edgeStack.peek());
-                        int v = edge.getTo();
-
-                        IntList adjListV = network.getAdjacentEdgeIds(v);
-                        for (; adjListPt.get(v) < adjListV.size(); adjListPt.set(v, adjListPt.get(v) + 1)) {
-                            int eId = adjListV.get(adjListPt.get(v));
-                            StateNetwork.Edge fwd = network.getEdge(eId);
-                            if (!fwd.isForward()) {
-                                continue;
-                            }
+    // collects the edges of the next path in reverse order
+    private void nextPath(MutableIntList reversePath) throws IOException {
+        while (!edgeStack.isEmpty()) {
+            int eTop = edgeStack.peek();
+            int v = network.getTo(eTop);
 
-                            int to = fwd.getTo();
-                            if (to == network.getSink()) {
-                                continue;
-                            }
+            int degV = network.getAdjacentEdgeCount(v);
+            for (; adjListPt.get(v) < degV; adjListPt.set(v, adjListPt.get(v) + 1)) {
+                int eId = network.getAdjacentEdgeId(v, adjListPt.get(v));
+                if (!StateNetwork.isForward(eId)) {
+                    continue;
+                }
 
-                            if (fwd.getFlow() > 0) {
-                                network.incFlow(eId, -1);
-                                edgeStack.push(eId);
-                                break;
-                            }
-                        }
-                        if (adjListPt.get(v) == adjListV.size()) {
-                            int eId = edgeStack.pop();
-                            if (edge.hasAction()) {
-                                path.add(new Edge(eId / 2, edge.getFrom() - 1, edge.getTo() - 1));
-                            }
-                            if (edge.getFrom() == network.getRoot() && !path.isEmpty()) {
-                                break;
-                            }
-                        }
-                    }
+                int to = network.getTo(eId);
+                if (to == network.getSink()) {
+                    continue;
+                }
 
-                    return path.reverseThis();
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
+                if (network.getFlow(eId) > 0) {
+                    network.incFlow(eId, -1);
+                    edgeStack.push(eId);
+                    break;
                 }
             }
-        };
+            if (adjListPt.get(v) == degV) {
+                edgeStack.pop();
+                if (network.hasAction(eTop)) {
+                    reversePath.add(eTop);
+                }
+                if (network.getFrom(eTop) == network.getRoot() && !reversePath.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void extractPaths(PathSink[] sinks) throws IOException {
+        MutableIntList reversePath = new IntArrayList();
+        for (int i = 0; !edgeStack.isEmpty(); i = (i + 1) % sinks.length) {
+            reversePath.clear();
+            nextPath(reversePath);
+            if (reversePath.isEmpty()) {
+                break;
+            }
+            PathSink sink = sinks[i];
+            sink.startPath();
+            for (int j = reversePath.size() - 1; j >= 0; j--) {
+                int eId = reversePath.get(j);
+                sink.addTransition(eId / 2, network.getFrom(eId) - 1, network.getTo(eId) - 1);
+            }
+            sink.endPath();
+        }
     }
 }
@@ -1,8 +1,11 @@
 package tlc2.diploma.graph.algo;
 
-import tlc2.diploma.graph.StateGraphPathExtractor.Edge;
+import tlc2.diploma.graph.PathSink;
 
-import java.util.List;
+import java.io.IOException;
 
-public interface FlowPathExtractor extends Iterable<List<Edge>> {
+public interface FlowPathExtractor {
+    // writes every path of the cover to one of the sinks; extractors may run several threads,
+    // but every sink is only ever used by a single thread
+    void extractPaths(PathSink[] sinks) throws IOException;
 }
@@ -1,6 +1,5 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import tlc2.diploma.graph.StateNetwork;
@@ -16,6 +15,7 @@ public class HeuristicNetworkPathOptimizer implements NetworkPathOptimizer {
     private final MutableIntList adjListPt;
     private final MutableIntList color;
     private final MutableIntList distance;
+    private final MutableIntList path;
     private final int iterations;
 
     public HeuristicNetworkPathOptimizer(StateNetwork network, int iterations) {
@@ -23,38 +23,58 @@ public class HeuristicNetworkPathOptimizer implements NetworkPathOptimizer {
         this.adjListPt = IntArrayList.newWithNValues(network.getNodeCount(), 0);
         this.color = IntArrayList.newWithNValues(network.getNodeCount(), INF);
         this.distance = IntArrayList.newWithNValues(network.getNodeCount(), INF);
+        this.path = new IntArrayList();
         this.iterations = iterations;
     }
 
-    private int simpleCycleDfs(int u, int flow) {
-        if (flow == 0) {
-            return 0;
-        }
-        IntList adjListU = network.getAdjacentEdgeIds(u);
-        for (; adjListPt.get(u) < adjListU.size(); adjListPt.set(u, adjListPt.get(u) + 1)) {
-            int eId = adjListU.get(adjListPt.get(u));
-            StateNetwork.Edge fwd = network.getEdge(eId);
-            if (fwd.getFlow() == 0) {
-                continue;
-            }
-            int to = fwd.getTo(), w = distance.get(u) < distance.get(to) ? 0 : 1;
-            if (fwd.isForward() && to == network.getRoot() && !fwd.hasAction()) {
-                int df = Math.min(flow, fwd.getFlow());
-                network.incFlow(eId, -df);
-                return df;
-            }
-            if (!fwd.hasAction() && !fwd.getTwin().hasAction()) {
-                continue;
-            }
-            if (color.get(u) + w == color.get(to)) {
-                int df = simpleCycleDfs(to, Math.min(flow, fwd.getFlow()));
-                if (df > 0) {
-                    network.incFlow(eId, -df);
-                    return df;
+    // Searches for a cycle through the root with an explicit stack of path edges, so that
+    // the search depth is not bounded by the thread stack.
+    private int simpleCycleDfs(int start) {
+        path.clear();
+        int u = start;
+        while (true) {
+            int degU = network.getAdjacentEdgeCount(u);
+            int next = -1;
+            for (; adjListPt.get(u) < degU; adjListPt.set(u, adjListPt.get(u) + 1)) {
+                int eId = network.getAdjacentEdgeId(u, adjListPt.get(u));
+                if (network.getFlow(eId) == 0) {
+                    continue;
+                }
+                int to = network.getTo(eId), w = distance.get(u) < distance.get(to) ? 0 : 1;
+                if (StateNetwork.isForward(eId) && to == network.getRoot() && !network.hasAction(eId)) {
+                    path.add(eId);
+                    return cancelPathFlow();
+                }
+                if (!network.hasAction(eId) && !network.hasAction(StateNetwork.getTwin(eId))) {
+                    continue;
+                }
+                if (color.get(u) + w == color.get(to)) {
+                    next = eId;
+                    break;
                 }
             }
+            if (next != -1) {
+                path.add(next);
+                u = network.getTo(next);
+            } else if (path.isEmpty()) {
+                return 0;
+            } else {
+                // dead end, retreat and skip the edge leading here
+                u = network.getFrom(path.removeAtIndex(path.size() - 1));
+                adjListPt.set(u, adjListPt.get(u) + 1);
+            }
+        }
+    }
+
+    private int cancelPathFlow() {
+        int df = INF;
+        for (int i = 0; i < path.size(); i++) {
+            df = Math.min(df, network.getFlow(path.get(i)));
+        }
+        for (int i = 0; i < path.size(); i++) {
+            network.incFlow(path.get(i), -df);
         }
-        return 0;
+        return df;
     }
 
     private void distanceBfs() {
@@ -69,14 +89,13 @@ public class HeuristicNetworkPathOptimizer implements NetworkPathOptimizer {
         while (!queue.isEmpty()) {
             int u = queue.poll();
             int dist = distance.get(u);
-            IntList adjListU = network.getAdjacentEdgeIds(u);
-            for (int i = 0; i < adjListU.size(); i++) {
-                int eId = adjListU.get(i);
-                StateNetwork.Edge fwd = network.getEdge(eId);
-                if (!fwd.hasAction() && !fwd.getTwin().hasAction()) {
+            int degU = network.getAdjacentEdgeCount(u);
+            for (int i = 0; i < degU; i++) {
+                int eId = network.getAdjacentEdgeId(u, i);
+                if (!network.hasAction(eId) && !network.hasAction(StateNetwork.getTwin(eId))) {
                     continue;
                 }
-                int to = fwd.getTo();
+                int to = network.getTo(eId);
                 if (dist + 1 < distance.get(to)) {
                     distance.set(to, dist + 1);
                     queue.add(to);
@@ -96,14 +115,13 @@ public class HeuristicNetworkPathOptimizer implements NetworkPathOptimizer {
         while (!deque.isEmpty()) {
             int u = deque.pollFirst();
             int dist = color.get(u);
-            IntList adjListU = network.getAdjacentEdgeIds(u);
-            for (int i = 0; i < adjListU.size(); i++) {
-                int eId = adjListU.get(i);
-                StateNetwork.Edge fwd = network.getEdge(eId);
-                if (fwd.getFlow() == 0 || (!fwd.hasAction() && !fwd.getTwin().hasAction())) {
+            int degU = network.getAdjacentEdgeCount(u);
+            for (int i = 0; i < degU; i++) {
+                int eId = network.getAdjacentEdgeId(u, i);
+                if (network.getFlow(eId) == 0 || (!network.hasAction(eId) && !network.hasAction(StateNetwork.getTwin(eId)))) {
                     continue;
                 }
-                int to = fwd.getTo(), w = distance.get(u) < distance.get(to) ? 0 : 1;
+                int to = network.getTo(eId), w = distance.get(u) < distance.get(to) ? 0 : 1;
                 if (dist + w < color.get(to) && dist + w < StateNetwork.INF) {
                     color.set(to, dist + w);
                     if (w == 1) {
@@ -126,7 +144,7 @@ public class HeuristicNetworkPathOptimizer implements NetworkPathOptimizer {
             adjListPt.addAll(IntArrayList.newWithNValues(network.getNodeCount(), 0));
 
             boolean progress = false;
-            while (simpleCycleDfs(network.getRoot(), INF) != 0) {
+            while (simpleCycleDfs(network.getRoot()) != 0) {
                 progress = true;
             }
             if (!progress) {
@@ -0,0 +1,381 @@
+package tlc2.diploma.graph.algo;
+
+import tlc2.diploma.graph.StateNetwork;
+
+// Turns the maximum flow into a minimum cost flow by cost scaling (Goldberg-Tarjan
+// push-relabel refinement with global price updates). Every path ending at the root costs
+// pathCost and every extra traversal of a transition costs one, so with a pathCost larger
+// than any simple cycle the number of paths is minimized first and their total length
+// second. Works for cyclic and acyclic graphs alike. Source and sink edges stay saturated
+// and are left out, the remaining residual graph is copied into arrays for the duration.
+//
+// With a time limit the cheapest flow seen after a completed refinement phase is kept, so
+// the result is never worse than the maximum flow the optimizer started from.
+public class MinCostNetworkPathOptimizer implements NetworkPathOptimizer {
+    private static final int ALPHA = 16;
+    private static final int DEADLINE_CHECK_PERIOD = 4096;
+
+    private final StateNetwork network;
+    private final int pathCost;
+    private final long deadline;
+    private final int nodeCount;
+
+    // residual arcs grouped by tail; arc a belongs to edge arcEdge[a] / 2 and is its forward
+    // arc if arcEdge[a] is even
+    private int[] arcStart;
+    private int[] arcTo;
+    private int[] arcEdge;
+    private int[] edgeCost;
+    private int[] capacity;
+    private int[] flow;
+    private int[] bestFlow;
+    private long bestCost;
+    private long costScale;
+    private boolean optimal = false;
+
+    private final long[] price;
+    private final long[] excess;
+    private final int[] currentArc;
+    private final int[] queue;
+    private int queueHead = 0;
+    private int queueSize = 0;
+    private long relabelsSinceUpdate = 0;
+
+    // indexed binary heap of the price update
+    private final long[] distance;
+    private final int[] heap;
+    private final int[] heapPos;
+    private int heapSize = 0;
+
+    // timeLimitMillis <= 0 means no limit
+    public MinCostNetworkPathOptimizer(StateNetwork network, int pathCost, long timeLimitMillis) {
+        this.network = network;
+        this.pathCost = pathCost;
+        this.deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000L : Long.MAX_VALUE;
+        this.nodeCount = network.getNodeCount();
+        this.price = new long[nodeCount];
+        this.excess = new long[nodeCount];
+        this.currentArc = new int[nodeCount];
+        this.queue = new int[nodeCount];
+        this.distance = new long[nodeCount];
+        this.heap = new int[nodeCount];
+        this.heapPos = new int[nodeCount];
+    }
+
+    public MinCostNetworkPathOptimizer(StateNetwork network) {
+        this(network, network.getNodeCount(), 0);
+    }
+
+    // true if the flow has been proven to be of minimum cost
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    private boolean isAuxiliary(int v) {
+        return v == network.getSource() || v == network.getSink();
+    }
+
+    private void loadNetwork() {
+        int edgeCount = network.getEdgeCount() / 2;
+        edgeCost = new int[edgeCount];
+        capacity = new int[edgeCount];
+        flow = new int[edgeCount];
+        arcStart = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            int arcs = 0;
+            if (!isAuxiliary(v)) {
+                int degV = network.getAdjacentEdgeCount(v);
+                for (int i = 0; i < degV; i++) {
+                    if (!isAuxiliary(network.getTo(network.getAdjacentEdgeId(v, i)))) {
+                        arcs++;
+                    }
+                }
+            }
+            arcStart[v + 1] = arcStart[v] + arcs;
+        }
+
+        arcTo = new int[arcStart[nodeCount]];
+        arcEdge = new int[arcStart[nodeCount]];
+        long initialCost = 0;
+        for (int v = 0, a = 0; v < nodeCount; v++) {
+            if (isAuxiliary(v)) {
+                continue;
+            }
+            int degV = network.getAdjacentEdgeCount(v);
+            for (int i = 0; i < degV; i++) {
+                int eId = network.getAdjacentEdgeId(v, i);
+                int to = network.getTo(eId);
+                if (isAuxiliary(to)) {
+                    continue;
+                }
+                arcTo[a] = to;
+                arcEdge[a++] = eId;
+                if (StateNetwork.isForward(eId)) {
+                    int k = eId / 2;
+                    edgeCost[k] = (network.hasAction(eId) ? 1 : 0) + (to == network.getRoot() ? pathCost : 0);
+                    flow[k] = network.getFlow(eId);
+                    capacity[k] = network.getCapacity(eId);
+                    initialCost += (long) flow[k] * edgeCost[k];
+                }
+            }
+        }
+
+        // the original capacities are "infinite"; no optimal flow carries more on an edge
+        // than the cost of the initial one, which keeps all flows within int range
+        int limit = (int) Math.min(StateNetwork.INF / 2, Math.max(initialCost, 1));
+        for (int k = 0; k < edgeCount; k++) {
+            capacity[k] = Math.max(flow[k], Math.min(capacity[k], limit));
+        }
+        bestCost = initialCost;
+    }
+
+    private void storeNetwork() {
+        for (int i = 0; i < network.getEdgeCount(); i += 2) {
+            if (!isAuxiliary(network.getFrom(i)) && !isAuxiliary(network.getTo(i))) {
+                network.incFlow(i, flow[i / 2] - network.getFlow(i));
+            }
+        }
+    }
+
+    private long totalCost() {
+        long result = 0;
+        for (int k = 0; k < flow.length; k++) {
+            result += (long) flow[k] * edgeCost[k];
+        }
+        return result;
+    }
+
+    private int residualCapacity(int a) {
+        int k = arcEdge[a] >>> 1;
+        return (arcEdge[a] & 1) == 0 ? capacity[k] - flow[k] : flow[k];
+    }
+
+    private long scaledCost(int a) {
+        long cost = edgeCost[arcEdge[a] >>> 1] * costScale;
+        return (arcEdge[a] & 1) == 0 ? cost : -cost;
+    }
+
+    private long reducedCost(int a, int from) {
+        return scaledCost(a) + price[from] - price[arcTo[a]];
+    }
+
+    private void addFlow(int a, int delta) {
+        int k = arcEdge[a] >>> 1;
+        flow[k] += (arcEdge[a] & 1) == 0 ? delta : -delta;
+    }
+
+    private void push(int a, int from, int delta) {
+        int to = arcTo[a];
+        addFlow(a, delta);
+        excess[from] -= delta;
+        boolean wasActive = excess[to] > 0;
+        excess[to] += delta;
+        if (!wasActive && excess[to] > 0) {
+            queue[(queueHead + queueSize++) % nodeCount] = to;
+        }
+    }
+
+    private void relabel(int v, long epsilon) {
+        long newPrice = Long.MIN_VALUE;
+        for (int a = arcStart[v]; a < arcStart[v + 1]; a++) {
+            if (residualCapacity(a) > 0) {
+                newPrice = Math.max(newPrice, price[arcTo[a]] - scaledCost(a));
+            }
+        }
+        price[v] = newPrice - epsilon;
+        currentArc[v] = arcStart[v];
+        relabelsSinceUpdate++;
+    }
+
+    private void discharge(int v, long epsilon) {
+        while (excess[v] > 0) {
+            int a = currentArc[v];
+            if (a == arcStart[v + 1]) {
+                relabel(v, epsilon);
+                continue;
+            }
+            int residual = residualCapacity(a);
+            if (residual > 0 && reducedCost(a, v) < 0) {
+                push(a, v, (int) Math.min(excess[v], residual));
+            } else {
+                currentArc[v]++;
+            }
+        }
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        while (i > 0 && distance[heap[(i - 1) / 2]] > distance[v]) {
+            heap[i] = heap[(i - 1) / 2];
+            heapPos[heap[i]] = i;
+            i = (i - 1) / 2;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int c = 2 * i + 1;
+            if (c + 1 < heapSize && distance[heap[c + 1]] < distance[heap[c]]) {
+                c++;
+            }
+            if (distance[heap[c]] >= distance[v]) {
+                break;
+            }
+            heap[i] = heap[c];
+            heapPos[heap[i]] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+
+    // Global price update: lowers every price by epsilon times the distance to the nearest
+    // node with a deficit, where a residual arc is floor(reducedCost / epsilon) + 1 long.
+    // The flow stays epsilon-optimal, and excess finds long admissible paths to the deficits
+    // which otherwise would take a relabel per node on the way.
+    private void updatePrices(long epsilon) {
+        int activeLeft = 0;
+        heapSize = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            heapPos[v] = -1;
+            distance[v] = Long.MAX_VALUE;
+            if (excess[v] > 0) {
+                activeLeft++;
+            } else if (excess[v] < 0) {
+                distance[v] = 0;
+                heap[heapSize] = v;
+                siftUp(heapSize++);
+            }
+        }
+
+        long maxDistance = 0;
+        while (heapSize > 0 && activeLeft > 0) {
+            int w = heap[0];
+            heap[0] = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(0);
+            }
+            heapPos[w] = -2;
+            maxDistance = distance[w];
+            if (excess[w] > 0) {
+                activeLeft--;
+            }
+            for (int b = arcStart[w]; b < arcStart[w + 1]; b++) {
+                // the arc from u to w is the reverse of the arc b from w to u
+                int u = arcTo[b];
+                if (heapPos[u] == -2) {
+                    continue;
+                }
+                int k = arcEdge[b] >>> 1;
+                boolean reverseForward = (arcEdge[b] & 1) == 1;
+                int residual = reverseForward ? capacity[k] - flow[k] : flow[k];
+                if (residual == 0) {
+                    continue;
+                }
+                long cost = edgeCost[k] * costScale;
+                long reduced = (reverseForward ? cost : -cost) + price[u] - price[w];
+                long newDistance = distance[w] + Math.max(0, Math.floorDiv(reduced, epsilon) + 1);
+                if (newDistance < distance[u]) {
+                    distance[u] = newDistance;
+                    if (heapPos[u] == -1) {
+                        heap[heapSize] = u;
+                        siftUp(heapSize++);
+                    } else {
+                        siftUp(heapPos[u]);
+                    }
+                }
+            }
+        }
+
+        // nodes not scanned are at least maxDistance away
+        for (int v = 0; v < nodeCount; v++) {
+            price[v] -= epsilon * (heapPos[v] == -2 ? distance[v] : maxDistance);
+            currentArc[v] = arcStart[v];
+        }
+        relabelsSinceUpdate = 0;
+    }
+
+    // turns the epsilon * ALPHA-optimal flow into an epsilon-optimal one; returns false if
+    // the deadline has passed, leaving the flow infeasible
+    private boolean refine(long epsilon) {
+        for (int v = 0; v < nodeCount; v++) {
+            for (int a = arcStart[v]; a < arcStart[v + 1]; a++) {
+                int residual = residualCapacity(a);
+                if (residual > 0 && reducedCost(a, v) < 0) {
+                    addFlow(a, residual);
+                    excess[v] -= residual;
+                    excess[arcTo[a]] += residual;
+                }
+            }
+        }
+        queueHead = 0;
+        queueSize = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            currentArc[v] = arcStart[v];
+            if (excess[v] > 0) {
+                queue[queueSize++] = v;
+            }
+        }
+
+        if (queueSize > 0) {
+            updatePrices(epsilon);
+        }
+        for (long steps = 1; queueSize > 0; steps++) {
+            if (steps % DEADLINE_CHECK_PERIOD == 0 && System.nanoTime() > deadline) {
+                return false;
+            }
+            if (relabelsSinceUpdate > nodeCount) {
+                updatePrices(epsilon);
+            }
+            int v = queue[queueHead];
+            queueHead = (queueHead + 1) % nodeCount;
+            queueSize--;
+            discharge(v, epsilon);
+        }
+        return true;
+    }
+
+    @Override
+    public void optimizePaths() {
+        loadNetwork();
+        if (bestCost == 0) {
+            optimal = true;
+            return;
+        }
+
+        // costs are scaled by n + 1 so that epsilon = 1 implies optimality; for huge graphs
+        // the scale is reduced to keep prices within long range, giving an approximation
+        long maxCost = pathCost + 1L;
+        double priceBound = 4.0 * maxCost * nodeCount * (nodeCount + 1.0);
+        costScale = priceBound < Long.MAX_VALUE / 2.0
+                ? nodeCount + 1
+                : Math.max(1, (long) (Long.MAX_VALUE / 2.0 / (4.0 * maxCost * nodeCount)));
+        boolean exact = costScale == nodeCount + 1;
+
+        bestFlow = flow.clone();
+        boolean finished = true;
+        long epsilon = maxCost * costScale;
+        while (epsilon > 1) {
+            epsilon = Math.max(1, epsilon / ALPHA);
+            if (!refine(epsilon)) {
+                finished = false;
+                break;
+            }
+            long cost = totalCost();
+            if (cost < bestCost) {
+                bestCost = cost;
+                System.arraycopy(flow, 0, bestFlow, 0, flow.length);
+            }
+            if (epsilon > 1 && System.nanoTime() > deadline) {
+                finished = false;
+                break;
+            }
+        }
+        flow = bestFlow;
+        storeNetwork();
+        optimal = finished && exact;
+    }
+}
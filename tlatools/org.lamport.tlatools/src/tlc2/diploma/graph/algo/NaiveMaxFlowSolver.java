@@ -1,6 +1,5 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.api.list.primitive.MutableBooleanList;
 import org.eclipse.collections.impl.list.mutable.primitive.BooleanArrayList;
 import tlc2.diploma.graph.StateNetwork;
@@ -10,63 +9,93 @@ public class NaiveMaxFlowSolver implements MaxFlowSolver {
 
     private final MutableBooleanList used;
 
+    private final int[] frameEdge;
+    private final int[] framePt;
+    private final int[] frameSum;
+    private final boolean[] frameDeadEnd;
+
     public NaiveMaxFlowSolver(StateNetwork network) {
         this.network = network;
         this.used = BooleanArrayList.newWithNValues(network.getNodeCount(), false);
+        // every frame but the topmost one expands a distinct node
+        this.frameEdge = new int[network.getNodeCount() + 1];
+        this.framePt = new int[network.getNodeCount() + 1];
+        this.frameSum = new int[network.getNodeCount() + 1];
+        this.frameDeadEnd = new boolean[network.getNodeCount() + 1];
     }
 
-    private int naiveDfs(int eId) {
-        StateNetwork.Edge edge = network.getEdge(eId);
-        int u = edge.getTo();
-        IntList adjListU = network.getAdjacentEdgeIds(u);
+    // Pushes one unit of flow along every action edge reachable from the given edge, with an
+    // explicit stack of frames so that the search depth is not bounded by the thread stack.
+    // A frame's position is -1 if its node has been visited before and is not expanded again.
+    private void naiveDfs(int startEdge) {
+        int top = 0;
+        frameEdge[top] = startEdge;
+        frameSum[top] = 0;
+        framePt[top] = enter(network.getTo(startEdge));
+        frameDeadEnd[top] = true;
+        top++;
 
-        boolean deadEnd = true;
-        int sum = 0;
-        if (!used.get(u)) {
-            used.set(u, true);
-            for (int i = 0; i < adjListU.size(); i++) {
-                int j = adjListU.get(i);
-                StateNetwork.Edge e = network.getEdge(j);
-                if (!e.isForward() || !e.hasAction()) {
+        while (top > 0) {
+            int f = top - 1;
+            int u = network.getTo(frameEdge[f]);
+            if (framePt[f] != -1 && framePt[f] < network.getAdjacentEdgeCount(u)) {
+                int j = network.getAdjacentEdgeId(u, framePt[f]++);
+                if (!StateNetwork.isForward(j) || !network.hasAction(j)) {
                     continue;
                 }
-                deadEnd = false;
-                sum += naiveDfs(j);
+                frameDeadEnd[f] = false;
+                frameEdge[top] = j;
+                frameSum[top] = 0;
+                framePt[top] = enter(network.getTo(j));
+                frameDeadEnd[top] = true;
+                top++;
+                continue;
             }
-        }
-        if (deadEnd) {
-            for (int i = 0; i < adjListU.size(); i++) {
-                int j = adjListU.get(i);
-                StateNetwork.Edge rootEdge = network.getEdge(j);
-                if (rootEdge.isForward() && rootEdge.getTo() == network.getRoot()) {
-                    network.incFlow(j, 1);
-                    sum += 1;
+
+            int sum = frameSum[f];
+            if (frameDeadEnd[f]) {
+                int degU = network.getAdjacentEdgeCount(u);
+                for (int i = 0; i < degU; i++) {
+                    int j = network.getAdjacentEdgeId(u, i);
+                    if (StateNetwork.isForward(j) && network.getTo(j) == network.getRoot()) {
+                        network.incFlow(j, 1);
+                        sum += 1;
+                    }
                 }
             }
+            network.incFlow(frameEdge[f], sum);
+            top--;
+            if (top > 0) {
+                frameSum[top - 1] += sum;
+            }
+        }
+    }
+
+    private int enter(int u) {
+        if (used.get(u)) {
+            return -1;
         }
-        network.incFlow(eId, sum);
-        return sum;
+        used.set(u, true);
+        return 0;
     }
 
     @Override
     public void findMaxFlow() {
         used.set(network.getRoot(), true);
-        IntList adjListRoot = network.getAdjacentEdgeIds(network.getRoot());
-        for (int i = 0; i < adjListRoot.size(); i++) {
-            int eId = adjListRoot.get(i);
-            StateNetwork.Edge edge = network.getEdge(eId);
-            if (edge.isForward() && edge.hasAction()) {
+        int degRoot = network.getAdjacentEdgeCount(network.getRoot());
+        for (int i = 0; i < degRoot; i++) {
+            int eId = network.getAdjacentEdgeId(network.getRoot(), i);
+            if (StateNetwork.isForward(eId) && network.hasAction(eId)) {
                 naiveDfs(eId);
             }
         }
 
         for (int eId = 0; eId < network.getEdgeCount(); eId += 2) {
-            StateNetwork.Edge edge = network.getEdge(eId);
-            if (edge.hasAction()) {
+            if (network.hasAction(eId)) {
                 network.incFlow(eId, -1);
             }
-            if (edge.getFrom() == network.getSource() || edge.getTo() == network.getSink()) {
-                int cap = edge.getCapacity();
+            if (network.getFrom(eId) == network.getSource() || network.getTo(eId) == network.getSink()) {
+                int cap = network.getCapacity(eId);
                 network.incFlow(eId, cap);
             }
         }
@@ -0,0 +1,204 @@
+package tlc2.diploma.graph.algo;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import tlc2.diploma.graph.StateNetwork;
+import util.ToolIO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static tlc2.diploma.graph.StateNetwork.INF;
+
+// Lock-free push-relabel (Hong, 2008) executed in synchronous rounds: all nodes with excess are
+// discharged in parallel, nodes that receive excess are collected for the next round, and
+// between rounds heights are periodically recomputed by a global relabeling.
+public class ParallelPushRelabelMaxFlowSolver implements MaxFlowSolver {
+    private static final int CHUNK_SIZE = 256;
+
+    private final StateNetwork network;
+    private final int threads;
+    private final int nodeCount;
+    private final AtomicIntegerArray excess;
+    private final AtomicIntegerArray height;
+    // round for which a node has last been queued, so that no node is discharged twice per round
+    private final AtomicIntegerArray queuedRound;
+    private final LongAdder relabels;
+
+    private ExecutorService executor;
+    private int round = 0;
+
+    public ParallelPushRelabelMaxFlowSolver(StateNetwork network, int threads) {
+        this.network = network;
+        this.threads = Math.max(1, threads);
+        this.nodeCount = network.getNodeCount();
+        this.excess = new AtomicIntegerArray(nodeCount);
+        this.height = new AtomicIntegerArray(nodeCount);
+        this.queuedRound = new AtomicIntegerArray(nodeCount);
+        this.relabels = new LongAdder();
+    }
+
+    private boolean enqueue(int v, int forRound) {
+        if (v == network.getSource() || v == network.getSink()) {
+            return false;
+        }
+        while (true) {
+            int queued = queuedRound.get(v);
+            if (queued == forRound) {
+                return false;
+            }
+            if (queuedRound.compareAndSet(v, queued, forRound)) {
+                return true;
+            }
+        }
+    }
+
+    private void discharge(int u, MutableIntList next) {
+        int degU = network.getAdjacentEdgeCount(u);
+        while (excess.get(u) > 0) {
+            int minHeight = INF, minEdge = -1;
+            for (int i = 0; i < degU; i++) {
+                int eId = network.getAdjacentEdgeId(u, i);
+                if (network.getResidualCapacityAtomically(eId) > 0) {
+                    int h = height.get(network.getTo(eId));
+                    if (h < minHeight) {
+                        minHeight = h;
+                        minEdge = eId;
+                    }
+                }
+            }
+            if (minEdge == -1) {
+                return;
+            }
+
+            if (height.get(u) > minHeight) {
+                // only the owner of u decreases the residual capacity of u's edges, so it cannot shrink
+                // below the value read here
+                int df = Math.min(excess.get(u), network.getResidualCapacityAtomically(minEdge));
+                int v = network.getTo(minEdge);
+                network.incFlowAtomically(minEdge, df);
+                excess.addAndGet(u, -df);
+                excess.addAndGet(v, df);
+                if (enqueue(v, round + 1)) {
+                    next.add(v);
+                }
+            } else {
+                height.set(u, minHeight + 1);
+                relabels.increment();
+            }
+        }
+    }
+
+    private int[] dischargeAll(int[] frontier) throws InterruptedException {
+        AtomicInteger cursor = new AtomicInteger();
+        List<Callable<MutableIntList>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                MutableIntList next = new IntArrayList();
+                int start;
+                while ((start = cursor.getAndAdd(CHUNK_SIZE)) < frontier.length) {
+                    int end = Math.min(frontier.length, start + CHUNK_SIZE);
+                    for (int i = start; i < end; i++) {
+                        discharge(frontier[i], next);
+                    }
+                }
+                return next;
+            });
+        }
+
+        MutableIntList next = new IntArrayList();
+        for (Future<MutableIntList> future : executor.invokeAll(tasks)) {
+            try {
+                next.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return next.toArray();
+    }
+
+    // exact distance labels: distance to the sink in the residual network, or the node count
+    // plus the distance to the source for nodes that can only return excess to the source
+    private void globalRelabel() {
+        int[] label = new int[nodeCount];
+        Arrays.fill(label, -1);
+        int[] queue = new int[nodeCount];
+        int queueLeft = 0, queueRight = 0;
+
+        label[network.getSink()] = 0;
+        queue[queueRight++] = network.getSink();
+        label[network.getSource()] = nodeCount;
+        for (int phase = 0; phase < 2; phase++) {
+            while (queueLeft < queueRight) {
+                int v = queue[queueLeft++];
+                int degV = network.getAdjacentEdgeCount(v);
+                for (int i = 0; i < degV; i++) {
+                    int eId = network.getAdjacentEdgeId(v, i);
+                    int w = network.getTo(eId);
+                    if (label[w] == -1 && network.getResidualCapacity(StateNetwork.getTwin(eId)) > 0) {
+                        label[w] = label[v] + 1;
+                        queue[queueRight++] = w;
+                    }
+                }
+            }
+            if (phase == 0) {
+                queue[queueRight++] = network.getSource();
+            }
+        }
+
+        for (int v = 0; v < nodeCount; v++) {
+            height.set(v, label[v] == -1 ? 2 * nodeCount : label[v]);
+        }
+    }
+
+    @Override
+    public void findMaxFlow() {
+        ToolIO.out.print("    ParallelPushRelabelMaxFlowSolver started (" + threads + " threads)\n");
+
+        int source = network.getSource();
+        MutableIntList initial = new IntArrayList();
+        int degSource = network.getAdjacentEdgeCount(source);
+        for (int i = 0; i < degSource; i++) {
+            int eId = network.getAdjacentEdgeId(source, i);
+            int df = network.getResidualCapacity(eId);
+            if (df > 0) {
+                int v = network.getTo(eId);
+                network.incFlow(eId, df);
+                excess.addAndGet(v, df);
+                if (enqueue(v, 1)) {
+                    initial.add(v);
+                }
+            }
+        }
+        globalRelabel();
+
+        executor = Executors.newFixedThreadPool(threads);
+        try {
+            int[] frontier = initial.toArray();
+            long lastGlobalRelabel = 0;
+            while (frontier.length > 0) {
+                round++;
+                frontier = dischargeAll(frontier);
+                if (relabels.sum() - lastGlobalRelabel > nodeCount) {
+                    globalRelabel();
+                    lastGlobalRelabel = relabels.sum();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        ToolIO.out.print("    ParallelPushRelabelMaxFlowSolver finished (" + round + " rounds)\n");
+    }
+}
@@ -1,6 +1,5 @@
 package tlc2.diploma.graph.algo;
 
-import org.eclipse.collections.api.list.primitive.IntList;
 import tlc2.diploma.graph.StateNetwork;
 
 import java.util.*;
@@ -26,13 +25,15 @@ public class PushRelabelMaxFlowSolver implements MaxFlowSolver {
         this.adjListPt = new ArrayList<>(Collections.nCopies(network.getNodeCount(), 0));
         this.excessQueue = new ArrayDeque<>();
 
-        network.getAdjacentEdgeIds(network.getSource()).forEach(this::push);
+        int degSource = network.getAdjacentEdgeCount(network.getSource());
+        for (int i = 0; i < degSource; i++) {
+            push(network.getAdjacentEdgeId(network.getSource(), i));
+        }
     }
 
     private void push(int eId) {
-        StateNetwork.Edge e = network.getEdge(eId);
-        int u = e.getFrom(), v = e.getTo();
-        int d = Math.min(excess.get(u), e.getCapacity() - e.getFlow());
+        int u = network.getFrom(eId), v = network.getTo(eId);
+        int d = Math.min(excess.get(u), network.getResidualCapacity(eId));
         network.incFlow(eId, d);
         excess.set(u, excess.get(u) - d);
         excess.set(v, excess.get(v) + d);
@@ -43,12 +44,11 @@ public class PushRelabelMaxFlowSolver implements MaxFlowSolver {
 
     private void relabel(int u) {
         int d = INF;
-        IntList adjListU = network.getAdjacentEdgeIds(u);
-        for (int i = 0; i < adjListU.size(); i++) {
-            int eId = adjListU.get(i);
-            StateNetwork.Edge e = network.getEdge(eId);
-            if (e.getCapacity() - e.getFlow() > 0) {
-                d = Math.min(d, height.get(e.getTo()));
+        int degU = network.getAdjacentEdgeCount(u);
+        for (int i = 0; i < degU; i++) {
+            int eId = network.getAdjacentEdgeId(u, i);
+            if (network.getResidualCapacity(eId) > 0) {
+                d = Math.min(d, height.get(network.getTo(eId)));
             }
         }
         if (d < INF) {
@@ -59,11 +59,10 @@ public class PushRelabelMaxFlowSolver implements MaxFlowSolver {
     private void discharge(int u) {
         while (excess.get(u) > 0) {
             int pt = adjListPt.get(u);
-            IntList adjListU = network.getAdjacentEdgeIds(u);
-            if (pt < adjListU.size()) {
-                int eId = adjListU.get(pt);
-                StateNetwork.Edge e = network.getEdge(eId);
-                if (e.getCapacity() - e.getFlow() > 0 && height.get(e.getFrom()) > height.get(e.getTo())) {
+            int degU = network.getAdjacentEdgeCount(u);
+            if (pt < degU) {
+                int eId = network.getAdjacentEdgeId(u, pt);
+                if (network.getResidualCapacity(eId) > 0 && height.get(network.getFrom(eId)) > height.get(network.getTo(eId))) {
                     push(eId);
                 } else {
                     adjListPt.set(u, pt + 1);
@@ -0,0 +1,23 @@
+package tlc2.diploma.util;
+
+import org.eclipse.collections.api.map.primitive.MutableLongIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+public class HeapLongIntTable implements LongIntTable {
+    private final MutableLongIntMap map = new LongIntHashMap();
+
+    @Override
+    public void put(long key, int value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public int getIfAbsent(long key, int ifAbsent) {
+        return map.getIfAbsent(key, ifAbsent);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,34 @@
+package tlc2.diploma.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface IntArrayStore extends Closeable {
+    int get(long index);
+
+    void set(long index, int value);
+
+    void ensureCapacity(long capacity);
+
+    // atomic counterparts of get and set for concurrent readers and writers of the same index
+
+    int getVolatile(long index);
+
+    int getAndAdd(long index, int delta);
+
+    boolean compareAndSet(long index, int expected, int value);
+
+    // a long occupies the two int slots 2 * index and 2 * index + 1
+    default long getLong(long index) {
+        return ((long) get(2 * index) << Integer.SIZE) | (get(2 * index + 1) & 0xFFFFFFFFL);
+    }
+
+    default void setLong(long index, long value) {
+        set(2 * index, (int) (value >>> Integer.SIZE));
+        set(2 * index + 1, (int) value);
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,9 @@
+package tlc2.diploma.util;
+
+public interface LongIntTable {
+    void put(long key, int value);
+
+    int getIfAbsent(long key, int ifAbsent);
+
+    void clear();
+}
@@ -0,0 +1,93 @@
+package tlc2.diploma.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class MappedIntArray implements IntArrayStore {
+    private static final int SEGMENT_BITS = 24;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int MAX_SEGMENTS = 1 << 10;
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    // segments are mapped lazily; mapping past the end of the file grows it with zeros
+    private final AtomicReferenceArray<ByteBuffer> segments;
+
+    public MappedIntArray(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+        file.toFile().deleteOnExit();
+        this.segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    }
+
+    private ByteBuffer segment(long index) {
+        int segmentIndex = (int) (index >>> SEGMENT_BITS);
+        ByteBuffer segment = segments.get(segmentIndex);
+        if (segment == null) {
+            synchronized (this) {
+                segment = segments.get(segmentIndex);
+                if (segment == null) {
+                    try {
+                        segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                                (long) segmentIndex * SEGMENT_SIZE * Integer.BYTES,
+                                (long) SEGMENT_SIZE * Integer.BYTES);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    segments.set(segmentIndex, segment);
+                }
+            }
+        }
+        return segment;
+    }
+
+    private static int offset(long index) {
+        return ((int) index & SEGMENT_MASK) * Integer.BYTES;
+    }
+
+    @Override
+    public int get(long index) {
+        return (int) INTS.get(segment(index), offset(index));
+    }
+
+    @Override
+    public void set(long index, int value) {
+        INTS.set(segment(index), offset(index), value);
+    }
+
+    @Override
+    public int getVolatile(long index) {
+        return (int) INTS.getVolatile(segment(index), offset(index));
+    }
+
+    @Override
+    public int getAndAdd(long index, int delta) {
+        return (int) INTS.getAndAdd(segment(index), offset(index), delta);
+    }
+
+    @Override
+    public boolean compareAndSet(long index, int expected, int value) {
+        return INTS.compareAndSet(segment(index), offset(index), expected, value);
+    }
+
+    @Override
+    public void ensureCapacity(long capacity) {
+        for (long i = 0; i < capacity; i += SEGMENT_SIZE) {
+            segment(i);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
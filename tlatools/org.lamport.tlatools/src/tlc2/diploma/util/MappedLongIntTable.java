@@ -0,0 +1,144 @@
+package tlc2.diploma.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// open addressing table with linear probing kept in a memory-mapped file, so that it is
+// paged out to disk by the OS instead of occupying heap
+public class MappedLongIntTable implements LongIntTable {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private final Path dir;
+    private final String name;
+    private int generation = 0;
+
+    private Path file;
+    private LongBuffer keys;
+    // values are stored incremented by one, so that zero marks an empty slot
+    private IntBuffer values;
+    private int capacity;
+    private int size;
+
+    public MappedLongIntTable(Path dir, String name) {
+        this.dir = dir;
+        this.name = name;
+    }
+
+    private static int slot(long key, int capacity) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - Integer.numberOfTrailingZeros(capacity)));
+    }
+
+    private void allocate(int capacity) {
+        try {
+            Path file = dir.resolve(String.format("%s-%03d.dat", name, generation++));
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        (long) capacity * (Long.BYTES + Integer.BYTES));
+            }
+            file.toFile().deleteOnExit();
+            buffer.order(ByteOrder.nativeOrder());
+            LongBuffer keys = buffer.asLongBuffer();
+            buffer.position(capacity * Long.BYTES);
+            IntBuffer values = buffer.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+
+            deleteFile();
+            this.file = file;
+            this.keys = keys;
+            this.values = values;
+            this.capacity = capacity;
+            this.size = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteFile() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // the file stays mapped until collected on some platforms, it is deleted on exit then
+            }
+        }
+    }
+
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("mapped table " + name + " is full");
+        }
+        LongBuffer oldKeys = keys;
+        IntBuffer oldValues = values;
+        int oldCapacity = capacity;
+        allocate(2 * capacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            int value = oldValues.get(i);
+            if (value != 0) {
+                insert(oldKeys.get(i), value);
+            }
+        }
+    }
+
+    private void insert(long key, int storedValue) {
+        int mask = capacity - 1;
+        for (int i = slot(key, capacity); ; i = (i + 1) & mask) {
+            if (values.get(i) == 0) {
+                keys.put(i, key);
+                values.put(i, storedValue);
+                size++;
+                return;
+            }
+            if (keys.get(i) == key) {
+                values.put(i, storedValue);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void put(long key, int value) {
+        if (keys == null) {
+            allocate(INITIAL_CAPACITY);
+        } else if (2 * (size + 1) > capacity) {
+            grow();
+        }
+        insert(key, value + 1);
+    }
+
+    @Override
+    public int getIfAbsent(long key, int ifAbsent) {
+        if (keys == null) {
+            return ifAbsent;
+        }
+        int mask = capacity - 1;
+        for (int i = slot(key, capacity); ; i = (i + 1) & mask) {
+            int value = values.get(i);
+            if (value == 0) {
+                return ifAbsent;
+            }
+            if (keys.get(i) == key) {
+                return value - 1;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        deleteFile();
+        file = null;
+        keys = null;
+        values = null;
+        capacity = 0;
+        size = 0;
+    }
+}
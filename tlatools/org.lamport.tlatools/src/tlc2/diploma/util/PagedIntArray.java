@@ -0,0 +1,64 @@
+package tlc2.diploma.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class PagedIntArray implements IntArrayStore {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 18;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // pages are allocated lazily and published with CAS, so concurrent writers to
+    // distinct indices never block each other
+    private final AtomicReferenceArray<int[]> pages;
+
+    public PagedIntArray() {
+        this.pages = new AtomicReferenceArray<>(MAX_PAGES);
+    }
+
+    private int[] page(int pageIndex) {
+        int[] page = pages.get(pageIndex);
+        if (page == null) {
+            page = new int[PAGE_SIZE];
+            if (!pages.compareAndSet(pageIndex, null, page)) {
+                page = pages.get(pageIndex);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public int get(long index) {
+        return pages.get((int) (index >>> PAGE_BITS))[(int) index & PAGE_MASK];
+    }
+
+    @Override
+    public void set(long index, int value) {
+        page((int) (index >>> PAGE_BITS))[(int) index & PAGE_MASK] = value;
+    }
+
+    @Override
+    public int getVolatile(long index) {
+        return (int) INTS.getVolatile(page((int) (index >>> PAGE_BITS)), (int) index & PAGE_MASK);
+    }
+
+    @Override
+    public int getAndAdd(long index, int delta) {
+        return (int) INTS.getAndAdd(page((int) (index >>> PAGE_BITS)), (int) index & PAGE_MASK, delta);
+    }
+
+    @Override
+    public boolean compareAndSet(long index, int expected, int value) {
+        return INTS.compareAndSet(page((int) (index >>> PAGE_BITS)), (int) index & PAGE_MASK, expected, value);
+    }
+
+    @Override
+    public void ensureCapacity(long capacity) {
+        for (long i = 0; i < capacity; i += PAGE_SIZE) {
+            page((int) (i >>> PAGE_BITS));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package tlc2.diploma.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+public class StripedLongIntMap {
+    private static final int DEFAULT_STRIPE_COUNT = 1024;
+    private static final long AWAIT_POLL_MILLIS = 100;
+
+    private final LongIntTable[] stripes;
+    private final int mask;
+
+    public StripedLongIntMap(int stripeCount, IntFunction<LongIntTable> stripeFactory) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new LongIntTable[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = stripeFactory.apply(i);
+        }
+        this.mask = size - 1;
+    }
+
+    public StripedLongIntMap(IntFunction<LongIntTable> stripeFactory) {
+        this(DEFAULT_STRIPE_COUNT, stripeFactory);
+    }
+
+    public StripedLongIntMap() {
+        this(i -> new HeapLongIntTable());
+    }
+
+    private LongIntTable stripe(long key) {
+        // fingerprints are uniformly distributed, folding the high bits in is enough
+        return stripes[(int) (key ^ (key >>> 32)) & mask];
+    }
+
+    public void put(long key, int value) {
+        LongIntTable stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+            stripe.notifyAll();
+        }
+    }
+
+    // returns the value the key maps to; if the key is absent, it is first mapped to the
+    // non-negative value of newValue, which is called with the stripe lock held
+    public int getOrAssign(long key, IntSupplier newValue) {
+        LongIntTable stripe = stripe(key);
+        synchronized (stripe) {
+            int present = stripe.getIfAbsent(key, -1);
+            if (present != -1) {
+                return present;
+            }
+            int value = newValue.getAsInt();
+            stripe.put(key, value);
+            stripe.notifyAll();
+            return value;
+        }
+    }
+
+    public int getIfAbsent(long key, int ifAbsent) {
+        LongIntTable stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.getIfAbsent(key, ifAbsent);
+        }
+    }
+
+    // blocks until a non-negative value has been put for the given key, or throws a
+    // CancellationException once cancelled holds; cancelled is polled outside the stripe lock
+    public int await(long key, BooleanSupplier cancelled) throws InterruptedException {
+        LongIntTable stripe = stripe(key);
+        while (true) {
+            synchronized (stripe) {
+                int value = stripe.getIfAbsent(key, -1);
+                if (value != -1) {
+                    return value;
+                }
+                stripe.wait(AWAIT_POLL_MILLIS);
+            }
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("no value has been put for key " + key);
+            }
+        }
+    }
+
+    public void clear() {
+        for (LongIntTable stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+}
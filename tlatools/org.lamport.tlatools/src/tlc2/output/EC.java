@@ -232,6 +232,8 @@ public interface EC
     public static final int TLC_SUCCESS = 2193;
     public static final int TLC_SEARCH_DEPTH = 2194;
     public static final int TLC_STATE_GRAPH_OUTDEGREE = 2268;
+    public static final int TLC_STATE_GRAPH_LOCAL_DUPLICATES = 2285;
+    public static final int TLC_BITSTATE_OMITTED_STATES = 2286;
     public static final int TLC_CHECKPOINT_START = 2195;
     public static final int TLC_CHECKPOINT_END = 2196;
     public static final int TLC_CHECKPOINT_RECOVER_START = 2197;
@@ -249,6 +251,7 @@ public interface EC
     public static final int TLC_FP_COMPLETED = 2211;
     
     public static final int TLC_LIVE_IMPLIED = 2212;
+    public static final int TLC_LIVE_ENABLED_CACHE = 2287;
     public static final int TLC_LIVE_CANNOT_HANDLE_FORMULA = 2213;
     public static final int TLC_LIVE_WRONG_FORMULA_FORMAT = 2214;
     public static final int TLC_LIVE_ENCOUNTERED_ACTIONS = 2249;
@@ -848,6 +848,9 @@ public class MP
         case EC.TLC_LIVE_IMPLIED:
             b.append("Implied-temporal checking--satisfiability problem has %1% branches.");
             break;
+        case EC.TLC_LIVE_ENABLED_CACHE:
+            b.append("The ENABLED predicates of the fairness conditions were looked up %1% times, %2% of which (%3%) were answered from the cache.");
+            break;
         case EC.TLC_LIVE_CANNOT_HANDLE_FORMULA:
         	if (parameters.length > 1) {
         		b.append("TLC cannot handle the temporal formula %1%:\n%2%");
@@ -1053,6 +1056,14 @@ public class MP
         case EC.TLC_STATE_GRAPH_OUTDEGREE:
 			b.append("The average outdegree of the complete state graph is %2% (minimum is %1%, the maximum %4% and the 95th percentile is %3%).");
             break;
+        case EC.TLC_STATE_GRAPH_LOCAL_DUPLICATES:
+			b.append("%1% of the %2% states generated were duplicate successors of the same state and have not been looked up in the fingerprint set.");
+            break;
+        case EC.TLC_BITSTATE_OMITTED_STATES:
+			b.append("Bitstate hashing has set %1% of %2% bits with %3% hash functions per state. "
+					+ "An estimated %4% distinct states have been omitted because their bits had been set by other states, "
+					+ "thus the state space has not been explored exhaustively.");
+            break;
        case EC.TLC_CHECKPOINT_START:
             b.append("Checkpointing of run %1%");
             break;
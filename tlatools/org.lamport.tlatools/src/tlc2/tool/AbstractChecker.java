@@ -60,7 +60,7 @@ public abstract class AbstractChecker
     protected TLCState predErrState;
     protected TLCState errState;
     protected int errorCode;
-    protected boolean done;
+    protected volatile boolean done;
     protected boolean keepCallStack;
     protected final boolean checkDeadlock;
     protected final boolean checkLiveness;
@@ -156,6 +156,14 @@ public abstract class AbstractChecker
 		});
     }
 
+    /**
+     * @return true iff model checking has stopped or is about to stop, e.g.
+     *         because a worker found a violation.
+     */
+    public final boolean isDone() {
+    	return this.done;
+    }
+
     public final boolean setDone()
     {
     	boolean old = this.done;
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import tlc2.tool.fp.FPSet;
+import tlc2.tool.queue.DiskStateQueue;
+import tlc2.tool.queue.IStateQueue;
+import tlc2.util.BitVector;
+import tlc2.util.BufferedRandomAccessFile;
+import util.FileUtil;
+
+/**
+ * Delayed duplicate detection turns the breadth-first search of
+ * {@link ModelChecker} into an external-memory search: Workers do not look up
+ * the successors of a state in the {@link FPSet} right away, but append them as
+ * candidates of the next level. Once the current level has been explored
+ * completely, the fingerprints of all candidates are sorted and put into the
+ * {@link FPSet} with a single {@link FPSet#putBatch(long[], int, BitVector)}. A
+ * disk-based set merges such a batch against its sorted fingerprint file in one
+ * sequential pass instead of one random access per fingerprint. Finally, the
+ * candidates are streamed into the state queue in the order in which they have
+ * been generated, skipping the ones whose fingerprints had been seen before.
+ * <p>
+ * The candidate states are kept in disk-backed queues and their fingerprints in
+ * a file next to them. A level with more than {@link #RUN_SIZE} candidates is
+ * resolved in runs of consecutive candidates, i.e. one
+ * {@link FPSet#putBatch(long[], int, BitVector)} per run. Because the runs are
+ * put in the order in which the candidates have been generated, a fingerprint
+ * whose first occurrence is in an earlier run is seen in all later ones. Two
+ * sets of candidates alternate, so that workers can expand the states of the
+ * next level while its candidates are being resolved.
+ */
+final class DelayedDuplicateDetector {
+
+	/**
+	 * The maximum number of candidate fingerprints that are sorted in memory and
+	 * put into the {@link FPSet} at once.
+	 */
+	static final int RUN_SIZE = Integer.getInteger(DelayedDuplicateDetector.class.getName() + ".runSize", 1 << 20);
+
+	private final FPSet fpSet;
+	private final IStateQueue squeue;
+	private final Candidates[] candidates = new Candidates[2];
+	/**
+	 * Index of the {@link Candidates} workers append to (guarded by this).
+	 */
+	private int current = 0;
+	/**
+	 * Serializes the resolution of candidates.
+	 */
+	private final Object resolveLock = new Object();
+
+	DelayedDuplicateDetector(final String metadir, final FPSet fpSet, final IStateQueue squeue) throws IOException {
+		this.fpSet = fpSet;
+		this.squeue = squeue;
+		for (int i = 0; i < this.candidates.length; i++) {
+			// Each DiskStateQueue needs a directory of its own for its pool files.
+			final File dir = new File(metadir + FileUtil.separator + "candidates" + i);
+			dir.mkdirs();
+			this.candidates[i] = new Candidates(dir.getPath());
+		}
+	}
+
+	/**
+	 * Appends the first <code>cnt</code> states and their fingerprints to the
+	 * candidates of the next level. The states are expected to carry the trace
+	 * pointer of their predecessor (see {@link Worker#writeDelayedState}).
+	 */
+	synchronized void add(final TLCState[] states, final long[] fps, final int cnt) throws IOException {
+		this.candidates[this.current].add(states, fps, cnt);
+	}
+
+	/**
+	 * Resolves the candidates appended so far against the {@link FPSet}. The
+	 * caller has to ensure that no worker appends candidates derived from states
+	 * whose candidates are being resolved, i.e. resolve is called once the state
+	 * queue has been drained or while all workers are suspended.
+	 * 
+	 * @param worker
+	 *            The {@link Worker} whose trace file records the new states.
+	 * @return The number of new states added to the state queue.
+	 */
+	long resolve(final Worker worker) throws IOException {
+		synchronized (this.resolveLock) {
+			final Candidates c;
+			synchronized (this) {
+				c = this.candidates[this.current];
+				this.current = (this.current + 1) % this.candidates.length;
+			}
+			if (c.cnt == 0) {
+				return 0L;
+			}
+			c.fps.seek(0L);
+
+			final int size = (int) Math.min(c.cnt, Math.max(1, RUN_SIZE));
+			final long[] run = new long[size];
+			final long[] keys = new long[size];
+			final BitVector seen = new BitVector(size);
+			long newStates = 0L;
+			for (long lo = 0L; lo < c.cnt; lo += size) {
+				final int runCnt = (int) Math.min(size, c.cnt - lo);
+
+				// a) Sort the fingerprints of the run, drop duplicates and look them all up at once.
+				for (int i = 0; i < runCnt; i++) {
+					run[i] = c.fps.readLong();
+				}
+				System.arraycopy(run, 0, keys, 0, runCnt);
+				Arrays.sort(keys, 0, runCnt);
+				int keyCnt = 0;
+				for (int i = 0; i < runCnt; i++) {
+					if (keyCnt == 0 || keys[keyCnt - 1] != keys[i]) {
+						keys[keyCnt++] = keys[i];
+					}
+				}
+				this.fpSet.putBatch(keys, keyCnt, seen);
+
+				// b) Stream the candidates and enqueue the first occurrence of each new one.
+				for (int i = 0; i < runCnt; i++) {
+					final TLCState state = c.states.dequeue();
+					final long fp = run[i];
+					final int k = Arrays.binarySearch(keys, 0, keyCnt, fp);
+					if (!seen.get(k)) {
+						seen.set(k);
+						worker.writeDelayedState(state, fp);
+						this.squeue.sEnqueue(state);
+						newStates++;
+					}
+				}
+			}
+			c.fps.seek(0L);
+			c.cnt = 0L;
+			return newStates;
+		}
+	}
+
+	void close() throws IOException {
+		for (Candidates c : this.candidates) {
+			c.fps.close();
+		}
+	}
+
+	private static final class Candidates {
+
+		private final DiskStateQueue states;
+		/**
+		 * The fingerprints of the states in the order in which they have been
+		 * added.
+		 */
+		private final BufferedRandomAccessFile fps;
+		private long cnt = 0L;
+
+		Candidates(final String diskdir) throws IOException {
+			this.states = new DiskStateQueue(diskdir);
+			this.fps = new BufferedRandomAccessFile(diskdir + FileUtil.separator + "fps", "rw");
+		}
+
+		void add(final TLCState[] newStates, final long[] newFps, final int newCnt) throws IOException {
+			for (int i = 0; i < newCnt; i++) {
+				this.fps.writeLong(newFps[i]);
+				this.states.enqueue(newStates[i]);
+			}
+			this.cnt += newCnt;
+		}
+	}
+}
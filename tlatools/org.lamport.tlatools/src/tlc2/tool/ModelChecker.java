@@ -18,13 +18,17 @@ import tla2sany.semantic.OpDeclNode;
 import tlc2.TLCGlobals;
 import tlc2.output.EC;
 import tlc2.output.MP;
+import tlc2.tool.fp.BitstateFPSet;
 import tlc2.tool.fp.FPSet;
 import tlc2.tool.fp.FPSetConfiguration;
 import tlc2.tool.fp.FPSetFactory;
+import tlc2.tool.fp.MultiFPSet;
 import tlc2.tool.impl.CallStackTool;
+import tlc2.tool.impl.Tool.Mode;
 import tlc2.tool.liveness.LiveCheck;
 import tlc2.tool.queue.DiskByteArrayQueue;
 import tlc2.tool.queue.DiskStateQueue;
+import tlc2.tool.queue.WorkStealingStateQueue;
 import tlc2.tool.queue.IStateQueue;
 import tlc2.util.IStateWriter;
 import tlc2.util.SetOfStates;
@@ -58,6 +62,11 @@ public class ModelChecker extends AbstractChecker
     public FPSet theFPSet; // the set of reachable states (SZ: note the type)
     public IStateQueue theStateQueue; // the state queue
     public final ConcurrentTLCTrace trace; // the trace file
+    /**
+     * Non-null iff successor states are checked for duplicates once per level
+     * (see {@link DelayedDuplicateDetector}).
+     */
+    DelayedDuplicateDetector ddd;
     // used to calculate the spm metric
     public long distinctStatesPerMinute, statesPerMinute = 0L;
     protected long oldNumOfGenStates, oldFPSetSize = 0L;
@@ -76,6 +85,8 @@ public class ModelChecker extends AbstractChecker
     	this(tool, metadir, stateWriter, deadlock, fromChkpt, startTime);
     	this.theFPSet = future.get();
 
+        this.ddd = createDelayedDuplicateDetector();
+
         // Initialize all the workers:
         this.workers = new Worker[TLCGlobals.getNumWorkers()];
         for (int i = 0; i < this.workers.length; i++)
@@ -89,6 +100,8 @@ public class ModelChecker extends AbstractChecker
     	this(tool, metadir, stateWriter, deadlock, fromChkpt, startTime);
     	this.theFPSet = FPSetFactory.getFPSet(fpSetConfig).init(TLCGlobals.getNumWorkers(), metadir, tool.getRootName());
 
+        this.ddd = createDelayedDuplicateDetector();
+
         // Initialize all the workers:
         this.workers = new Worker[TLCGlobals.getNumWorkers()];
         for (int i = 0; i < this.workers.length; i++)
@@ -108,9 +121,13 @@ public class ModelChecker extends AbstractChecker
         // call the abstract constructor
         super(tool, metadir, stateWriter, deadlock, fromChkpt, startTime);
 
-		this.theStateQueue = useByteArrayQueue()
-				? new DiskByteArrayQueue(this.metadir)
-				: new DiskStateQueue(this.metadir);
+		if (useWorkStealingQueue()) {
+			this.theStateQueue = new WorkStealingStateQueue(this.metadir);
+		} else {
+			this.theStateQueue = useByteArrayQueue()
+					? new DiskByteArrayQueue(this.metadir)
+					: new DiskStateQueue(this.metadir);
+		}
         // this.theStateQueue = new MemStateQueue(this.metadir);
 
         // Finally, initialize the trace file:
@@ -720,9 +737,30 @@ public class ModelChecker extends AbstractChecker
         return EC.NO_ERROR;
     }
 
+	/**
+	 * Has to be called while the workers are suspended. Only captures what is
+	 * needed for a consistent checkpoint before it resumes the workers and writes
+	 * the checkpoint to disk. The exception is delayed duplicate detection: The
+	 * pending candidates are resolved while the workers are still suspended, which
+	 * reads the candidate files and looks up their fingerprints in the fingerprint
+	 * set. Resolving them while the workers run would race with a worker that has
+	 * drained the queue and concludes from an empty candidate set that model
+	 * checking is done.
+	 */
 	protected void checkpoint() throws IOException {
 		// start checkpointing:
        	MP.printMessage(EC.TLC_CHECKPOINT_START, this.metadir);
+		if (this.ddd != null) {
+			// The candidates are neither in the state queue nor in the fingerprint set.
+			// Resolve them now (even though the current level has not been fully
+			// explored) or they would be lost when recovering from this checkpoint.
+			this.ddd.resolve((Worker) this.workers[0]);
+		}
+		// While the workers are suspended, the state queue and the trace only
+		// capture a snapshot in memory (the queue's buffered states and the tips of
+		// the append-only pool and trace files). The fingerprint set is recreated
+		// from the trace on recovery. Everything is written to disk by the
+		// commitChkpt calls below, i.e. while the workers continue.
 		this.theStateQueue.beginChkpt();
 		this.trace.beginChkpt();
 		this.theFPSet.beginChkpt();
@@ -833,6 +871,9 @@ public class ModelChecker extends AbstractChecker
 		}
     	
         this.theFPSet.close();
+        if (this.ddd != null) {
+        	this.ddd.close();
+        }
         this.trace.close();
         if (this.checkLiveness) {
         	liveCheck.close();
@@ -884,7 +925,41 @@ public class ModelChecker extends AbstractChecker
 								Integer.toString(aggOutDegree.getMax()) });
         	}
         }
+        
+        // Successor states discarded by the workers before looking them up in theFPSet.
+        long localDuplicates = 0L;
+        for (IWorker worker : workers) {
+        	localDuplicates += ((Worker) worker).getLocalDuplicates();
+        }
+        if (localDuplicates > 0L) {
+			MP.printMessage(EC.TLC_STATE_GRAPH_LOCAL_DUPLICATES,
+					new String[] { String.valueOf(localDuplicates), String.valueOf(getStatesGenerated()) });
+        }
+        
+        // Bitstate hashing does not explore the state space exhaustively.
+        printBitstateWarning(this.theFPSet);
     }
+
+	private static void printBitstateWarning(final FPSet fpSet) {
+		long setBits = 0L, numBits = 0L;
+		double omitted = 0d;
+		int k = 0;
+		final FPSet[] fpSets = fpSet instanceof MultiFPSet ? ((MultiFPSet) fpSet).getFPSets() : new FPSet[] { fpSet };
+		for (final FPSet nested : fpSets) {
+			if (nested instanceof BitstateFPSet) {
+				final BitstateFPSet bitstate = (BitstateFPSet) nested;
+				setBits += bitstate.getSetBits();
+				numBits += bitstate.getNumBits();
+				omitted += bitstate.getOmittedStatesEstimate();
+				k = bitstate.getK();
+			}
+		}
+		if (numBits == 0L) {
+			return;
+		}
+		MP.printWarning(EC.TLC_BITSTATE_OMITTED_STATES, new String[] { String.valueOf(setBits),
+				String.valueOf(numBits), String.valueOf(k), String.valueOf(Math.round(omitted)) });
+	}
     
     private final void printProgresStats(final long startTime, final boolean isFinal) throws IOException {
         final long fpSetSize = this.theFPSet.size();
@@ -1007,9 +1082,61 @@ public class ModelChecker extends AbstractChecker
 		return Boolean.getBoolean(ModelChecker.class.getName() + ".BAQueue");
 	}
 
+	/**
+	 * The per-worker deques of the {@link WorkStealingStateQueue} avoid the
+	 * single queue monitor with many workers, but keep all states in memory.
+	 */
+	private static boolean useWorkStealingQueue() {
+		return Boolean.getBoolean(ModelChecker.class.getName() + ".WSQueue");
+	}
+
+	/**
+	 * Delayed duplicate detection (see {@link DelayedDuplicateDetector}) replaces
+	 * the random disk accesses of a {@link FPSet} whose fingerprints no longer fit
+	 * into memory with one sequential pass over the fingerprints on disk per level.
+	 */
+	private static boolean useDelayedDuplicateDetection() {
+		return Boolean.getBoolean(ModelChecker.class.getName() + ".delayedDuplicateDetection");
+	}
+
+	private DelayedDuplicateDetector createDelayedDuplicateDetector() throws IOException {
+		if (!useDelayedDuplicateDetection()) {
+			return null;
+		}
+		// Liveness checking, the debugger, -continue, coverage, and -dump all need
+		// to know for each successor whether it is new at the time it is generated.
+		if (this.checkLiveness || this.tool.getMode() == Mode.MC_DEBUG || TLCGlobals.continuation || coverage
+				|| !this.allStateWriter.isNoop()) {
+			MP.printWarning(EC.TLC_FEATURE_UNSUPPORTED,
+					"Delayed duplicate detection is not supported with liveness checking, debugging, -continue, "
+							+ "-coverage, or -dump. Reverting to immediate duplicate detection.");
+			return null;
+		}
+		return new DelayedDuplicateDetector(this.metadir, this.theFPSet, this.theStateQueue);
+	}
+
+	/**
+	 * Called by the worker that finds the state queue empty. With delayed
+	 * duplicate detection, this means that the current level has been explored
+	 * completely and the candidates of the next level can be resolved.
+	 * 
+	 * @return true iff new states have been added to the state queue.
+	 */
+	final boolean resolveCandidates(final Worker worker) throws IOException {
+		synchronized (this) {
+			if (this.done) {
+				return false;
+			}
+		}
+		return this.ddd.resolve(worker) > 0L;
+	}
+
 	public static String getStateQueueName() {
 		// Ideally, this wouldn't hard-code the simple name of the classes but we don't
 		// have access to the class file yet.
+		if (useWorkStealingQueue()) {
+			return "WorkStealingStateQueue";
+		}
 		return useByteArrayQueue() ? "DiskByteArrayQueue" : "DiskStateQueue";
 	}
 
@@ -17,7 +17,9 @@ import java.util.concurrent.Callable;
 import tla2sany.semantic.OpDeclNode;
 import tla2sany.semantic.SymbolNode;
 import tlc2.output.EC;
+import tlc2.util.FP64;
 import tlc2.util.PartialBoolean;
+import tlc2.value.IMVPerm;
 import tlc2.value.IValue;
 import tlc2.value.IValueInputStream;
 import tlc2.value.IValueOutputStream;
@@ -272,4 +274,190 @@ public abstract class TLCState implements Cloneable, Serializable {
 		return PartialBoolean.YES;
 	}
 
+	/* Fingerprinting of variable values */
+
+	/**
+	 * Iff true, {@link #fingerPrint(IValue[])} combines the fingerprints of the
+	 * individual values instead of chaining all values into a single fingerprint.
+	 * The fingerprint of a value is cached (per thread) for as long as the
+	 * variable keeps being bound to the identical value object, which is the case
+	 * for all variables left unchanged by an action. Thus, only the values of the
+	 * variables changed by an action get fingerprinted.
+	 * <p>
+	 * Both schemes yield different fingerprints for the same state, which is why
+	 * the scheme must not be changed while model checking (a checkpoint can only be
+	 * recovered with the scheme it was taken with). The legacy scheme remains the
+	 * default.
+	 */
+	private static boolean incrementalFingerprint = Boolean
+			.getBoolean(TLCState.class.getName() + ".incrementalFingerprint");
+
+	public static void setIncrementalFingerprint(final boolean incremental) {
+		incrementalFingerprint = incremental;
+	}
+
+	public static boolean isIncrementalFingerprint() {
+		return incrementalFingerprint;
+	}
+
+	private static final ThreadLocal<ValueFingerprints> VALUE_FPS = ThreadLocal.withInitial(ValueFingerprints::new);
+
+	/**
+	 * @return The fingerprint of the given variable values (in the order of
+	 *         {@link #vars}) with either the legacy or the incremental scheme (see
+	 *         {@link #incrementalFingerprint}).
+	 */
+	protected static long fingerPrint(final IValue[] vals) {
+		long fp = FP64.New();
+		if (!incrementalFingerprint) {
+			for (int i = 0; i < vals.length; i++) {
+				fp = vals[i].fingerPrint(fp);
+			}
+			return fp;
+		}
+		final ValueFingerprints cache = VALUE_FPS.get();
+		cache.ensureCapacity(vals.length);
+		for (int i = 0; i < vals.length; i++) {
+			fp = FP64.Extend(fp, cache.fingerPrint(i, vals[i]));
+		}
+		return fp;
+	}
+
+	/* Symmetry reduction */
+
+	/**
+	 * Iff true, the representative of a state under symmetry is found by descending
+	 * along the transpositions of the symmetry group (see
+	 * {@link #minimizeByTranspositions(IValue[], IMVPerm[])}) instead of by
+	 * applying all |S1|! * ... * |Sn|! permutations. The representative is then
+	 * still symmetric to the state but not necessarily the lexicographically
+	 * smallest one. Thus, symmetric states may end up with different fingerprints,
+	 * which makes TLC explore more states than with exact canonicalization but is
+	 * still sound. Like the fingerprint scheme, the strategy must not be changed
+	 * while model checking.
+	 */
+	private static final boolean transpositionSymmetry = Boolean
+			.getBoolean(TLCState.class.getName() + ".transpositionSymmetry");
+
+	public static boolean isTranspositionSymmetry() {
+		return transpositionSymmetry;
+	}
+
+	/**
+	 * @return The transpositions in the given symmetry group iff
+	 *         {@link #transpositionSymmetry} is enabled and the group contains any,
+	 *         otherwise null. Symmetry sets declared with Permutations(S) generate
+	 *         the full symmetric group of S, which contains all |S|*(|S|-1)/2
+	 *         transpositions of S.
+	 */
+	protected static IMVPerm[] getTranspositions(final IMVPerm[] perms) {
+		if (perms == null || !transpositionSymmetry) {
+			return null;
+		}
+		int cnt = 0;
+		for (int i = 0; i < perms.length; i++) {
+			if (perms[i].size() == 2) {
+				cnt++;
+			}
+		}
+		if (cnt == 0) {
+			return null;
+		}
+		final IMVPerm[] transpositions = new IMVPerm[cnt];
+		for (int i = 0, j = 0; i < perms.length; i++) {
+			if (perms[i].size() == 2) {
+				transpositions[j++] = perms[i];
+			}
+		}
+		return transpositions;
+	}
+
+	/**
+	 * Greedily reduces the given values by applying one transposition after the
+	 * other and keeping every outcome that is lexicographically smaller than the
+	 * current one, until a full round over all transpositions yields no
+	 * improvement. A round costs O(|transpositions| * |values|) permutations
+	 * compared to O(|perms| * |values|) for the exact representative.
+	 * <p>
+	 * The reduction is not exact: The descent can end in a local minimum, from
+	 * which no single transposition leads to a smaller state even though another
+	 * permutation does. Symmetric states may thus end up with different
+	 * representatives, e.g. the directed graphs over four symmetric nodes yield 296
+	 * instead of 218 distinct states (see SymmetryTranspositionOnTest).
+	 *
+	 * @return values itself if no transposition reduces it, otherwise a new array
+	 */
+	protected static IValue[] minimizeByTranspositions(final IValue[] values, final IMVPerm[] transpositions) {
+		final int sz = values.length;
+		IValue[] minVals = values;
+		IValue[] vals = new IValue[sz];
+		boolean reduced = true;
+		while (reduced) {
+			reduced = false;
+			NEXT_PERM: for (int i = 0; i < transpositions.length; i++) {
+				int cmp = 0;
+				for (int j = 0; j < sz; j++) {
+					vals[j] = minVals[j].permute(transpositions[i]);
+					if (cmp == 0) {
+						cmp = vals[j].compareTo(minVals[j]);
+						if (cmp > 0) {
+							continue NEXT_PERM;
+						}
+					}
+				}
+				if (cmp < 0) {
+					if (minVals == values) {
+						minVals = vals;
+						vals = new IValue[sz];
+					} else {
+						final IValue[] temp = minVals;
+						minVals = vals;
+						vals = temp;
+					}
+					reduced = true;
+				}
+			}
+		}
+		return minVals;
+	}
+
+	/**
+	 * Caches the fingerprints of the two most recently used values per variable
+	 * (LRU). Values are compared by identity. Two entries suffice for the common
+	 * pattern in which the successors of a state alternate between changing a
+	 * variable and leaving it at the (shared) value of the predecessor.
+	 */
+	private static final class ValueFingerprints {
+		private IValue[] vals = new IValue[0];
+		private long[] fps = new long[0];
+
+		void ensureCapacity(final int numVars) {
+			if (this.vals.length < 2 * numVars) {
+				this.vals = new IValue[2 * numVars];
+				this.fps = new long[2 * numVars];
+			}
+		}
+
+		long fingerPrint(final int var, final IValue val) {
+			final int first = 2 * var, second = first + 1;
+			if (this.vals[first] == val) {
+				return this.fps[first];
+			}
+			if (this.vals[second] == val) {
+				final long fp = this.fps[second];
+				this.vals[second] = this.vals[first];
+				this.fps[second] = this.fps[first];
+				this.vals[first] = val;
+				this.fps[first] = fp;
+				return fp;
+			}
+			// Fingerprinting a value also normalizes it (see TLCStateMut#fingerPrint).
+			final long fp = val.fingerPrint(FP64.New());
+			this.vals[second] = this.vals[first];
+			this.fps[second] = this.fps[first];
+			this.vals[first] = val;
+			this.fps[first] = fp;
+			return fp;
+		}
+	}
 }
@@ -50,6 +50,13 @@ public final class TLCStateMutExt extends TLCState implements Cloneable, Seriali
    */
   private static IMVPerm[] perms = null;
 
+  /**
+   * If non-null, the transpositions in perms along which the representative
+   * of a state is searched instead of applying all perms (see
+   * TLCState#isTranspositionSymmetry()).
+   */
+  private static IMVPerm[] transpositions = null;
+
   private TLCStateMutExt(IValue[] vals) { this.values = vals; }
   
   public static void setVariables(OpDeclNode[] variables) 
@@ -73,6 +80,7 @@ public final class TLCStateMutExt extends TLCState implements Cloneable, Seriali
     mytool = tool;
     viewMap = tool.getViewSpec();
     perms = tool.getSymmetryPerms();
+    transpositions = getTranspositions(perms);
   }
 
   public final TLCState createEmpty() {
@@ -200,7 +208,9 @@ public final class TLCStateMutExt extends TLCState implements Cloneable, Seriali
 		// minVals will be replaced temporarily with the values of ss for the
 		// calculation of the fingerprint.
 		IValue[] minVals = this.values;
-		if (perms != null) {
+		if (transpositions != null) {
+			minVals = minimizeByTranspositions(this.values, transpositions);
+		} else if (perms != null) {
 			IValue[] vals = new IValue[sz];
 			// The following for loop converges to the smallest state ss under symmetry by
 			// looping over all permutations applying each. If the outcome turns out to be
@@ -247,9 +257,7 @@ public final class TLCStateMutExt extends TLCState implements Cloneable, Seriali
 		// Fingerprint the state:
 		long fp = FP64.New();
 		if (viewMap == null) {
-			for (int i = 0; i < sz; i++) {
-				fp = minVals[i].fingerPrint(fp);
-			}
+			fp = fingerPrint(minVals);
 			if (this.values != minVals) {
 				for (int i = 0; i < sz; i++) {
 					this.values[i].deepNormalize();
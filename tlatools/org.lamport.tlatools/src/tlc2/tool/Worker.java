@@ -20,9 +20,11 @@ import tlc2.tool.impl.CallStackTool;
 import tlc2.tool.impl.Tool;
 import tlc2.tool.impl.Tool.Mode;
 import tlc2.tool.queue.IStateQueue;
+import tlc2.util.BitVector;
 import tlc2.util.BufferedRandomAccessFile;
 import tlc2.util.IStateWriter;
 import tlc2.util.IdThread;
+import tlc2.util.SetOfLong;
 import tlc2.util.SetOfStates;
 import tlc2.util.statistics.FixedSizedBucketStatistics;
 import tlc2.util.statistics.IBucketStatistics;
@@ -36,6 +38,13 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 
 	protected static final boolean coverage = TLCGlobals.isCoverageEnabled();
 	private static final int INITIAL_CAPACITY = 16;
+	/**
+	 * Opt-in to collect the successors of a state and look up their fingerprints
+	 * with a single {@link FPSet#putBatch(long[], int, BitVector)}. Only takes
+	 * effect if the FPSet implements a batched lookup (see
+	 * {@link FPSet#hasBatchedLookup()}).
+	 */
+	static final String BATCH = Worker.class.getName() + ".batch";
 	
 	/**
 	 * Multi-threading helps only when running on multiprocessors. TLC can
@@ -52,6 +61,9 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 	private final String filename;
 	private final BufferedRandomAccessFile raf;
 	private final boolean checkDeadlock;
+	private final boolean fpIdentifiesState;
+	private final DelayedDuplicateDetector ddd;
+	private final boolean batched;
 
 	private long lastPtr;
 	private long statesGenerated;
@@ -71,6 +83,11 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 		this.squeue = this.tlc.theStateQueue;
 		this.theFPSet = this.tlc.theFPSet;
 		this.allStateWriter = this.tlc.allStateWriter;
+		// With symmetry or a VIEW, states with equal fingerprints can still differ.
+		this.fpIdentifiesState = !this.tool.hasSymmetry() && this.tool.getViewSpec() == null;
+		this.ddd = this.tlc.ddd;
+		// Delayed duplicate detection needs all candidates of a state at once.
+		this.batched = this.ddd != null || (Boolean.getBoolean(BATCH) && this.theFPSet.hasBatchedLookup());
 		this.outDegree = new FixedSizedBucketStatistics(this.getName(), 32); // maximum outdegree of 32 appears sufficient for now.
 		this.setName("TLCWorkerThread-" + String.format("%03d", id));
 
@@ -89,6 +106,10 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 			while (true) {
 				curState = this.squeue.sDequeue();
 				if (curState == null) {
+					if (this.ddd != null && this.tlc.resolveCandidates(this)) {
+						// The states of the next level have been enqueued.
+						continue;
+					}
 					synchronized (this.tlc) {
 						if(!this.tlc.setDone()) {
 							final int ec = tool.checkPostCondition();
@@ -113,12 +134,15 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 				final long preNext = this.statesGenerated;
 				try {
 					this.tool.getNextStates(this, curState);
+					this.doNextSuccessors(curState);
 				} catch (final WrappingRuntimeException e) {
 					// The next-state relation couldn't be evaluated. If doNextFailed itself throws
 					// a Throwable, the catch block below will handle it.
 					this.tlc.doNextFailed(curState, e.unwrapState(), e.unwrapExp());
 				} catch (final Throwable notExpectedToHappen) {
 					this.tlc.doNextFailed(curState, null, notExpectedToHappen);
+				} finally {
+					this.clearSuccessors();
 				}
 				
 				if (this.checkDeadlock && preNext == this.statesGenerated) {
@@ -256,6 +280,10 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 		return this.statesGenerated;
 	}
 
+	final long getLocalDuplicates() {
+		return this.localDuplicates;
+	}
+
 	public final IBucketStatistics getOutDegree() {
 		return this.outDegree;
 	}
@@ -319,6 +347,23 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 //				curState.fingerPrint(), sucStateFp));
 	}
 
+	/*
+	 * With delayed duplicate detection, sucState is a candidate that has been
+	 * found to be new. Until now, it has carried the trace pointer of its
+	 * predecessor (see doNextCandidates).
+	 */
+	final synchronized void writeDelayedState(final TLCState sucState, final long sucStateFp) throws IOException {
+		maxLevel = Math.max(sucState.getLevel(), maxLevel);
+		
+		this.lastPtr = this.raf.getFilePointer();
+		this.raf.writeLongNat(sucState.uid);
+		this.raf.writeShortNat(sucState.workerId);
+		this.raf.writeLong(sucStateFp);
+		
+		sucState.workerId = (short) myGetId();
+		sucState.uid = this.lastPtr;
+	}
+
 	// Read from previously written (see writeState) trace file.
 	public final synchronized ConcurrentTLCTrace.Record readStateRecord(final long ptr) throws IOException {
 		// Remember current tip of the file before we rewind.
@@ -345,16 +390,30 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 	}
 	
 	/* Checkpointing */
+	
+	/*
+	 * The trace file is only ever appended to. A checkpoint thus merely records
+	 * the tip of the file: beginChkpt captures it while workers are suspended and
+	 * commitChkpt persists it after they have been resumed.
+	 */
+	private long chkptFilePos, chkptLastPtr;
 
 	public final synchronized void beginChkpt() throws IOException {
-		this.raf.flush();
-		final DataOutputStream dos = FileUtil.newDFOS(filename + ".tmp");
-		dos.writeLong(this.raf.getFilePointer());
-		dos.writeLong(this.lastPtr);
-		dos.close();
+		this.chkptFilePos = this.raf.getFilePointer();
+		this.chkptLastPtr = this.lastPtr;
 	}
 
-	public final synchronized void commitChkpt() throws IOException {
+	public final void commitChkpt() throws IOException {
+		synchronized (this) {
+			// Also flushes what has been written since beginChkpt, which recover
+			// overwrites.
+			this.raf.flush();
+		}
+		final DataOutputStream dos = FileUtil.newDFOS(filename + ".tmp");
+		dos.writeLong(this.chkptFilePos);
+		dos.writeLong(this.chkptLastPtr);
+		dos.close();
+		
 		final File oldChkpt = new File(filename + ".chkpt");
 		final File newChkpt = new File(filename + ".tmp");
 		if ((oldChkpt.exists() && !oldChkpt.delete()) || !newChkpt.renameTo(oldChkpt)) {
@@ -432,10 +491,30 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 			final boolean inModel = (this.tool.isInModel(succState.setPredecessor(curState).setAction(action))
 					&& this.tool.isInActions(curState, succState));
 			
-			// Check if state is new or has been seen earlier.
+			if (this.batched) {
+				// Whether the state is new or has been seen earlier is determined
+				// for all successors of curState at once by doNextSuccessors.
+				this.bufferSuccessor(action, succState, inModel);
+				return this;
+			}
+			
+			// Check if state is new or has been seen earlier. A local
+			// duplicate has been seen by definition.
 			boolean unseen = true;
+			boolean duplicate = false;
 			if (inModel) {
-				unseen = !isSeenState(curState, succState, action);
+				final long fp = succState.fingerPrint();
+				duplicate = this.succFpSet.put(fp);
+				if (duplicate) {
+					this.localDuplicates++;
+				}
+				unseen = !isSeenState(curState, succState, action, fp, duplicate || this.theFPSet.put(fp));
+			}
+			
+			// The implied actions have already been checked for the identical
+			// step from curState to the first occurrence of the duplicate.
+			if (duplicate && this.fpIdentifiesState) {
+				return this;
 			}
 			
 			// Check if succState violates any invariant:
@@ -468,6 +547,191 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 		}
 	}
 	
+	/* Batched fingerprint lookup */
+	
+	/*
+	 * If batched (see BATCH), addElement only buffers the successor states of the
+	 * current state. Once the next-state relation has been fully evaluated,
+	 * doNextSuccessors looks up (and inserts) the fingerprints of all in-model
+	 * successors with a single call to FPSet#putBatch and then processes the
+	 * successors in the order in which they have been generated. Consequently,
+	 * invariant and implied-action violations are only detected after all
+	 * successors of the current state have been generated. Otherwise, addElement
+	 * processes each successor right away.
+	 * 
+	 * A successor whose fingerprint has already been generated from the current
+	 * state (e.g. by an \E over symmetric choices) is a local duplicate. It is
+	 * filtered with the (per-state) succFpSet and never reaches the global FPSet.
+	 */
+	
+	private TLCState[] succStates = new TLCState[INITIAL_CAPACITY];
+	private Action[] succActions = new Action[INITIAL_CAPACITY];
+	// Fingerprints of all in-model successors.
+	private long[] succFps = new long[INITIAL_CAPACITY];
+	// Fingerprints of the in-model successors that are no local duplicates.
+	private long[] batchFps = new long[INITIAL_CAPACITY];
+	private final BitVector succInModel = new BitVector(INITIAL_CAPACITY);
+	private final BitVector succDuplicate = new BitVector(INITIAL_CAPACITY);
+	private final BitVector batchSeen = new BitVector(INITIAL_CAPACITY);
+	private final SetOfLong succFpSet = new SetOfLong(INITIAL_CAPACITY * 2 + 1);
+	private int succCnt = 0;
+	private int succFpCnt = 0;
+	private int batchCnt = 0;
+	private long localDuplicates = 0L;
+	
+	private final void bufferSuccessor(final Action action, final TLCState succState, final boolean inModel) {
+		if (this.succCnt == this.succStates.length) {
+			this.succStates = Arrays.copyOf(this.succStates, this.succCnt * 2);
+			this.succActions = Arrays.copyOf(this.succActions, this.succCnt * 2);
+		}
+		boolean duplicate = false;
+		if (inModel) {
+			if (this.succFpCnt == this.succFps.length) {
+				this.succFps = Arrays.copyOf(this.succFps, this.succFpCnt * 2);
+			}
+			final long fp = succState.fingerPrint();
+			this.succFps[this.succFpCnt++] = fp;
+			
+			duplicate = this.succFpSet.put(fp);
+			if (duplicate) {
+				this.localDuplicates++;
+			} else {
+				if (this.batchCnt == this.batchFps.length) {
+					this.batchFps = Arrays.copyOf(this.batchFps, this.batchCnt * 2);
+				}
+				this.batchFps[this.batchCnt++] = fp;
+			}
+		}
+		this.succInModel.set(this.succCnt, inModel);
+		this.succDuplicate.set(this.succCnt, duplicate);
+		this.succStates[this.succCnt] = succState;
+		this.succActions[this.succCnt] = action;
+		this.succCnt++;
+	}
+	
+	private final void clearSuccessors() {
+		Arrays.fill(this.succStates, 0, this.succCnt, null);
+		Arrays.fill(this.succActions, 0, this.succCnt, null);
+		if (this.succFpSet.size() > 0) {
+			this.succFpSet.clear();
+		}
+		this.succCnt = 0;
+		this.succFpCnt = 0;
+		this.batchCnt = 0;
+	}
+	
+	private final void doNextSuccessors(final TLCState curState) throws IOException {
+		if (!this.batched) {
+			return;
+		}
+		if (this.ddd != null) {
+			doNextCandidates(curState);
+			return;
+		}
+		if (this.batchCnt > 0) {
+			this.theFPSet.putBatch(this.batchFps, this.batchCnt, this.batchSeen);
+		}
+		
+		for (int i = 0, k = 0, b = 0; i < this.succCnt; i++) {
+			final TLCState succState = this.succStates[i];
+			final Action action = this.succActions[i];
+			final boolean inModel = this.succInModel.get(i);
+			final boolean duplicate = this.succDuplicate.get(i);
+			try {
+				// Check if state is new or has been seen earlier. A local
+				// duplicate has been seen by definition.
+				boolean unseen = true;
+				if (inModel) {
+					final boolean seen = duplicate || this.batchSeen.get(b++);
+					unseen = !isSeenState(curState, succState, action, this.succFps[k++], seen);
+				}
+				
+				// The implied actions have already been checked for the identical
+				// step from curState to the first occurrence of the duplicate.
+				if (duplicate && this.fpIdentifiesState) {
+					continue;
+				}
+				
+				// Check if succState violates any invariant:
+				if (unseen) {
+					if (this.doNextCheckInvariants(curState, succState)) {
+						throw new InvariantViolatedException();
+					}
+				}
+				
+				// Check if the state violates any implied action. We need to do it
+				// even if succState is not new.
+				if (this.doNextCheckImplied(curState, succState)) {
+					throw new InvariantViolatedException();
+				}
+				
+				if (inModel && unseen) {
+					// The state is inModel, unseen and neither invariants
+					// nor implied actions are violated. It is thus eligible
+					// for further processing by other workers.
+					this.squeue.sEnqueue(succState);
+				}
+			} catch (Exception e) {
+				// See addElement above.
+				throw new WrappingRuntimeException(e, succState);
+			}
+		}
+	}
+	
+	/*
+	 * With delayed duplicate detection (see DelayedDuplicateDetector), the in-model
+	 * successors that are no local duplicates become candidates of the next level
+	 * instead of being looked up in the FPSet. Whether a candidate is new is only
+	 * known once the current level has been explored completely. Thus, its
+	 * invariants are checked now regardless.
+	 */
+	
+	private TLCState[] candStates = new TLCState[INITIAL_CAPACITY];
+	
+	private final void doNextCandidates(final TLCState curState) throws IOException {
+		if (this.candStates.length < this.batchCnt) {
+			this.candStates = new TLCState[this.batchFps.length];
+		}
+		int candCnt = 0;
+		for (int i = 0; i < this.succCnt; i++) {
+			final TLCState succState = this.succStates[i];
+			final boolean inModel = this.succInModel.get(i);
+			final boolean duplicate = this.succDuplicate.get(i);
+			try {
+				if (duplicate && this.fpIdentifiesState) {
+					continue;
+				}
+				
+				if (!duplicate) {
+					if (this.doNextCheckInvariants(curState, succState)) {
+						throw new InvariantViolatedException();
+					}
+				}
+				
+				if (this.doNextCheckImplied(curState, succState)) {
+					throw new InvariantViolatedException();
+				}
+				
+				if (inModel && !duplicate) {
+					// Let the candidate carry the trace pointer of curState until
+					// writeDelayedState replaces it with its own.
+					succState.uid = curState.uid;
+					succState.workerId = curState.workerId;
+					this.candStates[candCnt++] = succState;
+				}
+			} catch (Exception e) {
+				// See addElement above.
+				throw new WrappingRuntimeException(e, succState);
+			}
+		}
+		// The fingerprints of the candidates are exactly the batchFps.
+		assert candCnt == this.batchCnt;
+		if (candCnt > 0) {
+			this.ddd.add(this.candStates, this.batchFps, candCnt);
+			Arrays.fill(this.candStates, 0, candCnt, null);
+		}
+	}
+	
 	@SuppressWarnings("serial")
 	private static class WrappingRuntimeException extends RuntimeException {
 
@@ -488,10 +752,8 @@ public final class Worker extends IdThread implements IWorker, INextStateFunctor
 		}
 	}
 
-	private final boolean isSeenState(final TLCState curState, final TLCState succState, final Action action)
-			throws IOException {
-		final long fp = succState.fingerPrint();
-		final boolean seen = this.theFPSet.put(fp);
+	private final boolean isSeenState(final TLCState curState, final TLCState succState, final Action action,
+			final long fp, final boolean seen) throws IOException {
 		// Write out succState when needed:
 		this.allStateWriter.writeState(curState, succState, !seen, action);
 		if (!seen) {
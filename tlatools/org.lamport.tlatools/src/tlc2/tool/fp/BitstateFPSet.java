@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.fp;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.LongAdder;
+
+import tlc2.output.EC;
+import tlc2.tool.TLCTrace;
+import tlc2.tool.TLCTrace.Enumerator;
+import util.Assert;
+import util.BufferedDataInputStream;
+import util.BufferedDataOutputStream;
+import util.FileUtil;
+
+/**
+ * A bitstate (supertrace) {@link FPSet} in the spirit of SPIN's bitstate
+ * hashing: Instead of storing a fingerprint, {@link #put(long)} sets k bits of
+ * a large off-heap bit array at positions derived from the fingerprint. A
+ * fingerprint is considered seen iff all of its k bits are set. Thus, a state
+ * takes up only a few bits, but a new state whose k bits happen to have been
+ * set by other states is wrongly considered seen and its successors are never
+ * explored (see {@link #getOmittedStatesEstimate()}). Bitstate hashing is meant
+ * for exploratory runs on state spaces that do not fit into memory or onto
+ * disk with any of the exact {@link FPSet}s.
+ * <p>
+ * The number of hash functions k is set with the system property
+ * tlc2.tool.fp.BitstateFPSet.k (2 by default). Like {@link OffHeapDiskFPSet},
+ * the bit array is allocated outside the Java heap and sized by
+ * -XX:MaxDirectMemorySize.
+ */
+@SuppressWarnings("serial")
+public final class BitstateFPSet extends FPSet {
+
+	private static final int K = Integer.getInteger(BitstateFPSet.class.getName() + ".k", 2);
+
+	/**
+	 * The bit array with a power of two of bits.
+	 */
+	private final LongArray bits;
+	private final long numBits;
+	private final long mask;
+	private final int k;
+
+	/**
+	 * The number of fingerprints for which {@link #put(long)} returned false.
+	 */
+	private final LongAdder count = new LongAdder();
+	/**
+	 * The number of set bits in {@link #bits}.
+	 */
+	private final LongAdder setBits = new LongAdder();
+
+	private String metadir;
+	private String filename;
+
+	public BitstateFPSet(final FPSetConfiguration fpSetConfig) throws RemoteException {
+		this(fpSetConfig, K);
+	}
+
+	BitstateFPSet(final FPSetConfiguration fpSetConfig, final int k) throws RemoteException {
+		super(fpSetConfig);
+		Assert.check(k > 0, EC.GENERAL);
+		this.k = k;
+		// Round the available memory down to a power of two of (at least 64) bits.
+		final long bytes = Math.max(fpSetConfig.getMemoryInBytes(), LongSize);
+		this.numBits = Long.highestOneBit(bytes) * Byte.SIZE;
+		this.mask = this.numBits - 1L;
+		this.bits = new LongArray(this.numBits / Long.SIZE);
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#init(int, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public FPSet init(final int numThreads, final String metadir, final String filename) throws IOException {
+		this.metadir = metadir;
+		this.filename = filename;
+		this.bits.zeroMemory(numThreads);
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#size()
+	 */
+	@Override
+	public long size() {
+		return this.count.sum();
+	}
+
+	/**
+	 * @see tlc2.tool.fp.FPSet#put(long)
+	 * @return true iff all bits of fp had already been set. Two threads
+	 *         concurrently putting the same fingerprint might both get false.
+	 */
+	@Override
+	public boolean put(final long fp) throws IOException {
+		boolean seen = true;
+		final long h2 = hash2(fp);
+		for (int i = 0; i < this.k; i++) {
+			seen &= !setBit((fp + i * h2) & this.mask);
+		}
+		if (!seen) {
+			this.count.increment();
+		}
+		return seen;
+	}
+
+	/**
+	 * @return true iff the bit at the given position changed from zero to one.
+	 */
+	private boolean setBit(final long position) {
+		final long word = position >>> 6;
+		final long bit = 1L << position;
+		while (true) {
+			final long expected = this.bits.get(word);
+			if ((expected & bit) != 0L) {
+				return false;
+			}
+			if (this.bits.trySet(word, expected, expected | bit)) {
+				this.setBits.increment();
+				return true;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#contains(long)
+	 */
+	@Override
+	public boolean contains(final long fp) throws IOException {
+		final long h2 = hash2(fp);
+		for (int i = 0; i < this.k; i++) {
+			final long position = (fp + i * h2) & this.mask;
+			if ((this.bits.get(position >>> 6) & (1L << position)) == 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The k bit positions of a fingerprint are fp + i * hash2(fp) (double hashing,
+	 * see "Less Hashing, Same Performance: Building a Better Bloom Filter" by
+	 * Kirsch and Mitzenmacher). hash2 mixes all bits of fp (the finalizer of
+	 * MurmurHash3) and is odd such that the k positions are distinct for any k
+	 * less than the number of bits.
+	 */
+	private static long hash2(long fp) {
+		fp ^= fp >>> 33;
+		fp *= 0xff51afd7ed558ccdL;
+		fp ^= fp >>> 33;
+		fp *= 0xc4ceb9fe1a85ec53L;
+		fp ^= fp >>> 33;
+		return fp | 1L;
+	}
+
+	public long getNumBits() {
+		return this.numBits;
+	}
+
+	public long getSetBits() {
+		return this.setBits.sum();
+	}
+
+	public int getK() {
+		return this.k;
+	}
+
+	/**
+	 * @return The expected number of distinct states that have wrongly been
+	 *         considered seen. After a distinct states have been put into m bits
+	 *         (omitted ones included), the fraction of set bits is f(a) = 1 -
+	 *         e^(-ka/m) and the next state is omitted with probability f(a)^k.
+	 *         Thus, omitted(a) = integral of f^k from 0 to a, and a is the
+	 *         solution of a - omitted(a) = {@link #size()}.
+	 */
+	public double getOmittedStatesEstimate() {
+		final long n = size();
+		// Newton's method on a - omitted(a) - n starting from a = n. The function is
+		// convex and increasing, so the iteration converges monotonically.
+		double a = n;
+		for (int i = 0; i < 64; i++) {
+			final double g = a - omitted(a) - n;
+			final double next = a - g / (1d - Math.pow(fill(a), this.k));
+			if (next - a < 0.5d || Double.isInfinite(next)) {
+				break;
+			}
+			a = next;
+		}
+		return omitted(a);
+	}
+
+	private double fill(final double a) {
+		return 1d - Math.exp(-this.k * a / this.numBits);
+	}
+
+	private double omitted(final double a) {
+		// Simpson's rule (the integrand is smooth and monotonic).
+		final int intervals = 1024;
+		final double h = a / intervals;
+		double sum = 0d;
+		for (int i = 0; i <= intervals; i++) {
+			final double weight = i == 0 || i == intervals ? 1d : (i % 2 == 1 ? 4d : 2d);
+			sum += weight * Math.pow(fill(i * h), this.k);
+		}
+		return sum * h / 3d;
+	}
+
+	/**
+	 * Bitstate hashing knows nothing about the distances between the
+	 * fingerprints, it thus reports the smallest possible distance.
+	 * 
+	 * @see tlc2.tool.fp.FPSet#checkFPs()
+	 */
+	@Override
+	public long checkFPs() throws IOException {
+		return 1L;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#beginChkpt()
+	 */
+	@Override
+	public void beginChkpt() throws IOException {
+		// Like DiskFPSet, the set is recreated from the trace on recovery.
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#commitChkpt()
+	 */
+	@Override
+	public void commitChkpt() throws IOException {
+		/* SKIP */
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#recover(tlc2.tool.TLCTrace)
+	 */
+	@Override
+	public void recover(final TLCTrace trace) throws IOException {
+		final Enumerator elements = trace.elements();
+		while (elements.nextPos() != -1) {
+			this.recoverFP(elements.nextFP());
+		}
+		elements.close();
+	}
+
+	/**
+	 * Contrary to the exact {@link FPSet}s, a fingerprint being considered seen
+	 * during recovery does not indicate a corrupt checkpoint.
+	 * 
+	 * @see tlc2.tool.fp.FPSet#recoverFP(long)
+	 */
+	@Override
+	public void recoverFP(final long fp) throws IOException {
+		this.put(fp);
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#beginChkpt(java.lang.String)
+	 */
+	@Override
+	public void beginChkpt(final String fname) throws IOException {
+		final BufferedDataOutputStream dos = new BufferedDataOutputStream(this.chkptName(fname, "tmp"));
+		dos.writeLong(this.count.sum());
+		final long words = this.numBits / Long.SIZE;
+		for (long i = 0L; i < words; i++) {
+			dos.writeLong(this.bits.get(i));
+		}
+		dos.close();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#commitChkpt(java.lang.String)
+	 */
+	@Override
+	public void commitChkpt(final String fname) throws IOException {
+		final File oldChkpt = new File(this.chkptName(fname, "chkpt"));
+		final File newChkpt = new File(this.chkptName(fname, "tmp"));
+		if ((oldChkpt.exists() && !oldChkpt.delete()) || !newChkpt.renameTo(oldChkpt)) {
+			throw new IOException("BitstateFPSet.commitChkpt: cannot delete " + oldChkpt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#recover(java.lang.String)
+	 */
+	@Override
+	public void recover(final String fname) throws IOException {
+		final BufferedDataInputStream dis = new BufferedDataInputStream(this.chkptName(fname, "chkpt"));
+		try {
+			this.count.reset();
+			this.count.add(dis.readLong());
+			this.setBits.reset();
+			final long words = this.numBits / Long.SIZE;
+			for (long i = 0L; i < words; i++) {
+				final long word = dis.readLong();
+				this.bits.set(i, word);
+				this.setBits.add(Long.bitCount(word));
+			}
+		} catch (EOFException e) {
+			Assert.fail(EC.SYSTEM_DISK_IO_ERROR_FOR_FILE, "checkpoints");
+		}
+		dis.close();
+	}
+
+	private String chkptName(final String fname, final String ext) {
+		return this.metadir + FileUtil.separator + fname + ".fp." + ext;
+	}
+}
@@ -0,0 +1,672 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.fp;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+
+import tlc2.output.EC;
+import tlc2.output.MP;
+import tlc2.tool.fp.management.DiskFPSetMXWrapper;
+import tlc2.util.BitVector;
+import tlc2.util.BufferedRandomAccessFile;
+import util.Assert;
+
+/**
+ * A variant of {@link OffHeapDiskFPSet} whose in-memory table only stores the
+ * part of a fingerprint that is not implied by its position (quotienting as in
+ * Cleary's compact hash tables and quotient filters):
+ * <p>
+ * The 64 - fpBits significant bits of a fingerprint form the key k. With D the
+ * number of keys per bucket, k is stored in bucket k / D or - due to linear
+ * probing - in one of the next {@link #PROBE_LIMIT} buckets as the remainder
+ * k % D together with the distance to bucket k / D. Thus, a slot takes up 8 +
+ * log2(D) bits instead of 64 bits, e.g. 40 bits with a few GiB of memory and 35
+ * bits with 256 GiB. The remainders are bit-packed into off-heap memory and a
+ * separate byte per slot holds the distance and the flushed mark. Keys and
+ * fingerprints are ordered identically, which is why the table can be evicted
+ * to disk in sorted order without sorting it (see {@link SortedIterator}).
+ * <p>
+ * Like {@link OffHeapDiskFPSet}, put and contains do not acquire locks: A slot
+ * is claimed with a CAS on its metadata byte and published with a second CAS
+ * once its remainder has been written. Lookups that run into a claimed but not
+ * yet published slot spin until it has been published.
+ */
+@SuppressWarnings({ "serial" })
+public final class CompactOffHeapDiskFPSet extends NonCheckpointableDiskFPSet implements FPSetStatistic {
+
+	// See OffHeapDiskFPSet#SYNC for why this has to be a singleton.
+	private static final OffHeapSynchronizer SYNC = new OffHeapSynchronizer();
+
+	/**
+	 * Number of slots per bucket. Probing bucket-wise keeps the distances small
+	 * enough to fit into the metadata byte even at high load factors.
+	 */
+	static final int BUCKET_SLOTS = 8;
+
+	/**
+	 * Maximum distance (in buckets) between a key's slot and its home bucket.
+	 */
+	static final int PROBE_LIMIT = 125;
+
+	// Layout of the metadata byte of a slot.
+	private static final int EMPTY = 0;
+	private static final int PENDING = 0x7F;
+	private static final int DISTANCE_MASK = 0x7F;
+	private static final int FLUSHED = 0x80;
+
+	private static final int FOUND = -1;
+
+	/**
+	 * One byte per slot, eight slots per long.
+	 */
+	private final transient LongArray metas;
+	/**
+	 * The bit-packed remainders (remainderBits per slot).
+	 */
+	private final transient LongArray remainders;
+
+	private final long slots;
+	private final long buckets;
+	/**
+	 * Number of keys per bucket.
+	 */
+	private final long keysPerBucket;
+	private final int remainderBits;
+	private final long remainderMask;
+	private final long keyMask;
+
+	/**
+	 * The fpBits most significant bits of fp0 that are the same for all
+	 * fingerprints of this (nested) set (see MultiFPSet). -1 until the first
+	 * fingerprint has been inserted.
+	 */
+	private volatile long prefix = -1L;
+
+	protected CompactOffHeapDiskFPSet(final FPSetConfiguration fpSetConfig) throws RemoteException {
+		super(fpSetConfig);
+
+		final int fpBits = fpSetConfig.getFpBits();
+		Assert.check(fpBits > 0, EC.GENERAL);
+		this.keyMask = -1L >>> fpBits;
+
+		// The number of remainder bits depends on the number of buckets and vice
+		// versa. Start from 40 bits per slot and let it settle.
+		final long bits = fpSetConfig.getMemoryInBytes() * Byte.SIZE;
+		long b = Math.max(1L, bits / (BUCKET_SLOTS * 48L) - (PROBE_LIMIT + 1));
+		int r = remainderBits(b);
+		for (int i = 0; i < 8; i++) {
+			final long next = Math.max(1L, bits / (BUCKET_SLOTS * (8L + r)) - (PROBE_LIMIT + 1));
+			final int nextR = remainderBits(next);
+			if (next == b && nextR == r) {
+				break;
+			}
+			b = next;
+			r = nextR;
+		}
+		this.keysPerBucket = keysPerBucket(b);
+		this.remainderBits = remainderBits(b);
+		this.remainderMask = -1L >>> (Long.SIZE - this.remainderBits);
+		// Homes are in [0, keyMask / keysPerBucket]. The trailing PROBE_LIMIT
+		// buckets are overflow buckets, thus probing never wraps around.
+		this.buckets = this.keyMask / this.keysPerBucket + 1L;
+		this.slots = (this.buckets + PROBE_LIMIT + 1L) * BUCKET_SLOTS;
+
+		this.metas = new LongArray((this.slots + 7L) / 8L);
+		this.remainders = new LongArray((this.slots * this.remainderBits + 63L) / 64L + 1L);
+
+		// A flush is due once as many fingerprints as there are home slots
+		// have been inserted (or a probe exceeds the PROBE_LIMIT).
+		this.maxTblCnt = this.buckets * BUCKET_SLOTS;
+
+		this.flusher = new CompactFlusher();
+		this.flusherChosen = SYNC.getFlusherChosen();
+		SYNC.add(this::evict);
+	}
+
+	private long keysPerBucket(final long buckets) {
+		// ceil(2^(64 - fpBits) / buckets) with at least two keys per bucket for
+		// the remainder to have at least one bit.
+		return Math.max(2L, this.keyMask / buckets + 1L);
+	}
+
+	private int remainderBits(final long buckets) {
+		return Long.SIZE - Long.numberOfLeadingZeros(keysPerBucket(buckets) - 1L);
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#init(int, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public FPSet init(final int numThreads, final String aMetadir, final String filename) throws IOException {
+		super.init(numThreads, aMetadir, filename);
+		metas.zeroMemory(numThreads);
+		remainders.zeroMemory(numThreads);
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#incWorkers(int)
+	 */
+	public void incWorkers(final int numWorkers) {
+		SYNC.incWorkers(numWorkers);
+	}
+
+	public void evict() {
+		growDiskMark++;
+		final long timestamp = System.currentTimeMillis();
+		final long insertions = tblCnt.longValue();
+
+		LOGGER.log(Level.FINE, "Started eviction of disk {0} the {1}. time at {2} after {3} insertions.",
+				new Object[] { ((DiskFPSetMXWrapper) diskFPSetMXWrapper).getObjectName(), getGrowDiskMark(),
+						timestamp, insertions });
+		try {
+			flusher.flushTable(); // Evict()
+		} catch (IOException e) {
+			throw new OffHeapDiskFPSet.OffHeapRuntimeException(e);
+		}
+
+		final long l = System.currentTimeMillis() - timestamp;
+		flushTime += l;
+		LOGGER.log(Level.FINE, "Finished eviction of disk {0} the {1}. time at {2}, in {3} sec after {4} insertions.",
+				new Object[] { ((DiskFPSetMXWrapper) diskFPSetMXWrapper).getObjectName(), getGrowDiskMark(), l,
+						System.currentTimeMillis(), insertions });
+	}
+
+	private boolean checkEvictPending() {
+		if (SYNC.evictPending()) {
+			SYNC.awaitEviction();
+			return true;
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#sizeof()
+	 */
+	public long sizeof() {
+		long size = 44; // approx size of this DiskFPSet object
+		size += metas.size() * LongSize;
+		size += remainders.size() * LongSize;
+		size += getIndexCapacity() * 4;
+		return size;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#needsDiskFlush()
+	 */
+	@Override
+	protected final boolean needsDiskFlush() {
+		return this.tblCnt.sum() >= this.maxTblCnt || forceFlush;
+	}
+
+	//**************************** Slot access ****************************//
+
+	private int meta(final long slot) {
+		return (int) (metas.getVolatile(slot >>> 3) >>> ((slot & 7L) << 3)) & 0xFF;
+	}
+
+	private boolean casMeta(final long slot, final int expected, final int value) {
+		final long position = slot >>> 3;
+		final int shift = (int) (slot & 7L) << 3;
+		while (true) {
+			final long word = metas.getVolatile(position);
+			if (((word >>> shift) & 0xFF) != expected) {
+				return false;
+			}
+			if (metas.trySet(position, word, (word & ~(0xFFL << shift)) | ((long) value << shift))) {
+				return true;
+			}
+			// Another slot of the same word changed concurrently.
+		}
+	}
+
+	private long remainder(final long slot) {
+		final long offset = slot * remainderBits;
+		final long position = offset >>> 6;
+		final int shift = (int) (offset & 63L);
+		long value = remainders.getVolatile(position) >>> shift;
+		if (shift + remainderBits > 64) {
+			value |= remainders.getVolatile(position + 1L) << (64 - shift);
+		}
+		return value & remainderMask;
+	}
+
+	private void setRemainder(final long slot, final long remainder) {
+		final long offset = slot * remainderBits;
+		final long position = offset >>> 6;
+		final int shift = (int) (offset & 63L);
+		setBits(position, remainderMask << shift, remainder << shift);
+		if (shift + remainderBits > 64) {
+			setBits(position + 1L, remainderMask >>> (64 - shift), remainder >>> (64 - shift));
+		}
+	}
+
+	private void setBits(final long position, final long mask, final long bits) {
+		// Neighboring slots share the word, hence CAS.
+		while (true) {
+			final long word = remainders.getVolatile(position);
+			if (remainders.trySet(position, word, (word & ~mask) | (bits & mask))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The metadata of the slot as soon as it is not pending.
+	 */
+	private int awaitMeta(final long slot) {
+		int meta = meta(slot);
+		while (meta == PENDING) {
+			Thread.onSpinWait();
+			meta = meta(slot);
+		}
+		return meta;
+	}
+
+	/**
+	 * @return true iff the given slot holds the key with the given remainder and
+	 *         (distance + 1). The metadata is re-read to detect a concurrent
+	 *         overwrite of a flushed slot between reading meta and the remainder.
+	 */
+	private boolean holds(final long slot, final int meta, final int distance, final long remainder) {
+		return (meta & DISTANCE_MASK) == distance && remainder(slot) == remainder && meta(slot) == meta;
+	}
+
+	private long fp0(final long home, final long remainder) {
+		return prefix | (home * keysPerBucket + remainder);
+	}
+
+	//**************************** Lookup/Insert ****************************//
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#memLookup(long)
+	 */
+	final boolean memLookup(final long fp0) {
+		return memLookup0(fp0) == FOUND;
+	}
+
+	/**
+	 * @return {@link #FOUND} or the probe of the first slot that can take fp0.
+	 */
+	final int memLookup0(final long fp0) {
+		final long key = fp0 & keyMask;
+		final long home = key / keysPerBucket;
+		final long remainder = key - home * keysPerBucket;
+		final int probes = (PROBE_LIMIT + 1) * BUCKET_SLOTS;
+		int free = probes;
+		for (int i = 0; i < probes; i++) {
+			final long slot = home * BUCKET_SLOTS + i;
+			final int meta = awaitMeta(slot);
+			if (meta == EMPTY) {
+				return Math.min(i, free);
+			} else if (holds(slot, meta, i / BUCKET_SLOTS + 1, remainder)) {
+				// Flushed or not.
+				return FOUND;
+			} else if ((meta & FLUSHED) != 0 && free == probes) {
+				free = i;
+			}
+		}
+		return free;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#memInsert(long)
+	 */
+	final boolean memInsert(final long fp0) throws IOException {
+		return memInsert0(fp0, 0);
+	}
+
+	final boolean memInsert0(final long fp0, final int start) throws IOException {
+		if (prefix == -1L) {
+			prefix = fp0 & ~keyMask;
+		}
+		assert prefix == (fp0 & ~keyMask);
+		final long key = fp0 & keyMask;
+		final long home = key / keysPerBucket;
+		final long remainder = key - home * keysPerBucket;
+		final int probes = (PROBE_LIMIT + 1) * BUCKET_SLOTS;
+		for (int i = start; i < probes; i++) {
+			final long slot = home * BUCKET_SLOTS + i;
+			final int distance = i / BUCKET_SLOTS + 1;
+			final int meta = awaitMeta(slot);
+			if (holds(slot, meta, distance, remainder)) {
+				return true;
+			}
+			if (meta == EMPTY || (meta & FLUSHED) != 0) {
+				if (casMeta(slot, meta, PENDING)) {
+					setRemainder(slot, remainder);
+					Assert.check(casMeta(slot, PENDING, distance), EC.GENERAL);
+					this.tblCnt.increment();
+					return false;
+				}
+				// Retry at current position because another thread wrote a
+				// value concurrently (possibly the same one this thread is
+				// trying to write).
+				i = i - 1;
+			}
+		}
+
+		// See OffHeapDiskFPSet#memInsert0.
+		forceFlush();
+		return put(fp0);
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#put(long)
+	 */
+	public final boolean put(final long fp) throws IOException {
+		if (checkEvictPending()) {
+			return put(fp);
+		}
+
+		// zeros the msb
+		final long fp0 = fp & FLUSHED_MASK;
+
+		// Only check primary and disk iff there exists a disk file. index is
+		// created when we wait and thus cannot race.
+		int start = 0;
+		if (index != null) {
+			if ((start = memLookup0(fp0)) == FOUND) {
+				this.memHitCnt.increment();
+				return true;
+			}
+			if (this.diskLookup(fp0)) {
+				this.diskHitCnt.increment();
+				return true;
+			}
+		}
+		return memInsert0(fp0, start);
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#putBatch(long[], int, tlc2.util.BitVector)
+	 */
+	@Override
+	public final BitVector putBatch(final long[] fps, final int cnt, final BitVector seen) throws IOException {
+		if (cnt < 2) {
+			return super.putBatch(fps, cnt, seen);
+		}
+		// Keys map monotonically to buckets (see OffHeapDiskFPSet#putBatch).
+		final int bits = 32 - Integer.numberOfLeadingZeros(cnt - 1);
+		final long[] keys = new long[cnt];
+		for (int i = 0; i < cnt; i++) {
+			keys[i] = (((fps[i] & FLUSHED_MASK) >>> bits) << bits) | i;
+		}
+		Arrays.sort(keys);
+
+		final long mask = (1L << bits) - 1L;
+		for (int i = 0; i < cnt; i++) {
+			final int j = (int) (keys[i] & mask);
+			seen.set(j, put(fps[j]));
+		}
+		return seen;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#contains(long)
+	 */
+	public final boolean contains(final long fp) throws IOException {
+		if (checkEvictPending()) {
+			return contains(fp);
+		}
+		final long fp0 = fp & FLUSHED_MASK;
+		if (memLookup(fp0)) {
+			return true;
+		}
+		if (this.diskLookup(fp0)) {
+			diskHitCnt.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#forceFlush()
+	 */
+	public void forceFlush() {
+		SYNC.evict();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#acquireTblWriteLock()
+	 */
+	void acquireTblWriteLock() {
+		// no-op for now
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#releaseTblWriteLock()
+	 */
+	void releaseTblWriteLock() {
+		// no-op for now
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#getTblCapacity()
+	 */
+	public long getTblCapacity() {
+		return maxTblCnt;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#getTblLoad()
+	 */
+	public long getTblLoad() {
+		return getTblCnt();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#getOverallCapacity()
+	 */
+	public long getOverallCapacity() {
+		return slots;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#getBucketCapacity()
+	 */
+	public long getBucketCapacity() {
+		return (PROBE_LIMIT + 1) * BUCKET_SLOTS;
+	}
+
+	/**
+	 * @return The number of bits per slot.
+	 */
+	public int getSlotBits() {
+		return Byte.SIZE + remainderBits;
+	}
+
+	//**************************** Eviction ****************************//
+
+	/**
+	 * Returns the fingerprints that have not been flushed yet in ascending
+	 * order and marks them flushed. A fingerprint is at most PROBE_LIMIT buckets
+	 * away from its home bucket and homes are monotonic in the fingerprints.
+	 * Thus, once the iteration has passed bucket b, all fingerprints with home
+	 * buckets less than b - PROBE_LIMIT have been seen and are smaller than any
+	 * fingerprint yet to be seen. The fingerprints seen but not returned yet are
+	 * kept in a min-heap of at most (PROBE_LIMIT + 1) * BUCKET_SLOTS elements.
+	 * Requires exclusive access to the table.
+	 */
+	class SortedIterator {
+
+		private final long[] heap = new long[(PROBE_LIMIT + 2) * BUCKET_SLOTS];
+		private int heapSize = 0;
+		private long slot = 0L;
+
+		long markNext() {
+			while (true) {
+				if (heapSize > 0) {
+					final long min = heap[0];
+					if (slot >= slots || ((min & keyMask) / keysPerBucket) < slot / BUCKET_SLOTS - PROBE_LIMIT) {
+						return poll();
+					}
+				} else if (slot >= slots) {
+					throw new NoSuchElementException();
+				}
+				// Advance by one bucket.
+				final long end = slot + BUCKET_SLOTS;
+				for (; slot < end; slot++) {
+					final int meta = meta(slot);
+					if (meta != EMPTY && (meta & FLUSHED) == 0) {
+						assert meta != PENDING;
+						final long home = slot / BUCKET_SLOTS - ((meta & DISTANCE_MASK) - 1);
+						offer(fp0(home, remainder(slot)));
+						casMeta(slot, meta, meta | FLUSHED);
+					}
+				}
+			}
+		}
+
+		private void offer(final long fp) {
+			int i = heapSize++;
+			while (i > 0) {
+				final int parent = (i - 1) >>> 1;
+				if (heap[parent] <= fp) {
+					break;
+				}
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = fp;
+		}
+
+		private long poll() {
+			final long min = heap[0];
+			final long last = heap[--heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+					child++;
+				}
+				if (last <= heap[child]) {
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return min;
+		}
+	}
+
+	public class CompactFlusher extends Flusher {
+
+		/* (non-Javadoc)
+		 * @see tlc2.tool.fp.DiskFPSet.Flusher#mergeNewEntries(tlc2.util.BufferedRandomAccessFile[], java.io.RandomAccessFile)
+		 */
+		@Override
+		protected void mergeNewEntries(final BufferedRandomAccessFile[] inRAFs, final RandomAccessFile outRAF)
+				throws IOException {
+			final long buffLen = tblCnt.sum();
+			final SortedIterator itr = new SortedIterator();
+
+			index = new long[calculateIndexLen(buffLen)];
+			inRAFs[0].seek(0);
+			mergeNewEntries(inRAFs[0], outRAF, itr, buffLen, inRAFs[0].length() / FPSet.LongSize);
+
+			final long length = (outRAF.length() / LongSize) - 1L;
+			writeIndex(index, outRAF, length);
+
+			// maintain object invariants
+			fileCnt += buffLen;
+		}
+
+		// See OffHeapDiskFPSet.OffHeapMSBFlusher#mergeNewEntries.
+		private void mergeNewEntries(final BufferedRandomAccessFile inRAF, final RandomAccessFile outRAF,
+				final SortedIterator itr, long tableReads, long diskReads) throws IOException {
+			// Disk might be empty.
+			long value = 0L;
+			if (diskReads > 0) {
+				value = inRAF.readLong();
+			} else {
+				assert fileCnt == 0L;
+			}
+
+			long fp = itr.markNext();
+
+			do {
+				if (value == fp) {
+					MP.printWarning(EC.TLC_FP_VALUE_ALREADY_ON_DISK, String.valueOf(value));
+				}
+
+				// From memory/table
+				if (tableReads > 0 && (fp < value || diskReads == 0)) {
+					outRAF.writeLong(fp);
+					tableReads--;
+					diskWriteCnt.increment();
+					if (tableReads > 0) {
+						final long nextFP = itr.markNext();
+						assert nextFP > fp : nextFP + " > " + fp;
+						fp = nextFP;
+					}
+				}
+
+				// From file/disk
+				if (diskReads > 0 && (value < fp || tableReads == 0)) {
+					outRAF.writeLong(value);
+					diskReads--;
+					diskWriteCnt.increment();
+					if (diskReads > 0) {
+						final long nextValue = inRAF.readLong();
+						assert value < nextValue;
+						value = nextValue;
+					}
+				}
+			} while (diskReads > 0 || tableReads > 0);
+
+			// both sets used up completely
+			Assert.check(diskReads == 0L && tableReads == 0L, EC.GENERAL);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#calculateIndexLen(long)
+	 */
+	@Override
+	protected int calculateIndexLen(final long tblcnt) {
+		// See OffHeapDiskFPSet#calculateIndexLen.
+		int indexLen = super.calculateIndexLen(tblcnt);
+		if ((tblcnt + fileCnt - 1L) % NumEntriesPerPage == 0L) {
+			indexLen--;
+		}
+		return indexLen;
+	}
+
+	private void writeIndex(final long[] index, final RandomAccessFile raf, final long length) throws IOException {
+		for (int i = 0; i < index.length; i++) {
+			long pos = Math.min(((long) i) * NumEntriesPerPage, length);
+			raf.seek(pos * LongSize);
+			index[i] = raf.readLong();
+		}
+	}
+}
@@ -22,6 +22,7 @@ import tlc2.tool.TLCTrace;
 import tlc2.tool.TLCTrace.Enumerator;
 import tlc2.tool.fp.management.DiskFPSetMXWrapper;
 import tlc2.tool.management.TLCStandardMBean;
+import tlc2.util.BitVector;
 import tlc2.util.BufferedRandomAccessFile;
 import tlc2.util.IdThread;
 import util.Assert;
@@ -501,6 +502,67 @@ public abstract class DiskFPSet extends FPSet implements FPSetStatistic {
 		return diskHit;
 	}
 
+	/**
+	 * Looks up the first <code>cnt</code> fingerprints of <code>fps</code>, which
+	 * have to be in ascending order, on disk. Contrary to {@link #diskLookup(long)},
+	 * which performs an interpolated binary search per fingerprint, this method
+	 * merges the fingerprints against the sorted disk file in a single pass. The
+	 * pass skips (seeks over) the pages that cannot contain any of the
+	 * fingerprints, but otherwise reads the file sequentially. This method
+	 * requires that "this.rwLock" has been acquired for reading by the caller.
+	 *
+	 * @param hits bit i is set iff fps[i] is on disk
+	 */
+	final void diskLookupSorted(final long[] fps, final int cnt, final BitVector hits) throws IOException {
+		if (this.index == null || cnt == 0) {
+			return;
+		}
+		this.diskLookupCnt.add(cnt);
+
+		final long[] idx = this.index;
+		final long loVal = idx[0];
+		final long hiVal = idx[idx.length - 1];
+
+		final BufferedRandomAccessFile raf = poolOpen();
+		try {
+			// The last element of the index is the largest fingerprint on disk and
+			// not the start of a page.
+			final int lastPage = idx.length - 2;
+			int page = 0;
+			// The number of entries read so far and the last one of them.
+			long pos = 0L;
+			long v = -1L;
+			raf.seek(0L);
+			for (int i = 0; i < cnt; i++) {
+				final long fp = fps[i];
+				if (fp < loVal || fp > hiVal) {
+					continue;
+				}
+				// a) skip the pages whose successor page still starts at or below fp.
+				while (page < lastPage && idx[page + 1] <= fp) {
+					page++;
+				}
+				final long pageStart = ((long) page) * NumEntriesPerPage;
+				if (pos < pageStart) {
+					raf.seek(pageStart * LongSize);
+					diskSeekCnt.increment();
+					pos = pageStart;
+					v = -1L;
+				}
+				// b) read sequentially until the entry is no longer smaller than fp.
+				while (v < fp && pos < this.fileCnt) {
+					v = raf.readLong();
+					pos++;
+				}
+				if (v == fp) {
+					hits.set(i);
+				}
+			}
+		} finally {
+			poolClose(raf);
+		}
+	}
+
 	private final BufferedRandomAccessFile poolOpen() throws IOException {
 		synchronized (this.brafPool) {
 			if (this.poolIndex < this.brafPool.length) {
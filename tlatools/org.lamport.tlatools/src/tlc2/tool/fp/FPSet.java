@@ -175,6 +175,48 @@ public abstract class FPSet extends UnicastRemoteObject implements FPSetRMI
         return bv;
     }
 
+	/**
+	 * Puts all fingerprints of <code>fps</code> into this set. Contrary to
+	 * {@link #putBlock(LongVec)}, bit <code>i</code> of <code>seen</code> has the
+	 * same meaning as the result of {@link #put(long)}: It is set iff
+	 * <code>fps[i]</code> has been in the set before. If a fingerprint occurs
+	 * more than once in <code>fps</code>, its first occurrence is reported as
+	 * unseen and all later ones as seen.
+	 *
+	 * @see #putBatch(long[], int, BitVector)
+	 */
+	public final BitVector putBatch(final long[] fps, final BitVector seen) throws IOException {
+		return putBatch(fps, fps.length, seen);
+	}
+
+	/**
+	 * Puts the first <code>cnt</code> fingerprints of <code>fps</code> into this
+	 * set and records in <code>seen</code> which ones have been in the set
+	 * before (see {@link #putBatch(long[], BitVector)}). Bits at or above
+	 * <code>cnt</code> are left untouched, thus callers can reuse the same buffers
+	 * across batches.
+	 * <p>
+	 * Subclasses are expected to override this method if they can process a
+	 * batch more efficiently than one {@link #put(long)} after the other.
+	 *
+	 * @return <code>seen</code>
+	 */
+	public BitVector putBatch(final long[] fps, final int cnt, final BitVector seen) throws IOException {
+		for (int i = 0; i < cnt; i++) {
+			seen.set(i, put(fps[i]));
+		}
+		return seen;
+	}
+
+	/**
+	 * @return true iff {@link #putBatch(long[], int, BitVector)} is more efficient
+	 *         than one {@link #put(long)} after the other, i.e. iff it pays off to
+	 *         collect fingerprints into batches.
+	 */
+	public boolean hasBatchedLookup() {
+		return false;
+	}
+
     /* (non-Javadoc)
      * @see tlc2.tool.distributed.fp.FPSetRMI#containsBlock(tlc2.util.LongVec)
      */
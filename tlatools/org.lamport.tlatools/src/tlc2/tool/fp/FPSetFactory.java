@@ -26,7 +26,12 @@ public abstract class FPSetFactory {
 	public static final String IMPL_PROPERTY = FPSet.class.getName() + ".impl";
 	
 	private static boolean allocatesOnHeap(final Class<? extends FPSet> clazz) {
-		return !OffHeapDiskFPSet.class.isAssignableFrom(clazz);
+		return !allocatesOffHeap(clazz);
+	}
+
+	private static boolean allocatesOffHeap(final Class<? extends FPSet> clazz) {
+		return OffHeapDiskFPSet.class.isAssignableFrom(clazz) || CompactOffHeapDiskFPSet.class.isAssignableFrom(clazz)
+				|| BitstateFPSet.class.isAssignableFrom(clazz);
 	}
 
 	public static boolean allocatesOnHeap(final String clazz) {
@@ -55,7 +60,7 @@ public abstract class FPSetFactory {
 
 	private static boolean supports32Bits(final Class<? extends FPSet> clazz) {
 		if (TLCRuntime.getInstance().getArchitecture() == TLCRuntime.ARCH.x86
-				&& OffHeapDiskFPSet.class.isAssignableFrom(clazz)) {
+				&& allocatesOffHeap(clazz)) {
 			return false;
 		}
 		return true;
@@ -153,6 +158,8 @@ public abstract class FPSetFactory {
 		l.add(MSBDiskFPSet.class.getName());
 		l.add(LSBDiskFPSet.class.getName());
 		l.add(OffHeapDiskFPSet.class.getName());
+		l.add(CompactOffHeapDiskFPSet.class.getName());
+		l.add(BitstateFPSet.class.getName());
 
 		return l.toArray(new String[l.size()]);
 	}
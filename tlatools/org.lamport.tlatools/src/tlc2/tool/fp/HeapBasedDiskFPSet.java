@@ -3,11 +3,13 @@ package tlc2.tool.fp;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 
 import tlc2.TLCGlobals;
 import tlc2.tool.fp.management.DiskFPSetMXWrapper;
+import tlc2.util.BitVector;
 import tlc2.util.Striped;
 import util.Assert;
 
@@ -60,6 +62,11 @@ public abstract class HeapBasedDiskFPSet extends DiskFPSet {
 	 */
 	protected static final int LogDefaultMaxTblCnt = 19;
 	static final int DefaultMaxTblCnt = (1 << LogDefaultMaxTblCnt);
+	/**
+	 * Minimum number of fingerprints for which {@link #putBatch(long[], int, BitVector)}
+	 * sorts the batch and merges it against the disk file.
+	 */
+	static final int MinSortedBatch = Integer.getInteger(HeapBasedDiskFPSet.class.getName() + ".minSortedBatch", 1 << 12);
 
 	protected HeapBasedDiskFPSet(final FPSetConfiguration fpSetConfig) throws RemoteException {
 		super(fpSetConfig);
@@ -282,7 +289,17 @@ public abstract class HeapBasedDiskFPSet extends DiskFPSet {
 		// Another writer could write the same fingerprint here if it gets
 		// interleaved. This is no problem though, because memInsert again
 		// checks existence for fp to be inserted
-		
+		return insert(fp0);
+	}
+
+	/**
+	 * Inserts fp0, which has been looked up in memory and on disk without
+	 * success, into the in-memory buffer and flushes the buffer to disk if it is
+	 * full.
+	 * 
+	 * @return true iff another writer inserted fp0 concurrently
+	 */
+	private final boolean insert(final long fp0) throws IOException {
 		final Lock w = rwLock.getAt(getLockIndex(fp0)).writeLock();
 		w.lock();
 		
@@ -326,6 +343,94 @@ public abstract class HeapBasedDiskFPSet extends DiskFPSet {
 		return false;
 	}
 
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#hasBatchedLookup()
+	 */
+	public boolean hasBatchedLookup() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#putBatch(long[], int, tlc2.util.BitVector)
+	 * 
+	 * A large batch is sorted first. Its fingerprints missing from the in-memory
+	 * buffer are then looked up with a single sequential pass over the disk file
+	 * (see DiskFPSet#diskLookupSorted) instead of one random access per
+	 * fingerprint. Smaller batches, such as the successors of a single state,
+	 * are put one after the other.
+	 */
+	public BitVector putBatch(final long[] fps, final int cnt, final BitVector seen) throws IOException {
+		if (cnt < MinSortedBatch) {
+			return super.putBatch(fps, cnt, seen);
+		}
+		
+		// a) Sort the fingerprints (with zeroed msb) and drop duplicates.
+		final long[] keys = new long[cnt];
+		for (int i = 0; i < cnt; i++) {
+			keys[i] = checkValid(fps[i]) & 0x7FFFFFFFFFFFFFFFL;
+		}
+		Arrays.sort(keys);
+		int keyCnt = 0;
+		for (int i = 0; i < cnt; i++) {
+			if (keyCnt == 0 || keys[keyCnt - 1] != keys[i]) {
+				keys[keyCnt++] = keys[i];
+			}
+		}
+		final BitVector keySeen = new BitVector(keyCnt);
+
+		// b) Look up the keys in the in-memory buffer and remember the misses.
+		final long[] misses = new long[keyCnt];
+		final int[] missKeys = new int[keyCnt];
+		int missCnt = 0;
+		for (int i = 0; i < keyCnt; i++) {
+			final Lock readLock = rwLock.getAt(getLockIndex(keys[i])).readLock();
+			readLock.lock();
+			final boolean memHit = this.memLookup(keys[i]);
+			readLock.unlock();
+			if (memHit) {
+				this.memHitCnt.increment();
+				keySeen.set(i);
+			} else {
+				misses[missCnt] = keys[i];
+				missKeys[missCnt++] = i;
+			}
+		}
+
+		// c) Merge the (still sorted) misses against the disk file. Any read lock
+		// keeps the flusher, which acquires all locks, from rewriting the file.
+		final BitVector diskHits = new BitVector(missCnt);
+		final Lock readLock = rwLock.getAt(0).readLock();
+		readLock.lock();
+		try {
+			this.diskLookupSorted(misses, missCnt, diskHits);
+		} finally {
+			readLock.unlock();
+		}
+
+		// d) Insert the keys found neither in memory nor on disk.
+		for (int i = 0; i < missCnt; i++) {
+			if (diskHits.get(i)) {
+				this.diskHitCnt.increment();
+				keySeen.set(missKeys[i]);
+			} else if (insert(misses[i])) {
+				keySeen.set(missKeys[i]);
+			}
+		}
+
+		// e) Report in batch order. Only the first occurrence of a new fingerprint
+		// is unseen.
+		for (int i = 0; i < cnt; i++) {
+			final int k = Arrays.binarySearch(keys, 0, keyCnt, checkValid(fps[i]) & 0x7FFFFFFFFFFFFFFFL);
+			if (keySeen.get(k)) {
+				seen.set(i);
+			} else {
+				seen.reset(i);
+				keySeen.set(k);
+			}
+		}
+		return seen;
+	}
+
 	/* (non-Javadoc)
 	 * @see tlc2.tool.fp.DiskFPSet#memInsert(long)
 	 */
@@ -63,7 +63,7 @@ public final class LongArray {
 	 */
 	private static final int logAddressSize = 3;
 
-	LongArray(final long positions) {
+	public LongArray(final long positions) {
 		this.length = positions;
 		this.unsafe = getUnsafe();
 		
@@ -242,6 +242,14 @@ public final class LongArray {
 		return this.unsafe.getAddress(log2phy(position));
 	}
 
+	/**
+	 * Volatile variant of {@link LongArray#get(long)}.
+	 */
+	public final long getVolatile(final long position) {
+		rangeCheck(position);
+		return this.unsafe.getLongVolatile(null, log2phy(position));
+	}
+
 	/**
 	 * Swaps elements at pos1 and pos2. This is not atomic. The element at pos1
 	 * will for a moment not be an element of {@link LongArray}.
@@ -265,6 +273,13 @@ public final class LongArray {
 	}
 
 	
+	/**
+	 * Releases the memory of this array. The array must not be used afterwards.
+	 */
+	public final void free() {
+		this.unsafe.freeMemory(baseAddress);
+	}
+
     /**
      * Returns the number of elements in this array.
      *
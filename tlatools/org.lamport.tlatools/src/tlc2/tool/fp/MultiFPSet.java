@@ -9,12 +9,14 @@ import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.IntStream;
 
 import tlc2.output.EC;
 import tlc2.tool.TLCTrace;
 import tlc2.tool.TLCTrace.Enumerator;
+import tlc2.util.BitVector;
 import util.Assert;
 
 /**
@@ -121,6 +123,55 @@ public class MultiFPSet extends FPSet {
 		return getFPSet(fp).put(fp);
 	}
 
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#hasBatchedLookup()
+	 */
+	@Override
+	public final boolean hasBatchedLookup() {
+		return this.sets.get(0).hasBatchedLookup();
+	}
+
+	/**
+	 * Routes the fingerprints to their nested {@link FPSet}s and hands each of
+	 * them its share of the batch in a single call.
+	 * 
+	 * @see tlc2.tool.fp.FPSet#putBatch(long[], int, BitVector)
+	 */
+	@Override
+	public final BitVector putBatch(final long[] fps, final int cnt, final BitVector seen) throws IOException {
+		if (cnt < 2) {
+			return super.putBatch(fps, cnt, seen);
+		}
+		// Group the batch by nested FPSet. The low bits of each key store the
+		// fingerprint's position in fps, which keeps the original order within a
+		// group.
+		final int bits = 32 - Integer.numberOfLeadingZeros(cnt - 1);
+		final long[] keys = new long[cnt];
+		for (int i = 0; i < cnt; i++) {
+			keys[i] = ((fps[i] >>> this.fpbits) << bits) | i;
+		}
+		Arrays.sort(keys);
+
+		final long mask = (1L << bits) - 1L;
+		final long[] subFps = new long[cnt];
+		final BitVector subSeen = new BitVector(cnt);
+		int lo = 0;
+		while (lo < cnt) {
+			final long setIdx = keys[lo] >>> bits;
+			int hi = lo;
+			while (hi < cnt && (keys[hi] >>> bits) == setIdx) {
+				subFps[hi - lo] = fps[(int) (keys[hi] & mask)];
+				hi++;
+			}
+			this.sets.get((int) setIdx).putBatch(subFps, hi - lo, subSeen);
+			for (int i = lo; i < hi; i++) {
+				seen.set((int) (keys[i] & mask), subSeen.get(i - lo));
+			}
+			lo = hi;
+		}
+		return seen;
+	}
+
 	/**
 	 * Returns <code>true</code> iff the fingerprint <code>fp</code> is in this
 	 * set.
@@ -6,21 +6,19 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 
@@ -29,8 +27,11 @@ import tlc2.output.EC;
 import tlc2.output.MP;
 import tlc2.tool.fp.LongArrays.LongComparator;
 import tlc2.tool.fp.management.DiskFPSetMXWrapper;
+import tlc2.util.BitVector;
 import tlc2.util.BufferedRandomAccessFile;
+import tlc2.util.Striped;
 import util.Assert;
+import util.FileUtil;
 
 /**
  * see OpenAddressing.tla
@@ -38,70 +39,6 @@ import util.Assert;
 @SuppressWarnings({ "serial" })
 public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implements FPSetStatistic {
 	
-	private static class OffHeapSynchronizer {
-		
-		private final Set<OffHeapDiskFPSet> sets = new HashSet<OffHeapDiskFPSet>();
-		
-		private final AtomicBoolean flusherChosen = new AtomicBoolean();
-		
-		// This barrier gets run after one thread signals the need to suspend
-		// put and contains operations to evict to secondary. Signaling is done
-		// via the flusherChoosen AtomicBoolean. All threads (numThreads) will
-		// then await on the barrier and the Runnable be executed when the
-		// last of numThreads arrives.
-		// Compared to an AtomicBoolean, the barrier operation use locks and
-		// are thus comparably expensive.
-		private final Phaser phaser = new Phaser(1) {
-
-			@Override
-			protected boolean onAdvance(int phase, int registeredParties) {
-				// Atomically evict and reset flusherChosen to make sure no
-				// thread re-read flusherChosen=true after an eviction and
-				// waits again.
-				for (OffHeapDiskFPSet set : sets) {
-					set.evict();
-				}
-
-				// Release exclusive access. It has to be done by the runnable
-				// before workers waiting on the barrier wake up again.
-				Assert.check(flusherChosen.compareAndSet(true, false), EC.GENERAL);
-				
-				return super.onAdvance(phase, registeredParties);
-			}
-		};
-		
-		private OffHeapSynchronizer() {
-			// Don't want any copies.
-		}
-		
-		public final void add(final OffHeapDiskFPSet aSet) {
-			this.sets.add(aSet);
-		}
-		
-		public final void incWorkers(final int numWorkers) {
-			final int parties = phaser.getRegisteredParties();
-			if (parties < numWorkers) {
-				phaser.bulkRegister(numWorkers - parties);
-			}
-		}
-		
-		public final boolean evictPending() {
-			return flusherChosen.get();
-		}
-		
-		public final void evict() {
-			flusherChosen.compareAndSet(false, true);
-		}
-		
-		public final void awaitEviction() {
-			phaser.arriveAndAwaitAdvance();
-		}
-		
-		public AtomicBoolean getFlusherChosen() {
-			return flusherChosen;
-		}
-	}
-
 	// We require a singleton here, because if TLC is run with multiple instances
 	// of FPSets - the default - workers will call evict and awaitEvict on 
 	// all FPSet instances. Thus, an individual synchronization internal to each
@@ -120,7 +57,42 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		return LongArray.isSupported();
 	}
 
-	private final transient LongArray array;
+	/**
+	 * The table into which fingerprints get inserted.
+	 */
+	private transient volatile LongArray array;
+	
+	/**
+	 * With background eviction, the table which is being merged into the disk
+	 * file by the background thread and which is still consulted by lookups
+	 * until the merge has finished. null otherwise.
+	 * 
+	 * @see OffHeapDiskFPSet#seal(LongArray)
+	 */
+	private transient volatile LongArray sealed;
+	
+	/**
+	 * With background eviction, the zeroed table that replaces {@link #array}
+	 * once it is sealed. null while a sealed table is being merged.
+	 */
+	private transient LongArray spare;
+	
+	/**
+	 * The number of fingerprints in {@link #sealed}.
+	 */
+	private volatile long sealedCnt;
+	
+	/**
+	 * Non-null iff fingerprints get evicted in the background. put and contains
+	 * acquire a read lock for their lookups and insertions. Sealing a table and
+	 * replacing the disk file after a background merge acquire all write locks,
+	 * both of which are short.
+	 */
+	private final transient Striped rwLock;
+	
+	private final transient Object evictionMonitor = new Object();
+	
+	private transient volatile IOException evictionFailure;
 	
 	/**
 	 * The indexer maps a fingerprint to a in-memory bucket and the associated lock
@@ -130,12 +102,32 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	private int numThreads;
 
 	protected OffHeapDiskFPSet(final FPSetConfiguration fpSetConfig) throws RemoteException {
+		this(fpSetConfig, Boolean.getBoolean(OffHeapDiskFPSet.class.getName() + ".backgroundEviction"));
+	}
+	
+	/**
+	 * @param backgroundEviction
+	 *            If true, a full table is merged into the disk file by a
+	 *            background thread while workers continue to insert into a
+	 *            second table. The memory is split in half between the two
+	 *            tables. Otherwise, all workers wait while the table is
+	 *            evicted.
+	 */
+	OffHeapDiskFPSet(final FPSetConfiguration fpSetConfig, final boolean backgroundEviction) throws RemoteException {
 		super(fpSetConfig);
 		
-		final long positions = fpSetConfig.getMemoryInFingerprintCnt();
+		final long positions = backgroundEviction ? Math.max(1L, fpSetConfig.getMemoryInFingerprintCnt() / 2L)
+				: fpSetConfig.getMemoryInFingerprintCnt();
 		
 		// Determine base address which varies depending on machine architecture.
 		this.array = new LongArray(positions);
+		if (backgroundEviction) {
+			this.spare = new LongArray(positions);
+			this.rwLock = Striped.readWriteLock(1 << HeapBasedDiskFPSet.LogLockCnt);
+			this.maxTblCnt = positions;
+		} else {
+			this.rwLock = null;
+		}
 		
 		// If Hamming weight is 1, the logical index address can be calculated
 		// significantly faster by bit-shifting. However, with large memory
@@ -156,7 +148,7 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		this.flusher = new OffHeapMSBFlusher(array);
 		
 		this.flusherChosen = SYNC.getFlusherChosen();
-		SYNC.add(this);
+		SYNC.add(this::evict);
 	}
 	
 	/* (non-Javadoc)
@@ -169,6 +161,9 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		this.numThreads = numThreads;
 		
 		array.zeroMemory(numThreads);
+		if (spare != null) {
+			spare.zeroMemory(numThreads);
+		}
 		return this;
 	}
 	
@@ -234,12 +229,31 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		return false;
 	}
 
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.DiskFPSet#size()
+	 */
+	@Override
+	public long size() {
+		if (rwLock == null) {
+			return super.size();
+		}
+		// Excludes the replacement of the disk file which moves the
+		// fingerprints of the sealed table to fileCnt.
+		final Lock readLock = rwLock.getAt(0).readLock();
+		readLock.lock();
+		try {
+			return super.size() + sealedCnt;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see tlc2.tool.fp.DiskFPSet#sizeof()
 	 */
 	public long sizeof() {
 		long size = 44; // approx size of this DiskFPSet object
-		size += maxTblCnt * LongSize;
+		size += maxTblCnt * LongSize * (rwLock == null ? 1 : 2);
 		size += getIndexCapacity() * 4;
 		return size;
 	}
@@ -267,6 +281,8 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	}
     
 	private static final int FOUND = -1;
+	private static final int INSERTED = -2;
+	private static final int FULL = -3;
     
 	/* (non-Javadoc)
 	 * @see tlc2.tool.fp.DiskFPSet#memLookup(long)
@@ -276,6 +292,10 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	}
 
 	final int memLookup0(final long fp0) {
+		return memLookup0(array, fp0);
+	}
+
+	private int memLookup0(final LongArray array, final long fp0) {
 		int free = PROBE_LIMIT;
 		for (int i = 0; i <= PROBE_LIMIT; i++) {
 			final long position = indexer.getIdx(fp0, i);
@@ -301,6 +321,29 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	}
 
 	final boolean memInsert0(final long fp0, final int start) throws IOException {
+		final int result = memInsert0(array, fp0, start);
+		if (result != FULL) {
+			return result == FOUND;
+		}
+		
+		// We failed to insert into primary. Consequently, lets try and make
+		// some room by signaling all threads to wait for eviction.
+		forceFlush();
+		// We've signaled for eviction to start or failed because some other
+		// thread beat us to it. Actual eviction and setting flusherChosen back
+		// to false is done by the Barrier's Runnable. We cannot set
+		// flusherChosen back to false after barrier.awaits returns because it
+		// leaves a window during which other threads read the old true value of
+		// flusherChosen a second time and immediately wait again.
+		
+		return put(fp0);
+	}
+
+	/**
+	 * @return {@link #FOUND}, {@link #INSERTED}, or {@link #FULL} if fp0 could
+	 *         not be inserted within the probe limit.
+	 */
+	private int memInsert0(final LongArray array, final long fp0, final int start) {
 		// See OffHeapDiskFPSetJPFTest for a (verbatim) version that has
 		// additionally been verified with JPF.
 		for (int i = start; i < PROBE_LIMIT; i++) {
@@ -310,7 +353,7 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 				// Try to CAS the new fingerprint.
 				if (array.trySet(position, expected, fp0)) {
 					this.tblCnt.increment();
-					return false;
+					return INSERTED;
 				} else {
 					// Retry at current position because another thread wrote a
 					// value concurrently (possibly the same one this thread is
@@ -322,22 +365,10 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 			
 			// Expected is the fingerprint to be inserted.
 			if ((expected & FLUSHED_MASK) == fp0) {
-				return true;
+				return FOUND;
 			}
 		}
-
-		
-		// We failed to insert into primary. Consequently, lets try and make
-		// some room by signaling all threads to wait for eviction.
-		forceFlush();
-		// We've signaled for eviction to start or failed because some other
-		// thread beat us to it. Actual eviction and setting flusherChosen back
-		// to false is done by the Barrier's Runnable. We cannot set
-		// flusherChosen back to false after barrier.awaits returns because it
-		// leaves a window during which other threads read the old true value of
-		// flusherChosen a second time and immediately wait again.
-		
-		return put(fp0);
+		return FULL;
 	}
 
 	/* (non-Javadoc)
@@ -350,6 +381,10 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 
 		// zeros the msb
 		final long fp0 = fp & FLUSHED_MASK;
+		
+		if (rwLock != null) {
+			return putWithBackgroundEviction(fp0);
+		}
 
 		// Only check primary and disk iff there exists a disk file. index is
 		// created when we wait and thus cannot race.
@@ -372,6 +407,35 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		return memInsert0(fp0, start);
 	}
 
+	/* (non-Javadoc)
+	 * @see tlc2.tool.fp.FPSet#putBatch(long[], int, tlc2.util.BitVector)
+	 */
+	@Override
+	public final BitVector putBatch(final long[] fps, final int cnt, final BitVector seen) throws IOException {
+		if (cnt < 2) {
+			return super.putBatch(fps, cnt, seen);
+		}
+		// Both indexers map fingerprints monotonically to positions. Thus, visiting
+		// the fingerprints in ascending order makes consecutive probes hit adjacent
+		// slots of the primary table (and adjacent pages of the index/disk file)
+		// instead of jumping around randomly. The low bits of each key store the
+		// fingerprint's position in fps, which breaks ties between equal
+		// fingerprints in favor of the first occurrence.
+		final int bits = 32 - Integer.numberOfLeadingZeros(cnt - 1);
+		final long[] keys = new long[cnt];
+		for (int i = 0; i < cnt; i++) {
+			keys[i] = (((fps[i] & FLUSHED_MASK) >>> bits) << bits) | i;
+		}
+		Arrays.sort(keys);
+		
+		final long mask = (1L << bits) - 1L;
+		for (int i = 0; i < cnt; i++) {
+			final int j = (int) (keys[i] & mask);
+			seen.set(j, put(fps[j]));
+		}
+		return seen;
+	}
+
 	/* (non-Javadoc)
 	 * @see tlc2.tool.fp.FPSet#contains(long)
 	 */
@@ -385,6 +449,10 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		// zeros the msb
 		final long fp0 = fp & FLUSHED_MASK;
 		
+		if (rwLock != null) {
+			return containsWithBackgroundEviction(fp0);
+		}
+		
 		// Lookup in primary
 		if (memLookup(fp0)) {
 			return true;
@@ -403,6 +471,14 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	 * @see tlc2.tool.fp.DiskFPSet#forceFlush()
 	 */
 	public void forceFlush() {
+		if (rwLock != null) {
+			try {
+				seal(array);
+			} catch (IOException e) {
+				throw new OffHeapRuntimeException(e);
+			}
+			return;
+		}
 		SYNC.evict();
 	}
 
@@ -455,6 +531,7 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 	 */
 	@Override
 	public long checkFPs() throws IOException {
+		awaitBackgroundEviction();
 		if (getTblCnt() <= 0) {
 			return Long.MAX_VALUE;
 		}
@@ -591,6 +668,371 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 		// collision probability, which will also be very small.
 	}
 
+	//**************************** Background eviction ****************************//
+
+	private boolean putWithBackgroundEviction(final long fp0) throws IOException {
+		final LongArray a;
+		final Lock readLock = rwLock.getAt(getLockIndex(fp0)).readLock();
+		readLock.lock();
+		try {
+			a = array;
+			final LongArray s = sealed;
+			
+			// Same as put except that the sealed table has to be looked up
+			// too. While the read lock is held, neither array nor sealed nor
+			// the disk file change.
+			int start = 0;
+			if (index != null || s != null) {
+				if ((start = memLookup0(a, fp0)) == FOUND) {
+					this.memHitCnt.increment();
+					return true;
+				}
+				if (s != null && memLookup0(s, fp0) == FOUND) {
+					this.memHitCnt.increment();
+					return true;
+				}
+				if (this.diskLookup(fp0)) {
+					this.diskHitCnt.increment();
+					return true;
+				}
+			}
+			final int result = memInsert0(a, fp0, start);
+			if (result != FULL) {
+				return result == FOUND;
+			}
+		} finally {
+			readLock.unlock();
+		}
+		
+		// a is full. Seal it (which might have to wait for the eviction of the
+		// previously sealed table to finish) and retry with the fresh table.
+		seal(a);
+		return putWithBackgroundEviction(fp0);
+	}
+
+	private boolean containsWithBackgroundEviction(final long fp0) throws IOException {
+		final Lock readLock = rwLock.getAt(getLockIndex(fp0)).readLock();
+		readLock.lock();
+		try {
+			if (memLookup0(array, fp0) == FOUND) {
+				return true;
+			}
+			final LongArray s = sealed;
+			if (s != null && memLookup0(s, fp0) == FOUND) {
+				return true;
+			}
+			if (this.diskLookup(fp0)) {
+				diskHitCnt.increment();
+				return true;
+			}
+			return false;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private int getLockIndex(final long fp0) {
+		return (int) (fp0 & (rwLock.size() - 1));
+	}
+
+	/**
+	 * Replaces the given (full) table with the spare table and starts a
+	 * background thread that merges the given table into the disk file. If the
+	 * previously sealed table is still being merged, this waits for the merge to
+	 * finish first. Workers only wait for the replacement of the table and of
+	 * the disk file, not for the merge.
+	 */
+	private void seal(final LongArray a) throws IOException {
+		synchronized (evictionMonitor) {
+			awaitBackgroundEviction();
+			if (array != a || tblCnt.sum() == 0L) {
+				// Another thread has sealed a concurrently (or there is
+				// nothing to evict).
+				return;
+			}
+			rwLock.acquireAllLocks();
+			try {
+				sealedCnt = tblCnt.sum();
+				sealed = a;
+				array = spare;
+				spare = null;
+				tblCnt.reset();
+				this.flusher = new OffHeapMSBFlusher(array);
+			} finally {
+				rwLock.releaseAllLocks();
+			}
+		}
+		final Thread thread = new Thread(() -> evictInBackground(a), "TLC OffHeapDiskFPSet Evictor");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits until the sealed table (if any) has been merged into the disk file.
+	 */
+	private void awaitBackgroundEviction() throws IOException {
+		if (rwLock == null) {
+			return;
+		}
+		synchronized (evictionMonitor) {
+			while (spare == null && evictionFailure == null) {
+				try {
+					evictionMonitor.wait();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new OffHeapRuntimeException(ie);
+				}
+			}
+			if (evictionFailure != null) {
+				throw new IOException(evictionFailure);
+			}
+		}
+	}
+
+	private void evictInBackground(final LongArray a) {
+		// statistics
+		growDiskMark++;
+		final long timestamp = System.currentTimeMillis();
+		final long insertions = sealedCnt;
+
+		LOGGER.log(Level.FINE, "Started background eviction of disk {0} the {1}. time at {2} after {3} insertions.",
+				new Object[] { ((DiskFPSetMXWrapper) diskFPSetMXWrapper).getObjectName(), getGrowDiskMark(),
+						timestamp, insertions });
+		try {
+			// Merge a and the disk file into the tmp file while workers keep
+			// reading the current disk file.
+			final long[] newIndex = new long[calculateIndexLen(insertions)];
+			final File tmpFile = new File(tmpFilename);
+			tmpFile.delete();
+			final RandomAccessFile outRAF = new BufferedRandomAccessFile(tmpFile, "rw");
+			final BufferedRandomAccessFile inRAF = new BufferedRandomAccessFile(fpFilename, "r");
+			try {
+				outRAF.setLength((insertions + fileCnt) * FPSet.LongSize);
+				mergeNewEntries(inRAF, outRAF, new SealedIterator(a, indexer), insertions, fileCnt);
+				writeIndex(newIndex, outRAF, (outRAF.length() / LongSize) - 1L);
+			} finally {
+				inRAF.close();
+				outRAF.close();
+			}
+			
+			// Replace the disk file and drop the sealed table.
+			rwLock.acquireAllLocks();
+			try {
+				for (int i = 0; i < braf.length; i++) {
+					braf[i].close();
+				}
+				for (int i = 0; i < brafPool.length; i++) {
+					brafPool[i].close();
+				}
+				FileUtil.replaceFile(tmpFilename, fpFilename);
+				for (int i = 0; i < braf.length; i++) {
+					braf[i] = new BufferedRandomAccessFile(fpFilename, "r");
+				}
+				for (int i = 0; i < brafPool.length; i++) {
+					brafPool[i] = new BufferedRandomAccessFile(fpFilename, "r");
+				}
+				poolIndex = 0;
+				index = newIndex;
+				fileCnt += insertions;
+				sealed = null;
+				sealedCnt = 0L;
+			} finally {
+				rwLock.releaseAllLocks();
+			}
+			
+			// No worker holds a reference to a anymore.
+			a.zeroMemory();
+			synchronized (evictionMonitor) {
+				spare = a;
+				evictionMonitor.notifyAll();
+			}
+		} catch (IOException e) {
+			synchronized (evictionMonitor) {
+				evictionFailure = e;
+				evictionMonitor.notifyAll();
+			}
+			return;
+		}
+
+		final long l = System.currentTimeMillis() - timestamp;
+		flushTime += l;
+		LOGGER.log(Level.FINE,
+				"Finished background eviction of disk {0} the {1}. time at {2}, in {3} sec after {4} insertions.",
+				new Object[] { ((DiskFPSetMXWrapper) diskFPSetMXWrapper).getObjectName(), getGrowDiskMark(), l,
+						System.currentTimeMillis(), insertions });
+	}
+
+	/*
+	 * Same as OffHeapMSBFlusher#mergeNewEntries except that the fingerprints of
+	 * the table are not marked flushed.
+	 */
+	private void mergeNewEntries(final BufferedRandomAccessFile inRAF, final RandomAccessFile outRAF,
+			final SealedIterator itr, long tableReads, long diskReads) throws IOException {
+		// Disk might be empty.
+		long value = 0L;
+		if (diskReads > 0) {
+			value = inRAF.readLong();
+		}
+
+		long fp = itr.next();
+
+		do {
+			if (value == fp) {
+				MP.printWarning(EC.TLC_FP_VALUE_ALREADY_ON_DISK, String.valueOf(value));
+			}
+
+			// From memory/table
+			if (tableReads > 0 && (fp < value || diskReads == 0)) {
+				outRAF.writeLong(fp);
+				tableReads--;
+				diskWriteCnt.increment();
+				if (tableReads > 0) {
+					final long nextFP = itr.next();
+					assert nextFP > fp : nextFP + " > " + fp;
+					fp = nextFP;
+				}
+			}
+
+			// From file/disk
+			if (diskReads > 0 && (value < fp || tableReads == 0)) {
+				outRAF.writeLong(value);
+				diskReads--;
+				diskWriteCnt.increment();
+				if (diskReads > 0) {
+					final long nextValue = inRAF.readLong();
+					assert value < nextValue;
+					value = nextValue;
+				}
+			}
+		} while (diskReads > 0 || tableReads > 0);
+
+		// both sets used up completely
+		Assert.check(diskReads == 0L && tableReads == 0L, EC.GENERAL);
+	}
+
+	/**
+	 * A non-thread safe iterator whose next method returns the next largest
+	 * (non-flushed) element of a table without modifying the table. Contrary to
+	 * {@link Iterator}, this does not require the table to be sorted (by
+	 * {@link Flusher#prepareTable()}), which would break concurrent lookups.
+	 * <p>
+	 * A fingerprint is stored less than PROBE_LIMIT positions after its index
+	 * and indices are monotonic in the fingerprints. Thus, once the scan has
+	 * passed position p, the fingerprints whose index is less than p -
+	 * PROBE_LIMIT are smaller than any fingerprint not yet seen. The
+	 * fingerprints seen but not returned yet are kept in a min-heap. Fingerprints
+	 * that wrapped around the end of the table are added when the scan reaches
+	 * the end.
+	 */
+	static class SealedIterator {
+
+		private final LongArray array;
+		private final Indexer indexer;
+
+		private final long[] heap;
+		private int heapSize = 0;
+		private final long[] wrapped = new long[PROBE_LIMIT];
+		private int wrappedCnt = 0;
+		private long pos = 0L;
+
+		SealedIterator(final LongArray array, final Indexer indexer) {
+			this.array = array;
+			this.indexer = indexer;
+			if (array.size() > 2L * PROBE_LIMIT) {
+				this.heap = new long[2 * PROBE_LIMIT + 2];
+			} else {
+				// Probes might wrap around a small table several times. Just
+				// sort it.
+				final long[] fps = new long[(int) array.size()];
+				for (int i = 0; i < fps.length; i++) {
+					final long fp = array.get(i);
+					if (fp > EMPTY) {
+						fps[heapSize++] = fp;
+					}
+				}
+				Arrays.sort(fps, 0, heapSize);
+				// Store in descending order to poll from the end.
+				for (int i = 0; i < heapSize / 2; i++) {
+					final long tmp = fps[i];
+					fps[i] = fps[heapSize - 1 - i];
+					fps[heapSize - 1 - i] = tmp;
+				}
+				this.heap = fps;
+				this.pos = array.size() + 1L;
+			}
+		}
+
+		long next() {
+			if (pos > array.size()) {
+				if (array.size() <= 2L * PROBE_LIMIT) {
+					if (heapSize == 0) {
+						throw new NoSuchElementException();
+					}
+					return heap[--heapSize];
+				}
+			}
+			while (true) {
+				if (pos == array.size()) {
+					for (int i = 0; i < wrappedCnt; i++) {
+						offer(wrapped[i]);
+					}
+					wrappedCnt = 0;
+					pos++;
+				}
+				if (heapSize > 0 && (pos > array.size() || indexer.getIdx(heap[0]) + PROBE_LIMIT < pos)) {
+					return poll();
+				}
+				if (pos > array.size()) {
+					throw new NoSuchElementException();
+				}
+				final long fp = array.get(pos);
+				if (fp > EMPTY) {
+					if (indexer.getIdx(fp) > pos) {
+						wrapped[wrappedCnt++] = fp;
+					} else {
+						offer(fp);
+					}
+				}
+				pos++;
+			}
+		}
+
+		private void offer(final long fp) {
+			int i = heapSize++;
+			while (i > 0) {
+				final int parent = (i - 1) >>> 1;
+				if (heap[parent] <= fp) {
+					break;
+				}
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = fp;
+		}
+
+		private long poll() {
+			final long min = heap[0];
+			final long last = heap[--heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+					child++;
+				}
+				if (last <= heap[child]) {
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return min;
+		}
+	}
+
 	//**************************** Indexer ****************************//
 	
 	public static class Indexer {
@@ -1052,6 +1494,17 @@ public final class OffHeapDiskFPSet extends NonCheckpointableDiskFPSet implement
 			a = array;
 		}
 
+		/* (non-Javadoc)
+		 * @see tlc2.tool.fp.DiskFPSet.Flusher#flushTable()
+		 */
+		@Override
+		void flushTable() throws IOException {
+			// The disk file cannot be rewritten while a sealed table is being
+			// merged into it.
+			awaitBackgroundEviction();
+			super.flushTable();
+		}
+
 		/* (non-Javadoc)
 		 * @see tlc2.tool.fp.DiskFPSet.Flusher#prepareTable()
 		 */
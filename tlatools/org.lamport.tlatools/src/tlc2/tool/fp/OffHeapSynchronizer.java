@@ -0,0 +1,79 @@
+// Copyright (c) 2012 Markus Alexander Kuppe. All rights reserved.
+package tlc2.tool.fp;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tlc2.output.EC;
+import util.Assert;
+
+/**
+ * Suspends the workers of all off-heap {@link FPSet}s of one kind while their
+ * tables get evicted to disk (see {@link OffHeapDiskFPSet} and
+ * {@link CompactOffHeapDiskFPSet}).
+ */
+final class OffHeapSynchronizer {
+	
+	private final Set<Runnable> evictors = new HashSet<Runnable>();
+	
+	private final AtomicBoolean flusherChosen = new AtomicBoolean();
+	
+	// This barrier gets run after one thread signals the need to suspend
+	// put and contains operations to evict to secondary. Signaling is done
+	// via the flusherChoosen AtomicBoolean. All threads (numThreads) will
+	// then await on the barrier and the Runnable be executed when the
+	// last of numThreads arrives.
+	// Compared to an AtomicBoolean, the barrier operation use locks and
+	// are thus comparably expensive.
+	private final Phaser phaser = new Phaser(1) {
+
+		@Override
+		protected boolean onAdvance(int phase, int registeredParties) {
+			// Atomically evict and reset flusherChosen to make sure no
+			// thread re-read flusherChosen=true after an eviction and
+			// waits again.
+			for (Runnable evictor : evictors) {
+				evictor.run();
+			}
+
+			// Release exclusive access. It has to be done by the runnable
+			// before workers waiting on the barrier wake up again.
+			Assert.check(flusherChosen.compareAndSet(true, false), EC.GENERAL);
+			
+			return super.onAdvance(phase, registeredParties);
+		}
+	};
+	
+	OffHeapSynchronizer() {
+		// Each FPSet kind creates a single instance.
+	}
+	
+	public final void add(final Runnable evictor) {
+		this.evictors.add(evictor);
+	}
+	
+	public final void incWorkers(final int numWorkers) {
+		final int parties = phaser.getRegisteredParties();
+		if (parties < numWorkers) {
+			phaser.bulkRegister(numWorkers - parties);
+		}
+	}
+	
+	public final boolean evictPending() {
+		return flusherChosen.get();
+	}
+	
+	public final void evict() {
+		flusherChosen.compareAndSet(false, true);
+	}
+	
+	public final void awaitEviction() {
+		phaser.arriveAndAwaitAdvance();
+	}
+	
+	public AtomicBoolean getFlusherChosen() {
+		return flusherChosen;
+	}
+}
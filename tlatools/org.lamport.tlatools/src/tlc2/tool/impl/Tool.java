@@ -8,6 +8,7 @@
 package tlc2.tool.impl;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -3743,6 +3744,14 @@ public abstract class Tool
       Assert.fail("The symmetry function " + name + " must specify a set of permutations.");
     }
     final OpDefNode opDef = (OpDefNode)symm;
+    if (TLCState.isTranspositionSymmetry()) {
+    	// TLCStateMut only needs the transpositions of the group, which are built
+    	// from the symmetry sets without evaluating Permutations(S).
+    	final List<OpApplNode> permutations = getPermutationsApplications(opDef.getBody());
+    	if (permutations != null) {
+    		return getSymmetryTranspositions(permutations);
+    	}
+    }
     // This calls tlc2.module.TLC.Permutations(Value) and returns a Value of |fcns|
     // = n! where n is the capacity of the symmetry set.
     final IValue fcns = this.eval(opDef.getBody(), Context.Empty, TLCState.Empty, CostModel.DO_NOT_RECORD);
@@ -3803,6 +3812,65 @@ public abstract class Tool
     	subgroup = null;
     }
     
+    warnSubTwoSizedSymmetrySets(offenderCount, cardinalityOneSetList);
+    
+    return subgroup;
+  }
+
+  /**
+   * @return The Permutations(S) applications iff body is of the form
+   *         Permutations(S1) \cup ... \cup Permutations(Sn), otherwise null.
+   */
+  private List<OpApplNode> getPermutationsApplications(final ExprOrOpArgNode body) {
+	  if (!(body instanceof OpApplNode)) {
+		  return null;
+	  }
+	  final OpApplNode appl = (OpApplNode)body;
+	  final ExprOrOpArgNode[] args = appl.getArgs();
+	  if (appl.getOperator() instanceof OpDefNode
+			  && TLAConstants.BuiltInOperators.PERMUTATIONS.equals(appl.getOperator().getName().toString())
+			  && args.length == 1) {
+		  final List<OpApplNode> permutations = new ArrayList<>();
+		  permutations.add(appl);
+		  return permutations;
+	  }
+	  if (BuiltInOPs.getOpCode(appl.getOperator().getName()) == OPCODE_cup && args.length == 2) {
+		  final List<OpApplNode> left = getPermutationsApplications(args[0]);
+		  final List<OpApplNode> right = getPermutationsApplications(args[1]);
+		  if (left != null && right != null) {
+			  left.addAll(right);
+			  return left;
+		  }
+	  }
+	  return null;
+  }
+
+  /**
+   * Builds the |S|*(|S|-1)/2 transpositions of every symmetry set S directly
+   * instead of evaluating Permutations(S) to its |S|! functions.
+   */
+  private IMVPerm[] getSymmetryTranspositions(final List<OpApplNode> permutations) {
+	  final Enumerable[] sets = new Enumerable[permutations.size()];
+	  final StringBuilder cardinalityOneSetList = new StringBuilder();
+	  int offenderCount = 0;
+	  for (int i = 0; i < sets.length; i++) {
+		  final OpApplNode node = permutations.get(i);
+		  final IValue set = this.eval(node.getArgs()[0], Context.Empty, TLCState.Empty, CostModel.DO_NOT_RECORD);
+		  if (!(set instanceof Enumerable)) {
+			  Assert.fail("The symmetry operator must specify a set of functions.", node);
+		  }
+		  sets[i] = (Enumerable)set;
+		  if (sets[i].size() < 2) {
+			  addToSubTwoSizedSymmetrySetList(node, cardinalityOneSetList);
+			  offenderCount++;
+		  }
+	  }
+	  warnSubTwoSizedSymmetrySets(offenderCount, cardinalityOneSetList);
+	  final IMVPerm[] transpositions = MVPerms.transpositions(sets);
+	  return transpositions.length > 0 ? transpositions : null;
+  }
+
+  private void warnSubTwoSizedSymmetrySets(final int offenderCount, final StringBuilder cardinalityOneSetList) {
     if (offenderCount > 0) {
       final String plurality = (offenderCount > 1) ? "s" : "";
       final String antiPlurality = (offenderCount > 1) ? "" : "s";
@@ -3811,8 +3879,6 @@ public abstract class Tool
       MP.printWarning(EC.TLC_SYMMETRY_SET_TOO_SMALL,
     		  	  	  new String[] { plurality, cardinalityOneSetList.toString(), toHaveConjugation, antiPlurality });
     }
-    
-    return subgroup;
   }
   
   /**
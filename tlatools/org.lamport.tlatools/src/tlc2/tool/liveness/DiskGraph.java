@@ -58,9 +58,24 @@ public class DiskGraph extends AbstractDiskGraph {
 		return this.nodePtrTbl.get(fp);
 	}
 
+	/**
+	 * Records that the successors of the node fp are being added unless the
+	 * node is in this graph already. Until the node is added with
+	 * {@link AbstractDiskGraph#addNode(GraphNode)}, {@link #getPtr(long)}
+	 * returns {@link TableauNodePtrTable#UNDONE} for it.
+	 * 
+	 * @see TableauDiskGraph#recordNode(long, int)
+	 */
+	public final void recordNode(final long fp) {
+		if (this.nodePtrTbl.get(fp) == -1) {
+			this.nodePtrTbl.put(fp, TableauNodePtrTable.UNDONE);
+		}
+	}
+
 	public void reset() throws IOException {
 		this.nodePtrRAF.reset();
 		this.nodeRAF.reset();
+		this.nodePtrTbl.free();
 		this.nodePtrTbl = new NodePtrTable(255);
 	}
 	
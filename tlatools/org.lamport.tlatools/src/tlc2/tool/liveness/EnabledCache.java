@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved.
+ *
+ * The MIT License (MIT)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.liveness;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import tlc2.tool.ITool;
+
+/**
+ * Caches the results of evaluating ENABLED predicates ({@link LNStateEnabled})
+ * by state fingerprint. The fairness conditions WF and SF expand into ENABLED
+ * predicates which are evaluated for every state in the checkState and for
+ * every transition in the checkAction of an {@link OrderOfSolution}. Thus, the
+ * same predicate is evaluated for the same state once per successor and once
+ * per {@link OrderOfSolution} that shares the fairness condition (the
+ * LNStateEnabled instances are shared by all {@link OrderOfSolution}s, see
+ * {@link Liveness#processLiveness(tlc2.tool.ITool)}).
+ * <p>
+ * The fingerprint is the one the caller already has, e.g. the fingerprint of
+ * the state whose successors {@link LiveCheck} adds (see
+ * {@link LiveExprNode#eval(ITool, tlc2.tool.TLCState, long, tlc2.tool.TLCState)}).
+ * A lookup that had to fingerprint the state would often cost more than
+ * evaluating a cheap ENABLED predicate.
+ * <p>
+ * Each predicate has a direct-mapped table of 2^{@link #SIZE} entries. A new
+ * result overwrites the result of another state with the same index, i.e. the
+ * cache is lossy but needs no locking. An entry keeps the bits of the
+ * fingerprint not covered by the index, the result, and a valid bit in a single
+ * long.
+ * <p>
+ * The cache must not be used if the fingerprint does not identify a state (with
+ * symmetry or a VIEW).
+ */
+public class EnabledCache {
+
+	/**
+	 * The log2 of the number of entries of the table of a single predicate.
+	 * Zero disables the cache.
+	 */
+	static final String SIZE = EnabledCache.class.getName() + ".size";
+
+	static final int UNKNOWN = -1;
+
+	private static final long VALID = 1L;
+	private static final long TRUE = 2L;
+
+	private final long mask;
+	private AtomicLongArray[] tables = new AtomicLongArray[0];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	EnabledCache(final int bits) {
+		// The index has to cover the valid and result bits of an entry.
+		this.mask = (1L << Math.max(2, Math.min(bits, 30))) - 1;
+	}
+
+	/**
+	 * @return A new cache for the ENABLED predicates of the given tool, or null
+	 *         if the cache is disabled (see {@link #SIZE}) or if fingerprints do
+	 *         not identify states.
+	 */
+	static EnabledCache create(final ITool tool) {
+		final int bits = Integer.getInteger(SIZE, 14);
+		if (bits <= 0 || tool.hasSymmetry() || tool.getViewSpec() != null) {
+			return null;
+		}
+		return new EnabledCache(bits);
+	}
+
+	/**
+	 * Allocates the table of a predicate. Not thread-safe, has to be called
+	 * before the cache is used.
+	 *
+	 * @return The id of the predicate.
+	 */
+	final int register() {
+		final int id = tables.length;
+		tables = Arrays.copyOf(tables, id + 1);
+		tables[id] = new AtomicLongArray((int) mask + 1);
+		return id;
+	}
+
+	/**
+	 * @return 1 or 0 if the predicate id evaluated to true or false in the
+	 *         state with fingerprint fp, or {@link #UNKNOWN}.
+	 */
+	final int get(final int id, final long fp) {
+		final long entry = tables[id].get((int) (fp & mask));
+		if ((entry & VALID) != 0 && (entry & ~mask) == (fp & ~mask)) {
+			hits.increment();
+			return (entry & TRUE) != 0 ? 1 : 0;
+		}
+		misses.increment();
+		return UNKNOWN;
+	}
+
+	final void put(final int id, final long fp, final boolean result) {
+		tables[id].lazySet((int) (fp & mask), (fp & ~mask) | (result ? TRUE : 0L) | VALID);
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getLookups() {
+		return hits.sum() + misses.sum();
+	}
+
+	/**
+	 * @return The number of predicates that share this cache.
+	 */
+	public int size() {
+		return tables.length;
+	}
+}
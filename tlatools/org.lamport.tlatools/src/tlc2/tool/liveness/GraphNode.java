@@ -6,6 +6,7 @@
 package tlc2.tool.liveness;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -376,6 +377,35 @@ public class GraphNode extends AbstractGraphNode {
 		checks.write(nodeRAF);
 	}
 
+	/**
+	 * Variant of {@link #write(BufferedRandomAccessFile)} which writes this
+	 * {@link GraphNode} into the given buffer, which has to have at least
+	 * {@link #writeLength()} bytes remaining.
+	 */
+	void write(final ByteBuffer buf) {
+		assert offset == NO_FREE_SLOTS; // assert that nnodes hasn't been overallocated.
+		// Write nnodes (see BufferedRandomAccessFile#writeNat)
+		final int cnt = nnodes.length;
+		if (MappedNodeFile.natLength(cnt) == Short.BYTES) {
+			buf.putShort((short) cnt);
+		} else {
+			buf.putInt(-cnt);
+		}
+		for (int i = 0; i < cnt; i++) {
+			buf.putInt(nnodes[i]);
+		}
+		// Write checks
+		checks.write(buf);
+	}
+
+	/**
+	 * @return The number of bytes written by
+	 *         {@link #write(BufferedRandomAccessFile)}.
+	 */
+	int writeLength() {
+		return MappedNodeFile.natLength(nnodes.length) + nnodes.length * Integer.BYTES + checks.writeLength();
+	}
+
 	void read(final BufferedRandomAccessFile nodeRAF) throws IOException {
 		// Read nnodes
 		final int cnt = nodeRAF.readNat();
@@ -390,6 +420,33 @@ public class GraphNode extends AbstractGraphNode {
 		assert offset == NO_FREE_SLOTS;
 	}
 
+	/**
+	 * Variant of {@link #read(BufferedRandomAccessFile)} which reads the node
+	 * at file location ptr from the memory-mapped nodes file. Can be called by
+	 * multiple threads concurrently.
+	 */
+	void read(final MappedNodeFile nodeFile, long ptr) {
+		// Read nnodes
+		final int cnt = nodeFile.getNat(ptr);
+		ptr += MappedNodeFile.natLength(cnt);
+		nnodes = new int[cnt];
+		for (int i = 0; i < cnt; i++) {
+			nnodes[i] = nodeFile.getInt(ptr);
+			ptr += Integer.BYTES;
+		}
+		// Read checks
+		final int len = nodeFile.getNat(ptr);
+		ptr += MappedNodeFile.natLength(len);
+		final long[] words = new long[len];
+		for (int i = 0; i < len; i++) {
+			words[i] = nodeFile.getLong(ptr);
+			ptr += Long.BYTES;
+		}
+		checks = new BitVector(words);
+
+		assert offset == NO_FREE_SLOTS;
+	}
+
 	public final String toString() {
 		// A GraphNode does not know the action length. This is kept elsewhere in the code.
 		return toString(0).replace("[] ", "");
@@ -73,6 +73,10 @@ class LNAll extends LiveExprNode {
 		return getBody().tagExpr(tag);
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		getBody().setEnabledCache(cache);
+	}
+
 	public final LiveExprNode makeBinary() {
 		return new LNAll(getBody().makeBinary());
 	}
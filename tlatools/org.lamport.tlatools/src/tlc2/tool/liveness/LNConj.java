@@ -100,6 +100,17 @@ class LNConj extends LiveExprNode {
 		return true;
 	}
 
+	public final boolean eval(ITool tool, TLCState s1, long fp1, TLCState s2) {
+		int sz = this.conjs.size();
+		for (int i = 0; i < sz; i++) {
+			LiveExprNode item = (LiveExprNode) this.conjs.elementAt(i);
+			if (!item.eval(tool, s1, fp1, s2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public final void toString(StringBuffer sb, String padding) {
 		int len = this.getCount();
 		String padding1 = padding + "    ";
@@ -145,6 +156,12 @@ class LNConj extends LiveExprNode {
 		return tag;
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		for (int i = 0; i < getCount(); i++) {
+			getBody(i).setEnabledCache(cache);
+		}
+	}
+
 	public final LiveExprNode makeBinary() {
 		if (getCount() == 1) {
 			return getBody(0).makeBinary();
@@ -98,6 +98,17 @@ class LNDisj extends LiveExprNode {
 		return false;
 	}
 
+	public final boolean eval(ITool tool, TLCState s1, long fp1, TLCState s2) {
+		int sz = disjs.size();
+		for (int i = 0; i < sz; i++) {
+			LiveExprNode item = (LiveExprNode) disjs.elementAt(i);
+			if (item.eval(tool, s1, fp1, s2)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public final void toString(StringBuffer sb, String padding) {
 		int len = this.getCount();
 		String padding1 = padding + "    ";
@@ -142,6 +153,12 @@ class LNDisj extends LiveExprNode {
 		return tag;
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		for (int i = 0; i < getCount(); i++) {
+			getBody(i).setEnabledCache(cache);
+		}
+	}
+
 	public final LiveExprNode makeBinary() {
 		if (getCount() == 1) {
 			return getBody(0).makeBinary();
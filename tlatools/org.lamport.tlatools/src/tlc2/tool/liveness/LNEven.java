@@ -72,6 +72,10 @@ class LNEven extends LiveExprNode {
 		return getBody().tagExpr(tag);
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		getBody().setEnabledCache(cache);
+	}
+
 	public final LiveExprNode makeBinary() {
 		return new LNEven(getBody().makeBinary());
 	}
@@ -39,6 +39,10 @@ public class LNNeg extends LiveExprNode {
 		return !this.body.eval(tool, s1, s2);
 	}
 
+	public final boolean eval(ITool tool, TLCState s1, long fp1, TLCState s2) {
+		return !this.body.eval(tool, s1, fp1, s2);
+	}
+
 	public final void toString(StringBuffer sb, String padding) {
 		sb.append("-");
 		this.getBody().toString(sb, padding + " ");
@@ -52,6 +56,10 @@ public class LNNeg extends LiveExprNode {
 		return getBody().tagExpr(tag);
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		getBody().setEnabledCache(cache);
+	}
+
 	public final LiveExprNode makeBinary() {
 		return new LNNeg(getBody().makeBinary());
 	}
@@ -33,6 +33,13 @@ class LNStateEnabled extends LNState {
 	private final ExprNode pred;
 	private final ExprNode subscript;
 	private final boolean isBox;
+	/**
+	 * The results of this predicate by state fingerprint (see
+	 * {@link #setEnabledCache(EnabledCache)}), or null. Only used if the caller
+	 * passes the fingerprint of the state.
+	 */
+	private EnabledCache cache;
+	private int cacheId;
 
 	public LNStateEnabled(ExprNode pred, Context con, ExprNode subscript, boolean isBox) {
 		super(con);
@@ -41,12 +48,38 @@ class LNStateEnabled extends LNState {
 		this.isBox = isBox;
 	}
 
+	public void setEnabledCache(final EnabledCache cache) {
+		if (this.cache == null) {
+			this.cache = cache;
+			this.cacheId = cache.register();
+		}
+	}
+
 	public final boolean eval(ITool tool, TLCState s1, TLCState s2) {
 		// Note that s2 is useless.
 		if (this.isBox && this.subscript != null) {
 			return true;
 		}
+		return enabled(tool, s1);
+	}
+
+	public final boolean eval(ITool tool, TLCState s1, long fp1, TLCState s2) {
+		if (this.isBox && this.subscript != null) {
+			return true;
+		}
+		if (this.cache == null) {
+			return enabled(tool, s1);
+		}
+		final int res = this.cache.get(this.cacheId, fp1);
+		if (res != EnabledCache.UNKNOWN) {
+			return res == 1;
+		}
+		final boolean enabled = enabled(tool, s1);
+		this.cache.put(this.cacheId, fp1, enabled);
+		return enabled;
+	}
 
+	private final boolean enabled(ITool tool, TLCState s1) {
 		TLCState sfun = TLCStateFun.Empty;
 		Context c1 = Context.branch(getContext());
 		if (this.subscript != null) {
@@ -74,6 +74,9 @@ public class LiveCheck implements ILiveCheck {
 			} else {
 				checker[soln] = new TableauLiveChecker(solutions[soln], soln, bucketStatistics, writer);
 			}
+			if (TLCGlobals.doOnTheFlyLiveness()) {
+				checker[soln].getDiskGraph().recordSeedNodes();
+			}
 		}
 	}
 
@@ -95,10 +98,10 @@ public class LiveCheck implements ILiveCheck {
 			final OrderOfSolution oos = check.getSolution();
 			final int alen = oos.getCheckAction().length;
 
-			// Check the actions *before* the solution lock is acquired. This
-			// increase concurrency as the lock on the OrderOfSolution is pretty
-			// coarse grained (it essentially means we lock the complete
-			// behavior graph (DiskGraph) just to add a single node). The
+			// Check the actions *before* the graph lock is acquired. This
+			// increase concurrency as the lock is pretty coarse grained (it
+			// essentially means we lock the complete behavior graph
+			// (DiskGraph) just to add a single node). The
 			// drawback is obviously, that we create a short-lived BitVector
 			// to hold the result and loop over actions x successors twice
 			// (here and down below). This is a little price to pay for significantly
@@ -118,10 +121,10 @@ public class LiveCheck implements ILiveCheck {
 			final BitVector checkActionResults = new BitVector(alen * nextStates.size());
 			for (int sidx = 0; sidx < nextStates.size(); sidx++) {
 				final TLCState s1 = nextStates.next();
-				oos.checkAction(tool, s0, s1, checkActionResults, alen * sidx);
+				oos.checkAction(tool, s0, fp0, s1, checkActionResults, alen * sidx);
 			}
 			nextStates.resetNext();
-			check.addNextState(tool, s0, fp0, nextStates, checkActionResults, oos.checkState(tool, s0));
+			check.addNextState(tool, s0, fp0, nextStates, checkActionResults, oos.checkState(tool, s0, fp0));
 			
 			// Write the content of the current graph to a file in GraphViz
 			// format. Useful when debugging!
@@ -134,6 +137,9 @@ public class LiveCheck implements ILiveCheck {
 	 * @see tlc2.tool.liveness.ILiveCheck#doLiveCheck()
 	 */
 	public boolean doLiveCheck() {
+		if (TLCGlobals.doOnTheFlyLiveness()) {
+			return hasSeedNodes();
+		}
 		for (int i = 0; i < checker.length; i++) {
 			// If one of the disk graph's size has increased by the given
 			// percentage, run liveness checking.
@@ -174,6 +180,9 @@ public class LiveCheck implements ILiveCheck {
 			// state graph.
 			return EC.NO_ERROR;
 		}
+		if (TLCGlobals.doOnTheFlyLiveness()) {
+			return hasSeedNodes() ? check0(tool, false) : EC.NO_ERROR;
+		}
 		for (int i = 0; i < checker.length; i++) {
 			// see note in doLiveCheck() above!
 			final AbstractDiskGraph diskGraph = checker[i].getDiskGraph();
@@ -187,11 +196,41 @@ public class LiveCheck implements ILiveCheck {
 		return EC.NO_ERROR;
 	}
 	
+	/**
+	 * @return true iff a transition has been added to any of the disk graphs
+	 *         since the last check which potentially closed a new cycle (see
+	 *         AbstractDiskGraph#addSeedNode(long, int)). Unlike the growth of
+	 *         the disk graphs, which is unrelated to new cycles, this is the
+	 *         precondition for a check to find a new violation.
+	 */
+	private boolean hasSeedNodes() {
+		for (int i = 0; i < checker.length; i++) {
+			if (checker[i].getDiskGraph().hasSeedNodes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public int finalCheck(ITool tool) throws InterruptedException, IOException {
 		// Do *not* re-create the nodePtrTable after the check which takes a
 		// while for larger disk graphs.
-		return check0(tool, true);
+		final int result = check0(tool, true);
+		printEnabledCacheStatistics();
+		return result;
+	}
+
+	private void printEnabledCacheStatistics() {
+		// The cache is shared by all OrderOfSolutions.
+		final EnabledCache cache = checker.length > 0 ? checker[0].getSolution().getEnabledCache() : null;
+		if (cache == null || cache.getLookups() == 0L) {
+			return;
+		}
+		final long lookups = cache.getLookups();
+		final long hits = cache.getHits();
+		MP.printMessage(EC.TLC_LIVE_ENABLED_CACHE, new String[] { String.valueOf(lookups), String.valueOf(hits),
+				String.format("%.1f%%", hits * 100d / lookups) });
 	}
 	
 	/**
@@ -411,6 +450,9 @@ public class LiveCheck implements ILiveCheck {
 	public void reset() throws IOException {
 		for (int i = 0; i < checker.length; i++) {
 			checker[i].getDiskGraph().reset();
+			if (TLCGlobals.doOnTheFlyLiveness()) {
+				checker[i].getDiskGraph().recordSeedNodes();
+			}
 		}
 	}
 
@@ -469,10 +511,23 @@ public class LiveCheck implements ILiveCheck {
 
 		private final DiskGraph dgraph;
 
+		/**
+		 * Fingerprint-striped locks which serialize the workers that add the
+		 * successors of the same state (see addNextState below).
+		 */
+		private final Object[] locks = new Object[1 << 10];
+
 		public LiveChecker(OrderOfSolution oos, int soln, IBucketStatistics bucketStatistics, ILivenessStateWriter writer)
 			throws IOException {
 			super(oos, writer);
 			this.dgraph = new DiskGraph(metadir, soln, bucketStatistics);
+			for (int i = 0; i < locks.length; i++) {
+				locks[i] = new Object();
+			}
+		}
+
+		private Object lockOf(final long fp) {
+			return locks[(int) fp & (locks.length - 1)];
 		}
 
 		/* (non-Javadoc)
@@ -488,68 +543,127 @@ public class LiveCheck implements ILiveCheck {
 		 */
 		public void addNextState(ITool tool, final TLCState s0, final long fp0,
 				final SetOfStates nextStates, final BitVector checkActionResults, final boolean[] checkStateResults) throws IOException {
+			if (TLCGlobals.mainChecker instanceof ModelChecker) {
+				// Safety checking hands each state to one worker. Thus, no
+				// other worker adds the successors of s0 concurrently.
+				addNextState0(s0, fp0, nextStates, checkActionResults, checkStateResults);
+			} else {
+				// In simulation mode (and with DFID), multiple workers may add
+				// the successors of the same state s0. The striped lock
+				// serializes them.
+				synchronized (lockOf(fp0)) {
+					addNextState0(s0, fp0, nextStates, checkActionResults, checkStateResults);
+				}
+			}
+		}
+
+		private void addNextState0(final TLCState s0, final long fp0, final SetOfStates nextStates,
+				final BitVector checkActionResults, final boolean[] checkStateResults) throws IOException {
 			int cnt = 0;
 			// if there is no tableau ...
 			final int succCnt = nextStates.size();
 			final int alen = oos.getCheckAction().length;
-			synchronized (oos) {
-				final GraphNode node0 = dgraph.getNode(fp0);
-				final int s = node0.succSize();
-				node0.setCheckState(checkStateResults);
+			// Unlike the tableau case below, the node for s0 is the only node
+			// modified here. Thus, the graph (dgraph) only has to be locked to
+			// look up the successors and to eventually put the node into the
+			// node-ptr table. In between, the transitions are added to node0
+			// and node0 is written to disk concurrently to other workers.
+			final GraphNode node0;
+			final long[] successors = new long[succCnt];
+			// Bit sidx is set iff the successor sidx has been (or is being)
+			// added to dgraph.
+			final BitVector known = new BitVector(succCnt);
+			synchronized (dgraph) {
+				node0 = dgraph.getNode(fp0);
 				for (int sidx = 0; sidx < succCnt; sidx++) {
-					final TLCState successorState = nextStates.next();
-					final long successor = successorState.fingerPrint();
-					// Only add the transition if:
-					// a) The successor itself has not been written to disk
-					//    TODO Why is an existing successor ignored?
-					// b) The successor is a new outgoing transition for s0 
-					final long ptr1 = dgraph.getPtr(successor);
-					if (ptr1 == -1 || !node0.transExists(successor, -1)) {
-						// Eagerly allocate as many (N) transitions (outgoing arcs)
-						// as we are maximally going to add within the for
-						// loop. This reduces GraphNode's internal and
-						// *performance-wise expensive* System.arraycopy calls
-						// from N invocations to one (best case) or two (worst
-						// case). It has been found empirically (VoteProof) that
-						// the best case is used most of the time (99%).
-						// It should also minimize the work created for Garbage
-						// Collection to clean up even in the worst-case (two invocations)
-						// when the pre-allocated memory has to be freed (see
-						// realign call).
-						// Rather than allocating N memory regions and freeing
-						// N-1 immediately after, it now just has to free a
-						// single one (and only iff we over-allocated).
-						node0.addTransition(successor, -1, checkStateResults.length, alen,
-								checkActionResults, sidx * alen, (succCnt - cnt++));
-					} else {
-						cnt++;
+					successors[sidx] = nextStates.next().fingerPrint();
+					if (dgraph.getPtr(successors[sidx]) != -1) {
+						known.set(sidx);
 					}
-					writer.writeState(s0, successorState, checkActionResults, sidx * alen, alen, ptr1 == -1);
 				}
 				nextStates.resetNext();
-				// In simulation mode (see Simulator), it's possible that this
-				// method is called multiple times for the same state (s0/fp0)
-				// but with changing successors caused by the random successor
-				// selection. If the successor is truly new (it has not been
-				// added before), the GraphNode instance has to be updated
-				// (creating a new record on disk). However, when the successor
-				// parameter happens to pass known successors only, there is no
-				// point in adding the GraphNode again. It would just waste disk
-				// space.
-				// The amount of successors is either 0 (no new successor has
-				// been added) or used to be less than it is now.
-				if ((s == 0 && s == node0.succSize()) || s < node0.succSize()) {
-					node0.realign(); // see node0.addTransition() hint
-					// Add a node for the current state. It gets added *after*
-					// all transitions have been added because addNode
-					// immediately writes the GraphNode to disk including its
-					// transitions.
-					dgraph.addNode(node0);
+				// Record s0 while still holding the lock that the successors
+				// have been looked up with. Of two workers which concurrently
+				// close a cycle, at least one thus finds the other's state
+				// and adds it as a seed node.
+				dgraph.recordNode(fp0);
+			}
+
+			final int s = node0.succSize();
+			node0.setCheckState(checkStateResults);
+			// Bit sidx is set iff the successor sidx is a seed node.
+			final BitVector seeds = new BitVector(succCnt);
+			for (int sidx = 0; sidx < succCnt; sidx++) {
+				final long successor = successors[sidx];
+				// Only add the transition if:
+				// a) The successor itself has not been written to disk
+				//    TODO Why is an existing successor ignored?
+				// b) The successor is a new outgoing transition for s0 
+				if (!known.get(sidx) || !node0.transExists(successor, -1)) {
+					// Eagerly allocate as many (N) transitions (outgoing arcs)
+					// as we are maximally going to add within the for
+					// loop. This reduces GraphNode's internal and
+					// *performance-wise expensive* System.arraycopy calls
+					// from N invocations to one (best case) or two (worst
+					// case). It has been found empirically (VoteProof) that
+					// the best case is used most of the time (99%).
+					// It should also minimize the work created for Garbage
+					// Collection to clean up even in the worst-case (two invocations)
+					// when the pre-allocated memory has to be freed (see
+					// realign call).
+					// Rather than allocating N memory regions and freeing
+					// N-1 immediately after, it now just has to free a
+					// single one (and only iff we over-allocated).
+					node0.addTransition(successor, -1, checkStateResults.length, alen,
+							checkActionResults, sidx * alen, (succCnt - cnt++));
+					if (known.get(sidx) || successor == fp0) {
+						// The transition leads to a node whose successors
+						// have been added (or are being added) already.
+						seeds.set(sidx);
+					}
 				} else {
-					// Since the condition is only supposed to evaluate to false
-					// when LiveCheck is used in simulation mode, mainChecker
-					// has to be null.
-					Assert.check(TLCGlobals.mainChecker == null, EC.GENERAL);
+					cnt++;
+				}
+			}
+
+			// In simulation mode (see Simulator), it's possible that this
+			// method is called multiple times for the same state (s0/fp0)
+			// but with changing successors caused by the random successor
+			// selection. If the successor is truly new (it has not been
+			// added before), the GraphNode instance has to be updated
+			// (creating a new record on disk). However, when the successor
+			// parameter happens to pass known successors only, there is no
+			// point in adding the GraphNode again. It would just waste disk
+			// space.
+			// The amount of successors is either 0 (no new successor has
+			// been added) or used to be less than it is now.
+			final boolean addNode = (s == 0 && s == node0.succSize()) || s < node0.succSize();
+			long ptr0 = -1;
+			if (addNode) {
+				node0.realign(); // see node0.addTransition() hint
+				// Write the node for the current state. It gets written *after*
+				// all transitions have been added because appendNode
+				// immediately writes the GraphNode to disk including its
+				// transitions. Other workers look up node0 only after it has
+				// been put into the node-ptr table below.
+				ptr0 = dgraph.appendNode(node0);
+			} else {
+				// Since the condition is only supposed to evaluate to false
+				// when LiveCheck is used in simulation mode, mainChecker
+				// has to be null.
+				Assert.check(TLCGlobals.mainChecker == null, EC.GENERAL);
+			}
+
+			synchronized (dgraph) {
+				for (int sidx = 0; sidx < succCnt; sidx++) {
+					if (seeds.get(sidx)) {
+						dgraph.addSeedNode(successors[sidx], -1);
+					}
+					writer.writeState(s0, nextStates.next(), checkActionResults, sidx * alen, alen, !known.get(sidx));
+				}
+				nextStates.resetNext();
+				if (addNode) {
+					dgraph.putNode(node0, ptr0);
 				}
 			}
 		}
@@ -680,6 +794,11 @@ public class LiveCheck implements ILiveCheck {
 								node0.addTransition(successor, tnode1.getIndex(), checkStateResults.length, alen,
 										checkActionResults, sidx * alen, allocationHint - cnt);
 								writer.writeState(s0, tnode0, s1, tnode1, checkActionResults, sidx * alen, alen, true);
+								if (isDone) {
+									// The successors of <successor,tnode1> have
+									// been (or are about to be) added.
+									dgraph.addSeedNode(successor, tnode1.getIndex());
+								}
 								// Record that we have seen <successor,tnode1>. If fp1 is done, we have
 								// to compute the next states for <successor, tnode1>.
 								if (ptr1 == -1) {
@@ -698,6 +817,12 @@ public class LiveCheck implements ILiveCheck {
 					// See same case in LiveChecker#addNextState
 					if ((s == 0 && s == node0.succSize()) || s < node0.succSize()) {
 						node0.realign(); // see node0.addTransition() hint
+						// Contrary to LiveChecker#addNextState, the node cannot
+						// be appended after the oos lock has been released:
+						// addNextState(.., tnode1, ..) above reads and rewrites
+						// the nodes of states which other workers own. Thus,
+						// a node has to be on disk (and in the node-ptr table)
+						// by the time another worker acquires the lock.
 						dgraph.addNode(node0);
 					} else {
 						// Since the condition is only supposed to evaluate to false
@@ -806,7 +931,7 @@ public class LiveCheck implements ILiveCheck {
 		 */
 		private void addNextState(final ITool tool, final TLCState s, final long fp, final TBGraphNode tnode, final OrderOfSolution oos, final TableauDiskGraph dgraph)
 				throws IOException {
-			final boolean[] checkStateRes = oos.checkState(tool, s);
+			final boolean[] checkStateRes = oos.checkState(tool, s, fp);
 			final int slen = checkStateRes.length;
 			final int alen = oos.getCheckAction().length;
 			final GraphNode node = dgraph.getNode(fp, tnode.getIndex());
@@ -819,7 +944,7 @@ public class LiveCheck implements ILiveCheck {
 			// Add edges induced by s -> s (self-loop) coming from the tableau
 			// graph:
 			final int nextSize = tnode.nextSize();
-			final BitVector checkActionResults = nextSize > 0 ? oos.checkAction(tool, s, s, new BitVector(alen), 0) : null;
+			final BitVector checkActionResults = nextSize > 0 ? oos.checkAction(tool, s, fp, s, new BitVector(alen), 0) : null;
 			for (int i = 0; i < nextSize; i++) {
 				final TBGraphNode tnode1 = tnode.nextAt(i);
 				final int tidx1 = tnode1.getIndex();
@@ -851,6 +976,7 @@ public class LiveCheck implements ILiveCheck {
 					}
 					if (ptr1 == -1 || !node.transExists(fp, tidx1)) {
 						node.addTransition(fp, tidx1, slen, alen, checkActionResults, 0, (nextSize - cnt));
+						dgraph.addSeedNode(fp, tidx1);
 						if (ptr1 == -1) {
 							dgraph.recordNode(fp, tnode1.getIndex());
 							addNextState(tool, s, fp, tnode1, oos, dgraph);
@@ -871,7 +997,7 @@ public class LiveCheck implements ILiveCheck {
 					final TLCState s1 = nextStates.elementAt(j);
 					if (tool.isInModel(s1) && tool.isInActions(s, s1)) {
 						final long fp1 = s1.fingerPrint();
-						final BitVector checkActionRes = oos.checkAction(tool, s, s1, new BitVector(alen), 0);
+						final BitVector checkActionRes = oos.checkAction(tool, s, fp, s1, new BitVector(alen), 0);
 						boolean isDone = dgraph.isDone(fp1);
 						for (int k = 0; k < tnode.nextSize(); k++) {
 							final TBGraphNode tnode1 = tnode.nextAt(k);
@@ -881,6 +1007,9 @@ public class LiveCheck implements ILiveCheck {
 							if (tnode1.isConsistent(s1, tool) && (ptr1 == -1 || !node.transExists(fp1, tidx1))) {
 								node.addTransition(fp1, tidx1, slen, alen, checkActionRes, 0, (total - cnt));
 								writer.writeState(s, tnode, s1, tnode1, checkActionRes, 0, alen, false, Visualization.DOTTED);
+								if (isDone) {
+									dgraph.addSeedNode(fp1, tidx1);
+								}
 								// Record that we have seen <fp1, tnode1>. If
 								// fp1 is done, we have to compute the next
 								// states for <fp1, tnode1>.
@@ -56,6 +56,19 @@ public abstract class LiveExprNode {
 	 */
 	public abstract boolean eval(ITool tool, TLCState s1, TLCState s2);
 
+	/**
+	 * Same as {@link #eval(ITool, TLCState, TLCState)} for callers that already
+	 * know the fingerprint fp1 of s1. ENABLED predicates (see
+	 * {@link LNStateEnabled}) only use their {@link EnabledCache} if evaluated
+	 * through this method, so that a lookup never has to fingerprint s1.
+	 */
+	public boolean eval(ITool tool, TLCState s1, long fp1, TLCState s2) {
+		// Non-trivially overridden in:
+		// - LNStateEnabled
+		// - LNConj, LNDisj, LNNeg (recursively)
+		return eval(tool, s1, s2);
+	}
+
 	/* The string representation. */
 	public final String toString() {
 		StringBuffer sb = new StringBuffer();
@@ -182,6 +195,16 @@ public abstract class LiveExprNode {
 		return tag;
 	}
 
+	/**
+	 * Makes all ENABLED subexpressions (see {@link LNStateEnabled}) cache their
+	 * results in the given cache.
+	 */
+	public void setEnabledCache(final EnabledCache cache) {
+		// Non-trivially overridden in:
+		// - LNStateEnabled
+		// - LNConj, LNDisj, LNNeg, LNAll, LNEven (recursively)
+	}
+
 	/**
 	 * The method extractPromises, given a formula, returns all the promises in
 	 * its closure. All promises are in the form <>p. (We assume that we have
@@ -65,6 +65,11 @@ public class LiveWorker implements Callable<Boolean> {
 	 * Total number of LiveWorkers simultaneously checking liveness.
 	 */
 	private final int numWorkers;
+	/**
+	 * Number of threads searching the SCCs of a single disk graph during the
+	 * final check (see {@link ParallelSccSearch}).
+	 */
+	private final int numSccThreads;
 
 	private final ITool tool;
 
@@ -74,6 +79,7 @@ public class LiveWorker implements Callable<Boolean> {
 		this.id = id;
 		this.tool = tool;
 		this.numWorkers = numWorkers;
+		this.numSccThreads = ParallelSccSearch.getNumThreads(numWorkers);
 		this.liveCheck = liveCheck;
 		this.queue = queue;
 		this.isFinalCheck = finalCheck;
@@ -82,7 +88,7 @@ public class LiveWorker implements Callable<Boolean> {
 	/**
 	 * Returns true iff an error has already been found.
 	 */
-	private static boolean hasErrFound() {
+	static boolean hasErrFound() {
 		synchronized (workerLock) {
 			return (errFoundByThread != -1);
 		}
@@ -147,6 +153,18 @@ public class LiveWorker implements Callable<Boolean> {
 	 * 
 	 */
 	private final void checkSccs(final ITool tool) throws IOException, InterruptedException, ExecutionException {
+		if (this.isFinalCheck && this.numSccThreads > 1) {
+			final ParallelSccSearch search = new ParallelSccSearch(this, this.dg, this.oos, this.pem);
+			if (search.init()) {
+				final ParallelSccSearch.Component com = search.search(this.numSccThreads);
+				if (com != null && setErrFound()) {
+					this.printTrace(tool, com.state, com.tidx, com.com);
+				}
+				return;
+			}
+			MP.printWarning(EC.GENERAL, "Liveness graph too large to search for strongly connected components in parallel.");
+		}
+
 		// Initialize this.dg:
 		this.dg.makeNodePtrTbl();
 		
@@ -166,7 +184,11 @@ public class LiveWorker implements Callable<Boolean> {
 		// nodeQueue of unexplored states, but only the initial states. Since we
 		// know that all non-initial states are reachable from the set of
 		// initial states, this is sufficient to start with.
-		final LongVec initNodes = this.dg.getInitNodes();
+		// With on-the-fly liveness checking, the search only starts from the
+		// nodes through which cycles have been closed since the previous check
+		// (see AbstractDiskGraph#addSeedNode). SCCs not reachable from them
+		// have been checked before.
+		final LongVec initNodes = this.dg.getRootNodes();
 		final int numOfInits = initNodes.size();
 		// Allocate space for all initial states, assuming the majority of
 		// initial nodes will be done. Multiplied by 5 because of
@@ -581,6 +603,28 @@ public class LiveWorker implements Callable<Boolean> {
 		// Just parameter node in com OR com subset of comStack
 		assert com.size() <= (comStackSize / 5);
 
+		if (checkComponent(com)) {
+			return true;
+		}
+		// This component must contain a counter-example because all three
+		// conditions are satisfied. So, print a counter-example (if this thread
+		// is the first one to find a counter-example)!
+		if (setErrFound()) {
+			this.printTrace(tool, state, tidx, com);
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the non-trivial component com satisfies the current PEM's
+	 * AEState, AEAction and is fulfilling.
+	 * <p>
+	 * This method may be called concurrently (see {@link ParallelSccSearch}).
+	 * 
+	 * @return true iff the component does <em>not</em> contain a
+	 *         counter-example.
+	 */
+	boolean checkComponent(final TableauNodePtrTable com) throws IOException {
 		STATS.addSample(com.size());
 
 		// Check this component:
@@ -615,10 +659,10 @@ public class LiveWorker implements Callable<Boolean> {
 				continue;
 			}
 
-			state1 = TableauNodePtrTable.getKey(nodes);
+			final long state1 = TableauNodePtrTable.getKey(nodes);
 			for (int nidx = 2; nidx < nodes.length; nidx += com.getElemLength()) { // nidx starts with 2 because [0][1] are the long fingerprint state1. 
-				tidx1 = TableauNodePtrTable.getTidx(nodes, nidx);
-				loc1 = TableauNodePtrTable.getElem(nodes, nidx);
+				final int tidx1 = TableauNodePtrTable.getTidx(nodes, nidx);
+				final long loc1 = TableauNodePtrTable.getElem(nodes, nidx);
 
 				final GraphNode curNode = this.dg.getNode(state1, tidx1, loc1);
 
@@ -755,17 +799,11 @@ public class LiveWorker implements Callable<Boolean> {
 				return true;
 			}
 		}
-		// This component must contain a counter-example because all three
-		// conditions are satisfied. So, print a counter-example (if this thread
-		// is the first one to find a counter-example)!
-		if (setErrFound()) {
-			this.printTrace(tool, state, tidx, com);
-		}
 		return false;
 	}
 
 	/* Check if the node <state, tidx> stutters. */
-	private boolean isStuttering(long state, int tidx, long loc) throws IOException {
+	boolean isStuttering(long state, int tidx, long loc) throws IOException {
 		final int slen = this.oos.getCheckState().length;
 		final int alen = this.oos.getCheckAction().length;
 
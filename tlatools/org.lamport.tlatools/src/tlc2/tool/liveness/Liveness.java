@@ -550,6 +550,14 @@ public class Liveness implements ToolGlobals, ASTConstants {
 		// We tag them here so that, if disjunct normal form (DNF) should happen to
 		// duplicate expressions, then they will still have the same tag.
 		lexpr.tagExpr(1);
+
+		// The ENABLED predicates of the fairness conditions are shared by all
+		// OrderOfSolutions and evaluated for each state and each transition.
+		// Cache their results by state fingerprint.
+		final EnabledCache enabledCache = EnabledCache.create(tool);
+		if (enabledCache != null) {
+			lexpr.setEnabledCache(enabledCache);
+		}
 		
 		// II & III:
 		// Converting the formula to DNF pushes negation inside (see
@@ -752,6 +760,9 @@ public class Liveness implements ToolGlobals, ASTConstants {
 			// The split into OrderOfSolution (OOS) and PossibleErrorModel (PEM) appears to
 			// be a code-level optimization to speed-up the check of the liveness/behavior-graph
 			// in LiveWorker.
+			if (enabledCache != null && enabledCache.size() > 0) {
+				oss[i].setEnabledCache(enabledCache);
+			}
 			final Vect<LiveExprNode> stateBin = new Vect<>();
 			final Vect<LiveExprNode> actionBin = new Vect<>();
 			final Vect<OSExprPem> tfPems = (Vect<OSExprPem>) pembin.elementAt(i);
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.liveness;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import tlc2.util.BufferedRandomAccessFile;
+
+/**
+ * A read-only, memory-mapped view of the first length bytes of the nodes file
+ * of an {@link AbstractDiskGraph}. Contrary to a
+ * {@link BufferedRandomAccessFile}, which has to seek to a node's location and
+ * thus has to be guarded by a lock, the view is read with absolute (positioned)
+ * reads and can thus be read by multiple threads concurrently.
+ * <p>
+ * The file is mapped in chunks of 1 GiB (a single {@link MappedByteBuffer} is
+ * limited to Integer.MAX_VALUE bytes). A value that straddles two chunks is
+ * assembled from its halves.
+ * <p>
+ * The values are read in the format written by
+ * {@link BufferedRandomAccessFile} (big-endian).
+ */
+final class MappedNodeFile {
+
+	private final int chunkBits;
+	private final int chunkMask;
+	private final MappedByteBuffer[] chunks;
+	private final long length;
+
+	MappedNodeFile(final String fname, final long length) throws IOException {
+		this(fname, length, 30);
+	}
+
+	MappedNodeFile(final String fname, final long length, final int chunkBits) throws IOException {
+		final long chunkSize = 1L << chunkBits;
+		this.chunkBits = chunkBits;
+		this.chunkMask = (int) chunkSize - 1;
+		this.length = length;
+		this.chunks = new MappedByteBuffer[(int) ((length + chunkSize - 1) >>> chunkBits)];
+		// A mapping remains valid after its channel has been closed.
+		try (FileChannel channel = FileChannel.open(Paths.get(fname), StandardOpenOption.READ)) {
+			for (int i = 0; i < this.chunks.length; i++) {
+				final long position = i * chunkSize;
+				this.chunks[i] = channel.map(MapMode.READ_ONLY, position, Math.min(chunkSize, length - position));
+			}
+		}
+	}
+
+	/**
+	 * @return The number of bytes of the nodes file mapped by this view. Nodes
+	 *         added to the graph later are not part of the view.
+	 */
+	final long length() {
+		return this.length;
+	}
+
+	final GraphNode readNode(final long stateFP, final int tidx, final long ptr) {
+		final GraphNode gnode = new GraphNode(stateFP, tidx);
+		gnode.read(this, ptr);
+		return gnode;
+	}
+
+	private final byte getByte(final long pos) {
+		return this.chunks[(int) (pos >>> this.chunkBits)].get((int) pos & this.chunkMask);
+	}
+
+	final short getShort(final long pos) {
+		final int offset = (int) pos & this.chunkMask;
+		if (offset <= this.chunkMask - 1) {
+			return this.chunks[(int) (pos >>> this.chunkBits)].getShort(offset);
+		}
+		return (short) ((getByte(pos) << 8) | (getByte(pos + 1) & 0xff));
+	}
+
+	final int getInt(final long pos) {
+		final int offset = (int) pos & this.chunkMask;
+		if (offset <= this.chunkMask - 3) {
+			return this.chunks[(int) (pos >>> this.chunkBits)].getInt(offset);
+		}
+		return (getShort(pos) << 16) | (getShort(pos + 2) & 0xffff);
+	}
+
+	final long getLong(final long pos) {
+		final int offset = (int) pos & this.chunkMask;
+		if (offset <= this.chunkMask - 7) {
+			return this.chunks[(int) (pos >>> this.chunkBits)].getLong(offset);
+		}
+		return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xffffffffL);
+	}
+
+	/**
+	 * @see BufferedRandomAccessFile#readNat()
+	 */
+	final int getNat(final long pos) {
+		int res = getShort(pos);
+		if (res >= 0) {
+			return res;
+		}
+		res = (res << 16) | (getShort(pos + 2) & 0xffff);
+		return -res;
+	}
+
+	/**
+	 * @return The number of bytes written by
+	 *         {@link BufferedRandomAccessFile#writeNat(int)} for x.
+	 */
+	static int natLength(final int x) {
+		return x <= 0x7fff ? Short.BYTES : Integer.BYTES;
+	}
+
+	/**
+	 * Unmaps the file right away instead of when the buffers get garbage
+	 * collected. The file cannot be truncated on some platforms (Windows) for
+	 * as long as it is mapped. This view must not be read afterwards.
+	 */
+	final void unmap() {
+		try {
+			// sun.misc.Unsafe#invokeCleaner (Java 9+) looked up reflectively.
+			final Class<?> clazz = Class.forName("sun.misc.Unsafe");
+			final Field f = clazz.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			final Object unsafe = f.get(null);
+			final Method invokeCleaner = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+			for (MappedByteBuffer chunk : this.chunks) {
+				invokeCleaner.invoke(unsafe, chunk);
+			}
+		} catch (Exception e) {
+			// Leave it to the garbage collector.
+		}
+	}
+}
@@ -6,29 +6,79 @@ package tlc2.tool.liveness;
 
 import tlc2.output.EC;
 import tlc2.output.MP;
+import tlc2.tool.fp.LongArray;
 
 /**
+ * Lookups (get, getLoc, ...) do not modify the table. Thus, once all elements
+ * have been put, the table can be read by multiple threads concurrently.
+ * <p>
+ * With the system property {@link #OFF_HEAP} set to true, the table is kept in off-heap memory (see {@link LongArray}) where it
+ * neither counts against the Java heap nor has to be traced by the garbage
+ * collector.
+ * 
  * @see TableauNodePtrTable
  */
 public class NodePtrTable {
 
+	static final String OFF_HEAP = NodePtrTable.class.getName() + ".offHeap";
+
 	private int count;
 	private int length;
 	private int thresh;
 	private long[] keys;
 	private long[] elems;
+	/**
+	 * The off-heap alternative to keys and elems (null if the table is kept on
+	 * the heap). The key of location loc is stored at 2 * loc and its element at
+	 * 2 * loc + 1, i.e. in the same cache line.
+	 */
+	private LongArray table;
 
 	/**
 	 * @param size
 	 */
 	public NodePtrTable(int size) {
+		this(size, Boolean.getBoolean(OFF_HEAP) && LongArray.isSupported());
+	}
+
+	NodePtrTable(int size, boolean offHeap) {
 		this.count = 0;
-		this.length = size;
-		this.thresh = (int) (size * 0.75);
-		this.keys = new long[size];
-		this.elems = new long[size];
-		for (int i = 0; i < size; i++) {
-			this.elems[i] = -1;
+		this.length = Math.max(1, size);
+		this.thresh = (int) (this.length * 0.75);
+		if (offHeap) {
+			this.table = allocate(this.length);
+		} else {
+			this.keys = new long[this.length];
+			this.elems = new long[this.length];
+			for (int i = 0; i < this.length; i++) {
+				this.elems[i] = -1;
+			}
+		}
+	}
+
+	private static LongArray allocate(final int length) {
+		final LongArray table = new LongArray(2L * length);
+		for (long i = 1; i < table.size(); i += 2) {
+			table.set(i, -1);
+		}
+		return table;
+	}
+
+	private final long key(final int loc) {
+		return this.table == null ? this.keys[loc] : this.table.get(2L * loc);
+	}
+
+	private final long elem(final int loc) {
+		return this.table == null ? this.elems[loc] : this.table.get(2L * loc + 1);
+	}
+
+	private final void set(final int loc, final long k, final long elem) {
+		if (this.table == null) {
+			this.keys[loc] = k;
+			this.elems[loc] = elem;
+		} else {
+			this.table.set(2L * loc, k);
+			this.table.set(2L * loc + 1, elem);
 		}
 	}
 
@@ -42,14 +92,18 @@ public class NodePtrTable {
 		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
-			if (this.elems[loc] == -1) {
-				this.keys[loc] = k;
-				this.elems[loc] = elem;
+			if (this.elem(loc) == -1) {
+				this.set(loc, k, elem);
 				this.count++;
+				// Grow right away instead of on the next lookup, which thus
+				// remains read-only.
+				if (this.count >= this.thresh) {
+					this.grow();
+				}
 				return;
 			}
-			if (this.keys[loc] == k) {
-				this.elems[loc] = elem;
+			if (this.key(loc) == k) {
+				this.set(loc, k, elem);
 				return;
 			}
 			loc = (loc + 1) % this.length;
@@ -58,15 +112,12 @@ public class NodePtrTable {
 
 	/* Return k's location if the table contains k. Otherwise, return -1. */
 	public final int getLoc(long k) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
-			if (this.elems[loc] == -1) {
+			if (this.elem(loc) == -1) {
 				return -1;
 			}
-			if (this.keys[loc] == k) {
+			if (this.key(loc) == k) {
 				return loc;
 			}
 			loc = (loc + 1) % this.length;
@@ -75,37 +126,49 @@ public class NodePtrTable {
 
 	/* Return the value with key k. Otherwise, return -1. */
 	public final long get(long k) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
-			if (this.elems[loc] == -1) {
+			final long elem = this.elem(loc);
+			if (elem == -1) {
 				return -1;
 			}
-			if (this.keys[loc] == k) {
-				return this.elems[loc];
+			if (this.key(loc) == k) {
+				return elem;
 			}
 			loc = (loc + 1) % this.length;
 		}
 	}
 
 	public final long getByLoc(int loc) {
-		return this.elems[loc];
+		return this.elem(loc);
 	}
 
 	public final long getKeyByLoc(int loc) {
-		return this.keys[loc];
+		return this.key(loc);
 	}
 
 	public final void putByLoc(long k, long elem, int loc) {
-		this.keys[loc] = k;
-		this.elems[loc] = elem;
+		this.set(loc, k, elem);
 	}
 
 	public void resetElems() {
-		for (int i = 0; i < this.keys.length; i++) {
-			this.elems[i] &= 0x7FFFFFFFFFFFFFFFL;
+		for (int i = 0; i < this.length; i++) {
+			final long elem = this.elem(i);
+			// Skip empty locations (-1) which would otherwise become MAX_LINK.
+			if (elem != -1) {
+				this.set(i, this.key(i), elem & 0x7FFFFFFFFFFFFFFFL);
+			}
+		}
+	}
+
+	/**
+	 * Releases the off-heap memory of this table. The table must not be used
+	 * afterwards.
+	 */
+	public final void free() {
+		if (this.table != null) {
+			this.table.free();
+			this.table = null;
 		}
 	}
 
@@ -117,35 +180,46 @@ public class NodePtrTable {
 
     private final void grow(final int newLength) {
 		try {
+			final int oldLength = this.length;
 			final long[] oldKeys = this.keys;
 			final long[] oldElems = this.elems;
-			this.keys = new long[newLength];
-			this.elems = new long[newLength];
-			for (int i = 0; i < newLength; i++) {
-				this.elems[i] = -1;
+			final LongArray oldTable = this.table;
+			if (oldTable != null) {
+				this.table = allocate(newLength);
+			} else {
+				final long[] newKeys = new long[newLength];
+				final long[] newElems = new long[newLength];
+				for (int i = 0; i < newLength; i++) {
+					newElems[i] = -1;
+				}
+				this.keys = newKeys;
+				this.elems = newElems;
 			}
+			this.length = newLength;
 			this.count = 0;
-			for (int i = 0; i < oldElems.length; i++) {
-				final long elem = oldElems[i];
+			for (int i = 0; i < oldLength; i++) {
+				final long key = oldTable == null ? oldKeys[i] : oldTable.get(2L * i);
+				final long elem = oldTable == null ? oldElems[i] : oldTable.get(2L * i + 1);
 				if (elem != -1) {
-					int loc = ((int) oldKeys[i] & 0x7FFFFFFF) % newLength;
+					int loc = ((int) key & 0x7FFFFFFF) % newLength;
 					while (true) {
-						if (this.elems[loc] == -1) {
-							this.keys[loc] = oldKeys[i];
-							this.elems[loc] = elem;
+						if (this.elem(loc) == -1) {
+							this.set(loc, key, elem);
 							this.count++;
 							break;
 						}
-						if (this.keys[loc] == oldKeys[i]) {
-							this.elems[loc] = elem;
+						if (this.key(loc) == key) {
+							this.set(loc, key, elem);
 							break;
 						}
 						loc = (loc + 1) % newLength;
 					}
 				}
 			}
-			this.length = newLength;
 			this.thresh = (int) (newLength * 0.75);
+			if (oldTable != null) {
+				oldTable.free();
+			}
 		} catch (OutOfMemoryError t) {
 			// Handle OOM error locally because grow is on the code path of safety checking
 			// (LiveCheck#addInit/addNext...).
@@ -63,6 +63,7 @@ public class OrderOfSolution {
 	private LiveExprNode[] checkState; // state subformula
 	private LiveExprNode[] checkAction; // action subformula
 	private PossibleErrorModel[] pems;
+	private EnabledCache enabledCache; // shared by all OrderOfSolutions
 
 	public OrderOfSolution(final LNEven[] livenessEventually) {
 		this(null, livenessEventually);
@@ -141,6 +142,18 @@ public class OrderOfSolution {
 		return result;
 	}
 
+	/**
+	 * Same as {@link #checkState(ITool, TLCState)} for a state whose fingerprint
+	 * is known, which the ENABLED predicates look up in the {@link EnabledCache}.
+	 */
+	public boolean[] checkState(ITool tool, final TLCState state, final long fp) {
+		final boolean[] result = new boolean[checkState.length];
+		for (int i = 0; i < checkState.length; i++) {
+			result[i] = checkState[i].eval(tool, state, fp, null);
+		}
+		return result;
+	}
+
 	void setCheckState(LiveExprNode[] checkState) {
 		this.checkState = checkState;
 	}
@@ -154,9 +167,10 @@ public class OrderOfSolution {
 		return result;
 	}
 	
-	public BitVector checkAction(ITool tool, final TLCState state0, final TLCState state1, final BitVector result, final int offset) {
+	// fp0 is the fingerprint of state0 (see checkState(ITool, TLCState, long))
+	public BitVector checkAction(ITool tool, final TLCState state0, final long fp0, final TLCState state1, final BitVector result, final int offset) {
 		for (int i = 0; i < checkAction.length; i++) {
-			if (checkAction[i].eval(tool, state0, state1)) {
+			if (checkAction[i].eval(tool, state0, fp0, state1)) {
 				result.set(offset + i);
 			}
 		}
@@ -179,4 +193,17 @@ public class OrderOfSolution {
 		this.pems = pems;
 	}
 
+	/**
+	 * @return The cache of the ENABLED predicates of the fairness conditions,
+	 *         which is shared by all {@link OrderOfSolution}s, or null if
+	 *         ENABLED is not cached.
+	 */
+	public EnabledCache getEnabledCache() {
+		return enabledCache;
+	}
+
+	void setEnabledCache(EnabledCache enabledCache) {
+		this.enabledCache = enabledCache;
+	}
+
 }
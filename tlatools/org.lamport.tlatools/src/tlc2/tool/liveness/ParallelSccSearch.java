@@ -0,0 +1,673 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.liveness;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import tlc2.TLCGlobals;
+import tlc2.util.LongVec;
+
+/**
+ * Searches the strongly connected components (SCC) of a single, complete
+ * {@link AbstractDiskGraph} with multiple threads. It is the parallel
+ * counterpart of Tarjan's algorithm in {@link LiveWorker}, which otherwise
+ * checks a disk graph on a single thread.
+ * <p>
+ * The implementation follows the union-find based UFSCC algorithm (Bloemen,
+ * Laarman, van de Pol: "Multi-core On-the-fly SCC Decomposition", PPoPP 2016):
+ * <ul>
+ * <li>Each thread runs a depth-first search from the initial nodes (in a
+ * different order and visiting successors in random order).</li>
+ * <li>The threads share a concurrent union-find structure that partitions the
+ * nodes into partial SCCs. A partial SCC knows the set of threads that have
+ * visited it.</li>
+ * <li>If a thread reaches a partial SCC it has visited before (which then is
+ * on its own search stack), all partial SCCs in between are united.</li>
+ * <li>The threads share the exploration of a partial SCC by picking its
+ * unexplored nodes from a shared list.</li>
+ * <li>An SCC is complete ("dead") once all of its nodes have been explored.
+ * The thread that marks an SCC dead checks it with
+ * {@link LiveWorker#checkComponent(TableauNodePtrTable)}.</li>
+ * </ul>
+ * As with Tarjan's algorithm in {@link LiveWorker}, the search only follows
+ * transitions which satisfy the PEM's EAAction. The target of any other
+ * transition becomes an additional root of the search.
+ * <p>
+ * Up-front, the nodes get numbered densely (see
+ * {@link AbstractDiskGraph#numberNodes(AbstractDiskGraph.NodeVisitor)}),
+ * which leaves the node-ptr table read-only during the search and allows to
+ * keep the union-find structure in arrays (roughly 50 bytes per node).
+ */
+final class ParallelSccSearch {
+
+	/**
+	 * Enables parallel SCC search during the final liveness check. The search
+	 * uses the cores not occupied by other {@link LiveWorker}s.
+	 */
+	static final String ENABLED = LiveWorker.class.getName() + ".parallelScc";
+
+	/**
+	 * The set of threads that have visited a partial SCC is a bit vector.
+	 */
+	private static final int MAX_THREADS = Long.SIZE - 1;
+
+	private static final long BYTES_PER_NODE = 50L;
+
+	/**
+	 * Marks a complete SCC in {@link ParallelSccSearch#workers}. 
+	 */
+	private static final long DEAD = -1L;
+
+	private static final int NONE = -1;
+
+	private static final int CLAIM_DEAD = 0;
+	private static final int CLAIM_NEW = 1;
+	private static final int CLAIM_FOUND = 2;
+
+	/**
+	 * @return The number of threads with which a {@link LiveWorker} searches
+	 *         the SCCs of its disk graph, which is 1 unless parallel SCC search
+	 *         is enabled.
+	 */
+	static int getNumThreads(final int numLiveWorkers) {
+		if (!Boolean.getBoolean(ENABLED)) {
+			return 1;
+		}
+		return Math.max(1, Math.min(MAX_THREADS, TLCGlobals.getNumWorkers() / numLiveWorkers));
+	}
+
+	private final LiveWorker liveWorker;
+	private final AbstractDiskGraph dg;
+	private final int slen;
+	private final int alen;
+	private final int[] eaaction;
+
+	/*
+	 * The nodes indexed by their number.
+	 */
+	private int size;
+	private long[] fps;
+	private int[] tidxs;
+	private long[] locs;
+	private int[] inits;
+
+	/*
+	 * Union-find: The parent pointers are updated lock-free (path halving), all
+	 * other updates to the union-find structure happen while holding the lock
+	 * of the (current) root of a partial SCC.
+	 */
+	private AtomicIntegerArray parent;
+	/**
+	 * Bit vector of the threads that have visited the partial SCC, or
+	 * {@link ParallelSccSearch#DEAD}. Valid for roots only.
+	 */
+	private AtomicLongArray workers;
+	/**
+	 * Number of nodes of the partial SCC (union by size). Valid for roots only.
+	 */
+	private int[] weight;
+	/**
+	 * Circular list of all nodes of a partial SCC.
+	 */
+	private int[] members;
+	/**
+	 * Circular list of the nodes of a partial SCC which have not been explored
+	 * completely. Explored nodes are removed lazily by
+	 * {@link ParallelSccSearch#pick(int)}.
+	 */
+	private int[] live;
+	/**
+	 * Entry into the list of live nodes of a partial SCC or
+	 * {@link ParallelSccSearch#NONE} if all of its nodes have been explored.
+	 * Valid for roots only.
+	 */
+	private int[] head;
+	private boolean[] done;
+	private final Object[] locks = new Object[1 << 10];
+
+	private volatile boolean stop = false;
+	private final AtomicReference<Component> violation = new AtomicReference<Component>();
+
+	ParallelSccSearch(final LiveWorker liveWorker, final AbstractDiskGraph dg, final OrderOfSolution oos,
+			final PossibleErrorModel pem) {
+		this.liveWorker = liveWorker;
+		this.dg = dg;
+		this.slen = oos.getCheckState().length;
+		this.alen = oos.getCheckAction().length;
+		this.eaaction = pem.EAAction;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Numbers the nodes of the disk graph and allocates the union-find
+	 * structure.
+	 * 
+	 * @return false iff the disk graph is too large to be searched in parallel.
+	 */
+	boolean init() throws IOException {
+		// Estimate the memory requirement by the number of (distinct) states
+		// because the disk graph does not count its <<state, tidx>> nodes.
+		final long estimate = dg.size();
+		final Runtime runtime = Runtime.getRuntime();
+		final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		if (estimate >= Integer.MAX_VALUE / 2 || estimate * BYTES_PER_NODE > available) {
+			return false;
+		}
+
+		this.fps = new long[(int) Math.max(16, estimate)];
+		this.tidxs = new int[this.fps.length];
+		this.locs = new long[this.fps.length];
+		this.dg.makeNodePtrTbl();
+		this.size = this.dg.numberNodes((n, fp, tidx, loc) -> {
+			if (n == this.fps.length) {
+				final int length = (int) Math.min(Integer.MAX_VALUE - 8L, 2L * n);
+				this.fps = Arrays.copyOf(this.fps, length);
+				this.tidxs = Arrays.copyOf(this.tidxs, length);
+				this.locs = Arrays.copyOf(this.locs, length);
+			}
+			this.fps[n] = fp;
+			this.tidxs[n] = tidx;
+			this.locs[n] = loc;
+		});
+
+		// Each node starts as a singleton partial SCC unvisited by any thread.
+		this.parent = new AtomicIntegerArray(size);
+		this.workers = new AtomicLongArray(size);
+		this.weight = new int[size];
+		this.members = new int[size];
+		this.live = new int[size];
+		this.head = new int[size];
+		this.done = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			this.parent.set(i, i);
+			this.weight[i] = 1;
+			this.members[i] = i;
+			this.live[i] = i;
+			this.head[i] = i;
+		}
+
+		// Resolve the initial (or seed) nodes to their numbers (see
+		// LiveWorker#checkSccs).
+		final LongVec initNodes = this.dg.getRootNodes();
+		final int numOfInits = initNodes.size();
+		final int[] initIdxs = new int[numOfInits / 2];
+		int cnt = 0;
+		for (int j = 0; j < numOfInits; j += 2) {
+			final long link = this.dg.getLink(initNodes.elementAt(j), (int) initNodes.elementAt(j + 1));
+			if (link >= 0) {
+				assert !AbstractDiskGraph.isFilePointer(link);
+				initIdxs[cnt++] = (int) (link - AbstractDiskGraph.MAX_PTR);
+			} else {
+				// Parallel search is only used by the final check on the
+				// complete graph (see LiveWorker#checkSccs).
+				assert link != TableauNodePtrTable.UNDONE;
+			}
+		}
+		this.inits = Arrays.copyOf(initIdxs, cnt);
+		return true;
+	}
+
+	/**
+	 * Searches the SCCs of the disk graph with the given number of threads
+	 * until either all SCCs have been checked or a counter-example has been
+	 * found.
+	 * 
+	 * @return The (first) SCC found to contain a counter-example or null.
+	 */
+	Component search(final int numThreads) throws IOException, InterruptedException, ExecutionException {
+		final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		this.dg.beginConcurrentReads();
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(numThreads);
+			for (int i = 0; i < numThreads; i++) {
+				futures.add(executor.submit(new Searcher(i, numThreads)));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			this.stop = true;
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			this.dg.endConcurrentReads();
+		}
+		return this.violation.get();
+	}
+
+	/**
+	 * A complete SCC that contains a counter-example.
+	 */
+	static final class Component {
+		final long state;
+		final int tidx;
+		final TableauNodePtrTable com;
+
+		private Component(final long state, final int tidx, final TableauNodePtrTable com) {
+			this.state = state;
+			this.tidx = tidx;
+			this.com = com;
+		}
+	}
+
+	/* Union-find */
+
+	private Object lockOf(final int root) {
+		return locks[root & (locks.length - 1)];
+	}
+
+	private int find(int x) {
+		while (true) {
+			final int p = parent.get(x);
+			if (p == x) {
+				return x;
+			}
+			final int gp = parent.get(p);
+			if (p != gp) {
+				// Path halving.
+				parent.compareAndSet(x, p, gp);
+			}
+			x = gp;
+		}
+	}
+
+	private boolean sameSet(final int a, final int b) {
+		while (true) {
+			final int ra = find(a);
+			final int rb = find(b);
+			if (ra == rb) {
+				return true;
+			}
+			// ra and rb might have been united concurrently.
+			if (parent.get(ra) == ra) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Adds the thread to the set of threads that have visited the partial SCC
+	 * of node w.
+	 */
+	private int claim(final int w, final long thread) {
+		while (true) {
+			final int r = find(w);
+			final long bits = workers.get(r);
+			if (parent.get(r) != r) {
+				continue;
+			}
+			if (bits == DEAD) {
+				return CLAIM_DEAD;
+			}
+			if ((bits & thread) != 0) {
+				return CLAIM_FOUND;
+			}
+			if (workers.compareAndSet(r, bits, bits | thread) && parent.get(r) == r) {
+				return CLAIM_NEW;
+			}
+			// Either another thread claimed r or r has been united concurrently
+			// and the thread's bit might not have been carried over.
+		}
+	}
+
+	private void union(final int a, final int b) {
+		while (true) {
+			final int ra = find(a);
+			final int rb = find(b);
+			if (ra == rb) {
+				return;
+			}
+			// Lock in a fixed order to prevent deadlocks.
+			final Object first = lockOf(Math.min(ra & (locks.length - 1), rb & (locks.length - 1)));
+			final Object second = lockOf(Math.max(ra & (locks.length - 1), rb & (locks.length - 1)));
+			synchronized (first) {
+				synchronized (second) {
+					if (parent.get(ra) != ra || parent.get(rb) != rb) {
+						continue;
+					}
+					final int root = weight[ra] >= weight[rb] ? ra : rb;
+					final int child = root == ra ? rb : ra;
+					parent.set(child, root);
+					weight[root] += weight[child];
+
+					long bits;
+					do {
+						bits = workers.get(root);
+						assert bits != DEAD && workers.get(child) != DEAD;
+					} while (!workers.compareAndSet(root, bits, bits | workers.get(child)));
+
+					// Merge the circular lists by swapping the successors of
+					// one element of each list.
+					final int m = members[root];
+					members[root] = members[child];
+					members[child] = m;
+
+					final int hr = head[root];
+					final int hc = head[child];
+					if (hr == NONE) {
+						head[root] = hc;
+					} else if (hc != NONE) {
+						final int l = live[hr];
+						live[hr] = live[hc];
+						live[hc] = l;
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return A node of v's partial SCC which has not been explored completely
+	 *         or {@link ParallelSccSearch#NONE}.
+	 */
+	private int pick(final int v) {
+		while (true) {
+			final int r = find(v);
+			synchronized (lockOf(r)) {
+				if (parent.get(r) != r) {
+					continue;
+				}
+				final int h = head[r];
+				if (h == NONE) {
+					return NONE;
+				}
+				while (true) {
+					final int n = live[h];
+					if (!done[n]) {
+						// Rotate the list for other threads to pick a
+						// different node next.
+						head[r] = n;
+						return n;
+					}
+					if (n == h) {
+						head[r] = NONE;
+						return NONE;
+					}
+					live[h] = live[n];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks node v as explored completely.
+	 */
+	private void remove(final int v) {
+		while (true) {
+			final int r = find(v);
+			synchronized (lockOf(r)) {
+				if (parent.get(r) != r) {
+					continue;
+				}
+				done[v] = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true iff the caller marked v's SCC dead.
+	 */
+	private boolean markDead(final int v) {
+		while (true) {
+			final int r = find(v);
+			synchronized (lockOf(r)) {
+				if (parent.get(r) != r) {
+					continue;
+				}
+				if (workers.get(r) == DEAD) {
+					return false;
+				}
+				workers.set(r, DEAD);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Checks the complete SCC of v.
+	 */
+	private void check(final int v) throws IOException {
+		// A single node is trivial unless it stutters (see
+		// LiveWorker#checkComponent(ITool, long, int, IntStack)).
+		if (members[v] == v && !liveWorker.isStuttering(fps[v], tidxs[v], locs[v])) {
+			return;
+		}
+		final TableauNodePtrTable com = new TableauNodePtrTable(128);
+		int n = v;
+		do {
+			com.put(fps[n], tidxs[n], locs[n]);
+			n = members[n];
+		} while (n != v);
+
+		if (!liveWorker.checkComponent(com)) {
+			if (violation.compareAndSet(null, new Component(fps[v], tidxs[v], com))) {
+				// No point in searching for more SCCs as we are only interested
+				// in one counter-example at a time.
+				stop = true;
+			}
+		}
+	}
+
+	/**
+	 * Growable stack of ints.
+	 */
+	private static final class IntArrayStack {
+		private int[] elems = new int[1024];
+		private int size = 0;
+
+		void push(final int x) {
+			if (size == elems.length) {
+				elems = Arrays.copyOf(elems, 2 * size);
+			}
+			elems[size++] = x;
+		}
+
+		int pop() {
+			return elems[--size];
+		}
+
+		int peek() {
+			return elems[size - 1];
+		}
+
+		int get(final int idx) {
+			return elems[idx];
+		}
+
+		void set(final int idx, final int x) {
+			elems[idx] = x;
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	private final class Searcher implements Callable<Void> {
+
+		private final int id;
+		private final int numThreads;
+		private final long thread;
+		private final Random random;
+
+		/**
+		 * The roots of the partial SCCs on the search path (R in UFSCC).
+		 */
+		private final IntArrayStack roots = new IntArrayStack();
+		/**
+		 * The recursion of UFSCC: Triples <<v, node, base>> with v the node the
+		 * search has been started from, node the node of v's partial SCC whose
+		 * successors are being explored, and base the height of succs below
+		 * node's successors.
+		 */
+		private final IntArrayStack frames = new IntArrayStack();
+		private final IntArrayStack succs = new IntArrayStack();
+		/**
+		 * Targets of transitions which do not satisfy EAAction.
+		 */
+		private final IntArrayStack pending = new IntArrayStack();
+
+		private int steps = 0;
+
+		Searcher(final int id, final int numThreads) {
+			this.id = id;
+			this.numThreads = numThreads;
+			this.thread = 1L << id;
+			this.random = new Random(id);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Void call() throws IOException {
+			try {
+				// Each thread starts from a different initial node.
+				final int offset = inits.length == 0 ? 0 : (int) ((id * (long) inits.length) / numThreads);
+				for (int i = 0; i < inits.length && !isStopped(); i++) {
+					search(inits[(i + offset) % inits.length]);
+					while (pending.size() > 0 && !isStopped()) {
+						search(pending.pop());
+					}
+				}
+			} catch (IOException | RuntimeException | Error e) {
+				stop = true;
+				throw e;
+			}
+			return null;
+		}
+
+		private boolean isStopped() {
+			if ((++steps & 0xFFF) == 0 && LiveWorker.hasErrFound()) {
+				// Another LiveWorker has found a violation.
+				stop = true;
+			}
+			return stop;
+		}
+
+		private void search(final int root) throws IOException {
+			if (claim(root, thread) != CLAIM_NEW) {
+				return;
+			}
+			enter(root);
+			while (frames.size() > 0) {
+				if (isStopped()) {
+					return;
+				}
+				final int top = frames.size() - 3;
+				final int v = frames.get(top);
+
+				if (succs.size() > frames.get(top + 2)) {
+					final int w = succs.pop();
+					final int claim = claim(w, thread);
+					if (claim == CLAIM_NEW) {
+						enter(w);
+					} else if (claim == CLAIM_FOUND) {
+						// w's partial SCC is on this thread's search path, thus
+						// unite all partial SCCs from w's up to v's.
+						while (!sameSet(v, w)) {
+							assert roots.size() > 1;
+							final int r = roots.pop();
+							union(r, roots.peek());
+						}
+					}
+					continue;
+				}
+
+				// The successors of node have been explored completely.
+				final int node = frames.get(top + 1);
+				if (node != NONE) {
+					remove(node);
+				}
+				final int next = pick(v);
+				if (next != NONE) {
+					frames.set(top + 1, next);
+					expand(next);
+					continue;
+				}
+
+				// v's partial SCC has been explored completely.
+				frames.pop();
+				frames.pop();
+				frames.pop();
+				if (roots.peek() == v) {
+					roots.pop();
+					if (markDead(v)) {
+						check(v);
+					}
+				}
+			}
+		}
+
+		private void enter(final int v) {
+			roots.push(v);
+			frames.push(v);
+			frames.push(NONE);
+			frames.push(succs.size());
+		}
+
+		/**
+		 * Pushes the successors of the given node in random order.
+		 */
+		private void expand(final int node) throws IOException {
+			final GraphNode gnode = dg.getNode(fps[node], tidxs[node], locs[node]);
+			final int base = succs.size();
+			final int succCnt = gnode.succSize();
+			for (int i = 0; i < succCnt; i++) {
+				final long link = dg.getLink(gnode.getStateFP(i), gnode.getTidx(i));
+				if (link < 0) {
+					// See LiveWorker#checkSccs.
+					assert link != TableauNodePtrTable.UNDONE;
+					continue;
+				}
+				assert !AbstractDiskGraph.isFilePointer(link);
+				final int w = (int) (link - AbstractDiskGraph.MAX_PTR);
+				if (gnode.getCheckAction(slen, alen, i, eaaction)) {
+					succs.push(w);
+					final int j = base + random.nextInt(succs.size() - base);
+					succs.set(succs.size() - 1, succs.get(j));
+					succs.set(j, w);
+				} else {
+					// The transition is not P-satisfiable, but w might not be
+					// reachable otherwise.
+					pending.push(w);
+				}
+			}
+		}
+	}
+}
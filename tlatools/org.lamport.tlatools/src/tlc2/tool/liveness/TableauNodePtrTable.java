@@ -65,6 +65,10 @@ package tlc2.tool.liveness;
  * <p>
  * Internally {@link TableauNodePtrTable} hashes the node's fingerprint to a
  * bucket address. In case of hash collision, open addressing is used.
+ * <p>
+ * Lookups do not modify the table (it grows when an element is added). Thus,
+ * once all nodes have been added, the table can be read by multiple threads
+ * concurrently.
  */
 public class TableauNodePtrTable {
 
@@ -91,9 +95,9 @@ public class TableauNodePtrTable {
 
 	public TableauNodePtrTable(int size) {
 		this.count = 0;
-		this.length = size;
-		this.thresh = (int) (size * 0.75);
-		this.nodes = new int[size][];
+		this.length = Math.max(1, size);
+		this.thresh = (int) (this.length * 0.75);
+		this.nodes = new int[this.length][];
 	}
 
 	/* The number of elements in this table. */
@@ -110,9 +114,6 @@ public class TableauNodePtrTable {
 	 * <k, tidx>. Otherwise, return -1.
 	 */
 	public final long get(final long k, final int tidx) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
 			int[] node = this.nodes[loc];
@@ -144,6 +145,11 @@ public class TableauNodePtrTable {
 			if (node == null) {
 				this.nodes[loc] = addElem(k, tidx, elem);
 				this.count++;
+				// Grow right away instead of on the next lookup, which thus
+				// remains read-only.
+				if (this.count >= this.thresh) {
+					this.grow();
+				}
 				return;
 			}
 			// Verify that the node at position loc has the correct key. Due to
@@ -178,9 +184,6 @@ public class TableauNodePtrTable {
 	 * -1.
 	 */
 	public final int getLoc(long k, int tidx) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
 			int[] node = this.nodes[loc];
@@ -199,9 +202,6 @@ public class TableauNodePtrTable {
 
 	/* Return all nodes with key k. Return null if this does not contain k. */
 	public final int[] getNodes(long k) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
 			int[] node = this.nodes[loc];
@@ -217,9 +217,6 @@ public class TableauNodePtrTable {
 
 	/* Return k's location. Return -1 if this does not contain k. */
 	public final int getNodesLoc(long k) {
-		if (count >= thresh) {
-			this.grow();
-		}
 		int loc = ((int) k & 0x7FFFFFFF) % this.length;
 		while (true) {
 			int[] node = this.nodes[loc];
@@ -265,6 +262,11 @@ public class TableauNodePtrTable {
 			if (node == null) {
 				this.nodes[loc] = addKey(k);
 				this.count++;
+				if (this.count >= this.thresh) {
+					// Growing moves k to another location.
+					this.grow();
+					return this.getNodesLoc(k);
+				}
 				return loc;
 			}
 			if (getKey(node) == k) {
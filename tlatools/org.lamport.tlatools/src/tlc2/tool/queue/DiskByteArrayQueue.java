@@ -175,6 +175,14 @@ public class DiskByteArrayQueue extends ByteArrayQueue {
 	}
 
 	/* Checkpoint. */
+	
+	/*
+	 * See DiskStateQueue: beginChkpt only captures, commitChkpt writes.
+	 */
+	private long chkptLen;
+	private int chkptLoPool, chkptHiPool, chkptDeqIndex;
+	private byte[][] chkptEnqBuf, chkptDeqBuf;
+	
 	public final void beginChkpt() throws IOException {
 		synchronized (this.cleaner) {
 			// Checkpointing takes precedence over periodic cleaning
@@ -184,26 +192,42 @@ public class DiskByteArrayQueue extends ByteArrayQueue {
 			this.cleaner.notifyAll();
 		}
 		
-		String filename = this.filePrefix + "queue.tmp";
-	  	final BufferedDataOutputStream vos = new BufferedDataOutputStream(filename);
-		vos.writeLong(this.len);
-		vos.writeInt(this.loPool);
-		vos.writeInt(this.hiPool);
-		vos.writeInt(this.enqIndex);
-		vos.writeInt(this.deqIndex);
-		for (int i = 0; i < this.enqIndex; i++) {
-	  		vos.writeInt(this.enqBuf[i].length);
-	  		vos.write(this.enqBuf[i]);
-		}
-		for (int i = this.deqIndex; i < this.deqBuf.length; i++) {
-	  		vos.writeInt(this.deqBuf[i].length);
-	  		vos.write(this.deqBuf[i]);
-		}
-		vos.close();
+		this.chkptLen = this.len;
+		this.chkptLoPool = this.loPool;
+		this.chkptHiPool = this.hiPool;
+		this.chkptDeqIndex = this.deqIndex;
+		this.chkptEnqBuf = Arrays.copyOf(this.enqBuf, this.enqIndex);
+		this.chkptDeqBuf = Arrays.copyOfRange(this.deqBuf, this.deqIndex, this.deqBuf.length);
 		this.newLastLoPool = this.loPool - 1;
 	}
 
 	public final void commitChkpt() throws IOException {
+		// The pool files up to chkptHiPool have to be on disk.
+		try {
+			this.writer.ensureWritten();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		
+		String filename = this.filePrefix + "queue.tmp";
+	  	final BufferedDataOutputStream vos = new BufferedDataOutputStream(filename);
+		vos.writeLong(this.chkptLen);
+		vos.writeInt(this.chkptLoPool);
+		vos.writeInt(this.chkptHiPool);
+		vos.writeInt(this.chkptEnqBuf.length);
+		vos.writeInt(this.chkptDeqIndex);
+		for (int i = 0; i < this.chkptEnqBuf.length; i++) {
+	  		vos.writeInt(this.chkptEnqBuf[i].length);
+	  		vos.write(this.chkptEnqBuf[i]);
+		}
+		for (int i = 0; i < this.chkptDeqBuf.length; i++) {
+	  		vos.writeInt(this.chkptDeqBuf[i].length);
+	  		vos.write(this.chkptDeqBuf[i]);
+		}
+		vos.close();
+		this.chkptEnqBuf = null;
+		this.chkptDeqBuf = null;
+		
 		for (int i = this.lastLoPool; i < this.newLastLoPool; i++) {
 			String pstr = Integer.toString(i);
 			File oldPool = new File(this.filePrefix + pstr);
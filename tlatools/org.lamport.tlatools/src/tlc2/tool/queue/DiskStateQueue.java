@@ -8,6 +8,7 @@ package tlc2.tool.queue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
 
 import tlc2.output.EC;
 import tlc2.output.MP;
@@ -159,6 +160,18 @@ public class DiskStateQueue extends StateQueue {
 	}
 
 	/* Checkpoint. */
+	
+	/*
+	 * beginChkpt is called while all workers are suspended. It only captures the
+	 * position of the queue in its pool files and references to the states
+	 * buffered in memory. commitChkpt writes the captured states after the
+	 * workers have been resumed. Pool files are never copied, because they do not
+	 * change once written and the cleaner no longer deletes them.
+	 */
+	private long chkptLen;
+	private int chkptLoPool, chkptHiPool, chkptDeqIndex;
+	private TLCState[] chkptEnqBuf, chkptDeqBuf;
+	
 	public final void beginChkpt() throws IOException {
 		synchronized (this.cleaner) {
 			// Checkpointing takes precedence over periodic cleaning
@@ -168,24 +181,40 @@ public class DiskStateQueue extends StateQueue {
 			this.cleaner.notifyAll();
 		}
 		
+		this.chkptLen = this.len;
+		this.chkptLoPool = this.loPool;
+		this.chkptHiPool = this.hiPool;
+		this.chkptDeqIndex = this.deqIndex;
+		this.chkptEnqBuf = Arrays.copyOf(this.enqBuf, this.enqIndex);
+		this.chkptDeqBuf = Arrays.copyOfRange(this.deqBuf, this.deqIndex, this.deqBuf.length);
+		this.newLastLoPool = this.loPool - 1;
+	}
+
+	public final void commitChkpt() throws IOException {
+		// The pool files up to chkptHiPool have to be on disk.
+		try {
+			this.writer.ensureWritten();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		
 		String filename = this.filePrefix + "queue.tmp";
 		ValueOutputStream vos = new ValueOutputStream(filename);
-		vos.writeLongNat(this.len);
-		vos.writeInt(this.loPool);
-		vos.writeInt(this.hiPool);
-		vos.writeInt(this.enqIndex);
-		vos.writeInt(this.deqIndex);
-		for (int i = 0; i < this.enqIndex; i++) {
-			this.enqBuf[i].write(vos);
+		vos.writeLongNat(this.chkptLen);
+		vos.writeInt(this.chkptLoPool);
+		vos.writeInt(this.chkptHiPool);
+		vos.writeInt(this.chkptEnqBuf.length);
+		vos.writeInt(this.chkptDeqIndex);
+		for (int i = 0; i < this.chkptEnqBuf.length; i++) {
+			this.chkptEnqBuf[i].write(vos);
 		}
-		for (int i = this.deqIndex; i < this.deqBuf.length; i++) {
-			this.deqBuf[i].write(vos);
+		for (int i = 0; i < this.chkptDeqBuf.length; i++) {
+			this.chkptDeqBuf[i].write(vos);
 		}
 		vos.close();
-		this.newLastLoPool = this.loPool - 1;
-	}
-
-	public final void commitChkpt() throws IOException {
+		this.chkptEnqBuf = null;
+		this.chkptDeqBuf = null;
+		
 		for (int i = this.lastLoPool; i < this.newLastLoPool; i++) {
 			String pstr = Integer.toString(i);
 			File oldPool = new File(this.filePrefix + pstr);
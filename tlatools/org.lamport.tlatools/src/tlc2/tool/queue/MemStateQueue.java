@@ -51,6 +51,11 @@ public final class MemStateQueue extends StateQueue {
       this.start = 0;
     }
     int last = (this.start + (int) this.len) % this.states.length;
+    if (this.states == this.chkptStates && this.isChkptSlot(last)) {
+      // Copy-on-write: The slot still holds a state of the checkpoint.
+      this.states = this.states.clone();
+      this.clearChkptDequeued();
+    }
     this.states[last] = state;
   }
     
@@ -64,7 +69,12 @@ public final class MemStateQueue extends StateQueue {
 
   final TLCState dequeueInner() {
     TLCState res = this.states[this.start];
-    this.states[this.start] = null;
+    if (this.states == this.chkptStates) {
+      // Leave the slot to the checkpoint, commitChkpt clears it.
+      this.chkptDequeued++;
+    } else {
+      this.states[this.start] = null;
+    }
     this.start = (this.start + 1) % this.states.length;
     return res;
   }
@@ -77,19 +87,50 @@ public final class MemStateQueue extends StateQueue {
   }
 
   // Checkpoint.
+  // beginChkpt only remembers which slots of the array hold the states while
+  // workers are suspended, i.e. it does not copy them. Until commitChkpt has
+  // written the states after workers have been resumed, dequeue leaves the
+  // slots alone, and enqueue copies the array before it overwrites one of them.
+  private TLCState[] chkptStates;
+  private int chkptStart;
+  private int chkptLen;
+  private int chkptDequeued;
+
+  private final boolean isChkptSlot(final int idx) {
+    return Math.floorMod(idx - this.chkptStart, this.chkptStates.length) < this.chkptLen;
+  }
+
+  // Clears the slots of the states dequeued since beginChkpt.
+  private final void clearChkptDequeued() {
+    for (int i = 0; i < this.chkptDequeued; i++) {
+      this.states[(this.chkptStart + i) % this.states.length] = null;
+    }
+  }
+
   public final void beginChkpt() throws IOException {
+    synchronized (this) {
+      this.chkptStates = this.states;
+      this.chkptStart = this.start;
+      this.chkptLen = (int) this.len;
+      this.chkptDequeued = 0;
+    }
+  }
+
+  public final void commitChkpt() throws IOException {
     String filename = this.diskdir + FileUtil.separator + "queue.tmp";
     ValueOutputStream vos = new ValueOutputStream(filename);
-    vos.writeInt((int)this.len);
-    int index = this.start;
-    for (int i = 0; i < this.len; i++) {
-      this.states[index++].write(vos);
-      if (index == this.states.length) index = 0;
+    vos.writeInt(this.chkptLen);
+    for (int i = 0; i < this.chkptLen; i++) {
+      this.chkptStates[(this.chkptStart + i) % this.chkptStates.length].write(vos);
     }
     vos.close();
-  }
+    synchronized (this) {
+      if (this.states == this.chkptStates) {
+        this.clearChkptDequeued();
+      }
+      this.chkptStates = null;
+    }
 
-  public final void commitChkpt() throws IOException {
     String oldName = this.diskdir + FileUtil.separator + "queue.chkpt";
     File oldChkpt = new File(oldName);
     String newName = this.diskdir + FileUtil.separator + "queue.tmp";
@@ -0,0 +1,522 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Microsoft Research. All rights reserved. 
+ *
+ * The MIT License (MIT)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package tlc2.tool.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import tlc2.TLCGlobals;
+import tlc2.output.EC;
+import tlc2.output.MP;
+import tlc2.tool.StateVec;
+import tlc2.tool.TLCState;
+import tlc2.tool.Worker;
+import tlc2.util.IdThread;
+import tlc2.value.ValueInputStream;
+import tlc2.value.ValueOutputStream;
+import util.FileUtil;
+
+/**
+ * A memory-only {@link IStateQueue} with one FIFO deque per {@link Worker}.
+ * Workers enqueue successors into and dequeue from their own deque, which is
+ * only ever contended by thieves: A worker whose deque runs empty steals (up
+ * to) half of the oldest states of another deque in one go. Since every deque
+ * is FIFO and steals take the oldest states, the exploration order is
+ * approximately breadth-first. Threads other than workers (e.g. the main thread
+ * generating the initial states) distribute their states round-robin.
+ * <p>
+ * Blocking, termination detection and the checkpoint protocol of
+ * {@link #suspendAll()} and {@link #resumeAll()} are the ones of
+ * {@link StateQueue}, except that the monitor of the queue is only entered by
+ * workers that found no state to take.
+ */
+public final class WorkStealingStateQueue implements IStateQueue {
+
+	private static final int MAX_STEAL = 1024;
+
+	private final Deque[] deques;
+	private final AtomicInteger nextDeque = new AtomicInteger();
+	private final LongAdder len = new LongAdder();
+	private final String diskdir;
+
+	private volatile int numWaiting = 0; // the number of waiting threads, changed while holding this
+	private volatile boolean finish = false; // terminate
+	/**
+	 * Signals {@link Worker} that checkpointing is going happen next.
+	 */
+	private volatile boolean stop = false; // suspend all workers.
+	/**
+	 * Synchronizes between workers and checkpointing (see {@link StateQueue}).
+	 */
+	private final Object mu = new Object();
+
+	public WorkStealingStateQueue(final String metadir) {
+		this(metadir, TLCGlobals.getNumWorkers());
+	}
+
+	WorkStealingStateQueue(final String metadir, final int workers) {
+		this.diskdir = metadir;
+		this.deques = new Deque[Math.max(1, workers)];
+		for (int i = 0; i < deques.length; i++) {
+			this.deques[i] = new Deque();
+		}
+	}
+
+	/**
+	 * A ring buffer guarded by its own monitor.
+	 */
+	private static final class Deque {
+		private TLCState[] states = new TLCState[1024];
+		private int start = 0;
+		private int size = 0;
+
+		private void add(final TLCState state) {
+			if (size == states.length) {
+				final TLCState[] newStates = new TLCState[2 * states.length];
+				final int copyLen = states.length - start;
+				System.arraycopy(states, start, newStates, 0, copyLen);
+				System.arraycopy(states, 0, newStates, copyLen, start);
+				states = newStates;
+				start = 0;
+			}
+			states[(start + size++) % states.length] = state;
+		}
+
+		private TLCState poll() {
+			if (size == 0) {
+				return null;
+			}
+			final TLCState state = states[start];
+			states[start] = null;
+			start = (start + 1) % states.length;
+			size--;
+			return state;
+		}
+
+		private TLCState peek() {
+			return size == 0 ? null : states[start];
+		}
+
+		private TLCState get(final int i) {
+			return states[(start + i) % states.length];
+		}
+	}
+
+	/**
+	 * @return The deque of the calling worker or, for any other thread, the next
+	 *         deque in round-robin order.
+	 */
+	private int home() {
+		final int id = IdThread.GetId(-1);
+		if (id >= 0 && id < deques.length && Thread.currentThread() instanceof Worker) {
+			return id;
+		}
+		return Math.floorMod(nextDeque.getAndIncrement(), deques.length);
+	}
+
+	private void add(final int idx, final TLCState state) {
+		final Deque deque = deques[idx];
+		synchronized (deque) {
+			deque.add(state);
+		}
+	}
+
+	private void signal() {
+		// numWaiting is written before a waiting worker checks len, and len is
+		// written before it is read here. Thus, either the worker sees the new
+		// state or it is notified.
+		if (this.numWaiting > 0 && !this.stop) {
+			synchronized (this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes the oldest state of the given deque or, if the deque is empty, steals
+	 * from another one.
+	 */
+	private TLCState take(final int idx) {
+		final Deque own = deques[idx];
+		synchronized (own) {
+			final TLCState state = own.poll();
+			if (state != null) {
+				len.decrement();
+				return state;
+			}
+		}
+		return steal(own);
+	}
+
+	private TLCState steal(final Deque own) {
+		final int offset = ThreadLocalRandom.current().nextInt(deques.length);
+		for (int i = 0; i < deques.length; i++) {
+			final Deque victim = deques[(offset + i) % deques.length];
+			if (victim == own) {
+				continue;
+			}
+			final TLCState[] batch;
+			synchronized (victim) {
+				if (victim.size == 0) {
+					continue;
+				}
+				batch = new TLCState[Math.min(MAX_STEAL, (victim.size + 1) / 2)];
+				for (int j = 0; j < batch.length; j++) {
+					batch[j] = victim.poll();
+				}
+			}
+			// Keep the remainder of the batch in order (it is older than
+			// anything the thief enqueues later).
+			if (batch.length > 1) {
+				synchronized (own) {
+					for (int j = 1; j < batch.length; j++) {
+						own.add(batch[j]);
+					}
+				}
+			}
+			len.decrement();
+			return batch[0];
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#enqueue(tlc2.tool.TLCState)
+	 */
+	public void enqueue(final TLCState state) {
+		add(home(), state);
+		len.increment();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#dequeue()
+	 */
+	public TLCState dequeue() {
+		for (int i = 0; i < deques.length; i++) {
+			synchronized (deques[i]) {
+				final TLCState state = deques[i].poll();
+				if (state != null) {
+					len.decrement();
+					return state;
+				}
+			}
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sEnqueue(tlc2.tool.TLCState)
+	 */
+	public void sEnqueue(final TLCState state) {
+		enqueue(state);
+		signal();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sEnqueue(tlc2.tool.TLCState[])
+	 */
+	public void sEnqueue(final TLCState[] states) {
+		final Deque deque = deques[home()];
+		synchronized (deque) {
+			for (int i = 0; i < states.length; i++) {
+				deque.add(states[i]);
+			}
+		}
+		len.add(states.length);
+		signal();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sEnqueue(tlc2.tool.StateVec)
+	 */
+	public void sEnqueue(final StateVec stateVec) {
+		int cnt = 0;
+		final Deque deque = deques[home()];
+		synchronized (deque) {
+			for (int j = 0; j < stateVec.size(); j++) {
+				final TLCState state = stateVec.elementAt(j);
+				if (state != null) {
+					deque.add(state);
+					cnt++;
+				}
+			}
+		}
+		len.add(cnt);
+		signal();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sDequeue()
+	 */
+	public TLCState sDequeue() {
+		final int idx = home();
+		while (true) {
+			if (!this.stop && !this.finish) {
+				final TLCState state = take(idx);
+				if (state != null) {
+					return state;
+				}
+			}
+			if (!isAvail()) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Puts the caller to sleep until states are (likely) available, the
+	 * checkpoint is over, or all work is done (see StateQueue#isAvail).
+	 * 
+	 * @return false iff all work is done.
+	 */
+	private synchronized boolean isAvail() {
+		if (this.finish) {
+			return false;
+		}
+		this.numWaiting++;
+		if (!this.stop && !isEmpty()) {
+			// A state has been enqueued or is in the middle of being stolen.
+			this.numWaiting--;
+			return true;
+		}
+		// the last worker accessing notices that all other workers are
+		// waiting. This indicates that all work is done.
+		if (this.numWaiting >= TLCGlobals.getNumWorkers()) {
+			if (isEmpty()) {
+				this.numWaiting--;
+				return false;
+			}
+			synchronized (this.mu) {
+				this.mu.notify();
+			}
+		}
+		try {
+			this.wait();
+		} catch (Exception e) {
+			MP.printError(EC.GENERAL, "making a worker wait for a state from the queue", e);
+			System.exit(1);
+		}
+		this.numWaiting--;
+		return !this.finish;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sPeek()
+	 */
+	public TLCState sPeek() {
+		for (int i = 0; i < deques.length; i++) {
+			synchronized (deques[i]) {
+				final TLCState state = deques[i].peek();
+				if (state != null) {
+					return state;
+				}
+			}
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#sDequeue(int)
+	 */
+	public TLCState[] sDequeue(int cnt) {
+		assert cnt > 0 : "Nonpositive number of states requested.";
+		final TLCState first = sDequeue();
+		if (first == null) {
+			return null;
+		}
+		cnt = (int) Math.min(cnt, size() + 1);
+		final TLCState[] states = new TLCState[cnt];
+		states[0] = first;
+		int idx = 1;
+		for (TLCState state; idx < cnt && (state = dequeue()) != null; idx++) {
+			states[idx] = state;
+		}
+		if (idx == cnt) {
+			return states;
+		}
+		final TLCState[] res = new TLCState[idx];
+		System.arraycopy(states, 0, res, 0, idx);
+		return res;
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#finishAll()
+	 */
+	public synchronized void finishAll() {
+		this.finish = true;
+		this.notifyAll();
+		// see StateQueue#finishAll
+		synchronized (this.mu) {
+			this.mu.notify();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#suspendAll()
+	 */
+	public boolean suspendAll() {
+		boolean needWait = false;
+		synchronized (this) {
+			if (this.finish) {
+				return false;
+			}
+			this.stop = true;
+			needWait = needsWaiting();
+		}
+		// Wait for all worker threads to stop.
+		while (needWait) {
+			synchronized (this.mu) {
+				try {
+					// see StateQueue#suspendAll for the finishAll race.
+					if (this.finish) {
+						return false;
+					}
+					this.mu.wait();
+				} catch (Exception e) {
+					MP.printError(EC.GENERAL, "waiting for a worker to wake up", e);
+					System.exit(1);
+				}
+			}
+			synchronized (this) {
+				if (this.finish) {
+					return false;
+				}
+				needWait = needsWaiting();
+			}
+		}
+		return true;
+	}
+
+	private boolean needsWaiting() {
+		return this.numWaiting < TLCGlobals.getNumWorkers();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#resumeAll()
+	 */
+	public synchronized void resumeAll() {
+		this.stop = false;
+		this.notifyAll();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#resumeAllStuck()
+	 */
+	public void resumeAllStuck() {
+		if (stop) {
+			synchronized (mu) {
+				mu.notifyAll();
+			}
+		}
+		if (!stop && !isEmpty() && this.numWaiting > 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#size()
+	 */
+	public long size() {
+		return len.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#isEmpty()
+	 */
+	public boolean isEmpty() {
+		return size() < 1;
+	}
+
+	/*
+	 * Checkpoint (same format as MemStateQueue). beginChkpt only captures the
+	 * states while workers are suspended; commitChkpt writes them after workers
+	 * have been resumed.
+	 */
+	private TLCState[] chkptStates;
+	
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#beginChkpt()
+	 */
+	public void beginChkpt() throws IOException {
+		int cnt = 0;
+		for (Deque deque : deques) {
+			cnt += deque.size;
+		}
+		this.chkptStates = new TLCState[cnt];
+		int idx = 0;
+		for (Deque deque : deques) {
+			synchronized (deque) {
+				for (int i = 0; i < deque.size; i++) {
+					this.chkptStates[idx++] = deque.get(i);
+				}
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#commitChkpt()
+	 */
+	public void commitChkpt() throws IOException {
+		final String filename = this.diskdir + FileUtil.separator + "queue.tmp";
+		final ValueOutputStream vos = new ValueOutputStream(filename);
+		vos.writeInt(this.chkptStates.length);
+		for (int i = 0; i < this.chkptStates.length; i++) {
+			this.chkptStates[i].write(vos);
+		}
+		vos.close();
+		this.chkptStates = null;
+		
+		final File oldChkpt = new File(this.diskdir + FileUtil.separator + "queue.chkpt");
+		final File newChkpt = new File(this.diskdir + FileUtil.separator + "queue.tmp");
+		if ((oldChkpt.exists() && !oldChkpt.delete()) || !newChkpt.renameTo(oldChkpt)) {
+			throw new IOException("WorkStealingStateQueue.commitChkpt: cannot delete " + oldChkpt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#recover()
+	 */
+	public void recover() throws IOException {
+		final ValueInputStream vis = new ValueInputStream(this.diskdir + FileUtil.separator + "queue.chkpt");
+		final int cnt = vis.readInt();
+		for (int i = 0; i < cnt; i++) {
+			final TLCState state = TLCState.Empty.createEmpty();
+			state.read(vis);
+			add(i % deques.length, state);
+		}
+		len.add(cnt);
+		vis.close();
+	}
+
+	/* (non-Javadoc)
+	 * @see tlc2.tool.queue.IStateQueue#delete()
+	 */
+	public void delete() throws IOException {
+		// no-op
+	}
+}
@@ -17,6 +17,7 @@ package tlc2.util;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public class BitVector implements Serializable {
 
@@ -47,6 +48,11 @@ public class BitVector implements Serializable {
 		}
 	}
    
+  /** Initialize this bit vector with the given words (which are not copied). */
+  public BitVector(long[] word) {
+    this.word = word;
+  }
+
   /** Initialize this bit vector to be a copy of <code>bv</code>. */
   public BitVector(BitVector bv) {
     int len = bv.word.length;
@@ -208,6 +214,26 @@ public class BitVector implements Serializable {
     }
   }
 
+  /** Write the bit vector to a buffer in the format of write(BufferedRandomAccessFile). */
+  public void write(ByteBuffer buf) {
+    int len = this.word.length;
+    // see BufferedRandomAccessFile.writeNat
+    if (len <= 0x7fff) {
+      buf.putShort((short)len);
+    } else {
+      buf.putInt(-len);
+    }
+    for (int i = 0; i < len; i++) {
+      buf.putLong(this.word[i]);
+    }
+  }
+
+  /** Return the number of bytes written by write. */
+  public int writeLength() {
+    int len = this.word.length;
+    return (len <= 0x7fff ? 2 : 4) + len * 8;
+  }
+
   /** Read a bit vector from a file */
   public void read(BufferedRandomAccessFile raf) throws IOException {
     int len = raf.readNat();
@@ -7,8 +7,13 @@ import tla2sany.st.Location;
 import tlc2.TLCGlobals;
 import tlc2.diploma.TlaTypeToGoVisitor;
 import tlc2.diploma.TlaVariableTypeExtractor;
+import tlc2.diploma.dump.BinaryExecutionWriter;
+import tlc2.diploma.dump.BinaryRecordWriter;
+import tlc2.diploma.dump.ExecutionWriter;
 import tlc2.diploma.graph.ConcreteAction;
 import tlc2.diploma.graph.StateGraphPathExtractor;
+import tlc2.diploma.graph.algo.FlowPathExtractor;
+import tlc2.diploma.util.StripedLongIntMap;
 import tlc2.diploma.model.TlaRecordType;
 import tlc2.diploma.model.TlaType;
 import tlc2.module.Json;
@@ -19,6 +24,7 @@ import tlc2.tool.TLCState;
 import tlc2.tool.Worker;
 import tlc2.tool.impl.Tool;
 import tlc2.value.IValue;
+import tlc2.value.impl.ModelValue;
 import tlc2.value.impl.StringValue;
 import tlc2.value.impl.Value;
 import util.FileUtil;
@@ -31,6 +37,7 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -40,20 +47,48 @@ import java.util.stream.Stream;
 public class JsonStateWriter implements IStateWriter {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
     private static final String FILE_NAME_FORMAT = "%03d.json";
+    private static final String BINARY_FILE_NAME_FORMAT = "%03d.bin";
 
     private final Path dir;
     private final boolean generateGo;
+    private final boolean binary;
+    private final boolean compress;
+    private final String fileNameFormat;
     private final StateGraphPathExtractor stateGraphPathExtractor;
     private final JSONSparseArrayWriter[] stateWriters;
     private final JSONSparseArrayWriter[] actionWriters;
+    private final BinaryRecordWriter[] binaryStateWriters;
+    private final BinaryRecordWriter[] binaryActionWriters;
+    // null unless state values are written once to a dictionary and referenced by id
+    private final JSONSparseArrayWriter[] valueWriters;
+    private final StripedLongIntMap valueIds;
+    private final AtomicInteger valueCount;
     private final Map<Location, Integer> locToId;
 
 
+    // - networkDir: if not null, the state network used for path cover construction is kept
+    //   off-heap in memory-mapped files below it
+    // - incremental: a path cover is also maintained during exploration and exported if
+    //   exploration does not complete
+    // - binary: states, actions and executions are written as BinaryRecordWriter records
+    //   instead of JSON, gzip-compressed if compress is set; meta.json stays JSON
+    // - valueDictionary: every distinct state value (by fingerprint) is written once to
+    //   values/*.json and states map variables to value ids; only applies to JSON dumps
     @SuppressWarnings("resource")
-    public JsonStateWriter(String dir, boolean generateGo) throws IOException {
+    public JsonStateWriter(String dir, boolean generateGo, String networkDir, boolean incremental,
+                           boolean binary, boolean compress, boolean valueDictionary) throws IOException {
         this.dir = Path.of(dir);
         this.generateGo = generateGo;
-        this.stateGraphPathExtractor = new StateGraphPathExtractor();
+        this.binary = binary;
+        this.compress = binary && compress;
+        this.fileNameFormat = !binary ? FILE_NAME_FORMAT
+                : this.compress ? BINARY_FILE_NAME_FORMAT + ".gz" : BINARY_FILE_NAME_FORMAT;
+        this.stateGraphPathExtractor = networkDir == null
+                ? new StateGraphPathExtractor()
+                : new StateGraphPathExtractor(Path.of(networkDir));
+        if (incremental) {
+            this.stateGraphPathExtractor.enableIncrementalPathCover();
+        }
 
         int threads = TLCGlobals.getNumWorkers();
 
@@ -63,12 +98,33 @@ public class JsonStateWriter implements IStateWriter {
         Path actionDir = this.dir.resolve("actions");
         Files.createDirectories(stateDir);
         Files.createDirectories(actionDir);
-        this.stateWriters = new JSONSparseArrayWriter[threads];
-        this.actionWriters = new JSONSparseArrayWriter[threads];
+        this.stateWriters = binary ? null : new JSONSparseArrayWriter[threads];
+        this.actionWriters = binary ? null : new JSONSparseArrayWriter[threads];
+        this.binaryStateWriters = binary ? new BinaryRecordWriter[threads] : null;
+        this.binaryActionWriters = binary ? new BinaryRecordWriter[threads] : null;
         for (int i = 0; i < threads; i++) {
-            String fileName = String.format(FILE_NAME_FORMAT, i + 1);
-            this.stateWriters[i] = new JSONSparseArrayWriter(stateDir.resolve(fileName));
-            this.actionWriters[i] = new JSONSparseArrayWriter(actionDir.resolve(fileName));
+            String fileName = String.format(this.fileNameFormat, i + 1);
+            if (binary) {
+                this.binaryStateWriters[i] = new BinaryRecordWriter(stateDir.resolve(fileName), this.compress);
+                this.binaryActionWriters[i] = new BinaryRecordWriter(actionDir.resolve(fileName), this.compress);
+            } else {
+                this.stateWriters[i] = new JSONSparseArrayWriter(stateDir.resolve(fileName));
+                this.actionWriters[i] = new JSONSparseArrayWriter(actionDir.resolve(fileName));
+            }
+        }
+        if (valueDictionary && !binary) {
+            Path valueDir = this.dir.resolve("values");
+            Files.createDirectories(valueDir);
+            this.valueWriters = new JSONSparseArrayWriter[threads];
+            for (int i = 0; i < threads; i++) {
+                this.valueWriters[i] = new JSONSparseArrayWriter(valueDir.resolve(String.format(FILE_NAME_FORMAT, i + 1)));
+            }
+            this.valueIds = new StripedLongIntMap();
+            this.valueCount = new AtomicInteger();
+        } else {
+            this.valueWriters = null;
+            this.valueIds = null;
+            this.valueCount = null;
         }
         this.locToId = new HashMap<>();
     }
@@ -96,8 +152,32 @@ public class JsonStateWriter implements IStateWriter {
         return id;
     }
 
+    // the value is written to the dictionary of the thread that sees it first; the id is
+    // drawn under the stripe lock of the value's fingerprint, so ids are dense and
+    // valueCount is the number of entries in the dictionary
+    private int getValueId(int threadId, IValue value) {
+        long fp = value.fingerPrint(FP64.New());
+        return this.valueIds.getOrAssign(fp, () -> {
+            int id = this.valueCount.getAndIncrement();
+            this.valueWriters[threadId].write(jsonWriter -> {
+                jsonWriter.writeName(Integer.toString(id));
+                jsonWriter.writeColon();
+                jsonWriter.writeAny(serializeValue(value));
+            });
+            return id;
+        });
+    }
+
     public void writeJsonState(int index, TLCState state) {
         int threadId = getThreadId();
+        if (this.binary) {
+            try {
+                this.binaryStateWriters[threadId].writeState(index, state);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
         this.stateWriters[threadId].write(jsonWriter -> {
             jsonWriter.writeName(Integer.toString(index));
             jsonWriter.writeColon();
@@ -106,7 +186,11 @@ public class JsonStateWriter implements IStateWriter {
             for (Map.Entry<UniqueString, IValue> entry : stateVals.entrySet()) {
                 jsonWriter.writeName(entry.getKey().toString());
                 jsonWriter.writeColon();
-                jsonWriter.writeAny(serializeValue(entry.getValue()));
+                if (this.valueWriters != null) {
+                    jsonWriter.writeInt32(getValueId(threadId, entry.getValue()));
+                } else {
+                    jsonWriter.writeAny(serializeValue(entry.getValue()));
+                }
             }
             jsonWriter.endObject();
         });
@@ -115,6 +199,15 @@ public class JsonStateWriter implements IStateWriter {
     private void writeJsonAction(int index, TLCState from, TLCState to, Action action) {
         ConcreteAction concreteAction = ConcreteAction.from(from, to, action);
         int threadId = getThreadId();
+        if (this.binary) {
+            try {
+                this.binaryActionWriters[threadId].writeAction(index,
+                        this.locToId.get(concreteAction.getDeclaration()), concreteAction.getArgs());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
         this.actionWriters[threadId].write(jsonWriter -> {
             jsonWriter.writeName(Integer.toString(index));
             jsonWriter.writeColon();
@@ -197,7 +290,7 @@ public class JsonStateWriter implements IStateWriter {
             this.writeJsonState(id, successor);
         }
         if (state.fingerPrint() != successor.fingerPrint()) {
-            int id = this.stateGraphPathExtractor.addAction(state, successor);
+            int id = this.stateGraphPathExtractor.addAction(state, successor, successorStateIsNew);
             this.writeJsonAction(id, state, successor, action);
         }
     }
@@ -230,19 +323,33 @@ public class JsonStateWriter implements IStateWriter {
         int threads = TLCGlobals.getNumWorkers();
         try {
             for (int i = 0; i < threads; i++) {
-                this.stateWriters[i].close();
-                this.actionWriters[i].close();
+                if (this.binary) {
+                    this.binaryStateWriters[i].close();
+                    this.binaryActionWriters[i].close();
+                } else {
+                    this.stateWriters[i].close();
+                    this.actionWriters[i].close();
+                }
+                if (this.valueWriters != null) {
+                    this.valueWriters[i].close();
+                }
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
 
-        if (TLCGlobals.mainChecker.getStateQueueSize() != 0) {
+        FlowPathExtractor paths;
+        if (TLCGlobals.mainChecker.getStateQueueSize() == 0) {
+            paths = this.stateGraphPathExtractor.extractPaths();
+        } else if (this.stateGraphPathExtractor.hasIncrementalPathCover()) {
+            MP.printMessage(EC.GENERAL, "State space exploration has not been completed.");
+            paths = this.stateGraphPathExtractor.extractIncrementalPaths();
+        } else {
+            closeStateGraph();
             return;
         }
 
         Tool tool = (Tool) TLCGlobals.mainChecker.tool;
-        Iterable<List<StateGraphPathExtractor.Edge>> paths = this.stateGraphPathExtractor.extractPaths();
 
         MP.printMessage(EC.GENERAL, "Path cover JSON exporting started.");
 
@@ -251,58 +358,33 @@ public class JsonStateWriter implements IStateWriter {
             Files.deleteIfExists(metaFile);
         } catch (IOException ignored) { }
 
-        int pathCount = this.stateGraphPathExtractor.getPathCount();
-
-        // write executions
+        // write executions, one file per thread, all of them in parallel
         Path execDir = this.dir.resolve("executions");
+        Path[] execFiles = new Path[threads];
+        ExecutionWriter[] execWriters = new ExecutionWriter[threads];
+        int pathCount = 0;
         try {
             Files.createDirectories(execDir);
+            for (int i = 0; i < threads; i++) {
+                execFiles[i] = execDir.resolve(String.format(this.fileNameFormat, i + 1));
+                execWriters[i] = this.binary
+                        ? new BinaryExecutionWriter(execFiles[i], this.compress)
+                        : new JSONExecutionWriter(execFiles[i]);
+            }
+            paths.extractPaths(execWriters);
+            for (ExecutionWriter execWriter : execWriters) {
+                pathCount += execWriter.getPathCount();
+                execWriter.close();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
 
-        Iterator<List<StateGraphPathExtractor.Edge>> pathIterator = paths.iterator();
-        for (int i = 0, l = 0; i < threads; i++) {
-            int div = pathCount / threads, mod = pathCount % threads;
-            int r = l + div + (i < mod ? 1 : 0);
-
-            String execFileName = String.format(FILE_NAME_FORMAT, i + 1);
-            Path execFile = execDir.resolve(execFileName);
-
-            try (BufferedWriter writer = Files.newBufferedWriter(execFile);
-                 JSONWriter jsonWriter = JSONWriter.ofUTF8()) {
-                jsonWriter.startArray();
-                for (int j = l; j < r; j++) {
-                    if (j > l) {
-                        jsonWriter.writeComma();
-                    }
-                    List<StateGraphPathExtractor.Edge> path = pathIterator.next();
-                    jsonWriter.startArray();
-                    if (!path.isEmpty()) {
-                        jsonWriter.writeInt32(path.get(0).getFrom());
-                    }
-                    for (StateGraphPathExtractor.Edge edge : path) {
-                        jsonWriter.writeComma();
-                        jsonWriter.writeInt32(edge.getId());
-                        jsonWriter.writeComma();
-                        jsonWriter.writeInt32(edge.getTo());
-                    }
-                    jsonWriter.endArray();
-                    if ((j - l) % 1024 == 1023) {
-                        jsonWriter.flushTo(writer);
-                    }
-                }
-                jsonWriter.endArray();
-                jsonWriter.flushTo(writer);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-
+        for (Path execFile : execFiles) {
             long fileSize = execFile.toFile().length();
             MP.printMessage(EC.GENERAL, "  " + this.dir.relativize(execFile) + " (" + formatBytes(fileSize) + ")");
-
-            l = r;
         }
+        closeStateGraph();
 
         Vect<Object> constVect = tool.getModelConfig().getConstants();
         Object[] constArray = new Vect[constVect.size()];
@@ -337,8 +419,31 @@ public class JsonStateWriter implements IStateWriter {
             }
             jsonWriter.endObject();
 
+            jsonWriter.writeName("format");
+            jsonWriter.writeColon();
+            jsonWriter.writeString(this.binary ? "binary" : "json");
+
+            if (this.binary) {
+                jsonWriter.writeName("compressed");
+                jsonWriter.writeColon();
+                jsonWriter.writeBool(this.compress);
+
+                // order of the values in state records and of the model value indices
+                jsonWriter.writeName("state_variables");
+                jsonWriter.writeColon();
+                jsonWriter.writeAny(Arrays.stream(TLCState.Empty.getVars())
+                        .map(var -> var.getName().toString())
+                        .collect(Collectors.toList()));
+
+                jsonWriter.writeName("model_values");
+                jsonWriter.writeColon();
+                jsonWriter.writeAny(ModelValue.mvs == null ? List.of() : Arrays.stream(ModelValue.mvs)
+                        .map(mv -> mv.val.toString())
+                        .collect(Collectors.toList()));
+            }
+
             ImmutableList<String> fileNames = IntInterval.oneTo(threads)
-                    .collect(i -> String.format(FILE_NAME_FORMAT, i));
+                    .collect(i -> String.format(this.fileNameFormat, i));
 
             jsonWriter.writeName("state_count");
             jsonWriter.writeColon();
@@ -356,6 +461,16 @@ public class JsonStateWriter implements IStateWriter {
             jsonWriter.writeColon();
             jsonWriter.writeAny(fileNames.collect(f -> this.dir.relativize(this.dir.resolve("actions").resolve(f)).toString()));
 
+            if (this.valueWriters != null) {
+                jsonWriter.writeName("value_count");
+                jsonWriter.writeColon();
+                jsonWriter.writeInt32(this.valueCount.get());
+
+                jsonWriter.writeName("value_files");
+                jsonWriter.writeColon();
+                jsonWriter.writeAny(fileNames.collect(f -> this.dir.relativize(this.dir.resolve("values").resolve(f)).toString()));
+            }
+
             jsonWriter.writeName("execution_count");
             jsonWriter.writeColon();
             jsonWriter.writeInt32(pathCount);
@@ -430,6 +545,14 @@ public class JsonStateWriter implements IStateWriter {
         }
     }
 
+    private void closeStateGraph() {
+        try {
+            this.stateGraphPathExtractor.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public String getDumpFileName() {
         return null;
@@ -440,6 +563,71 @@ public class JsonStateWriter implements IStateWriter {
         // No operations
     }
 
+    private static class JSONExecutionWriter implements ExecutionWriter {
+        private static final int FLUSH_PERIOD = 1024;
+
+        private final BufferedWriter writer;
+        private final JSONWriter jsonWriter;
+        private int pathCount;
+        private int pathLength;
+        private int flushCounter;
+
+        public JSONExecutionWriter(Path path) throws IOException {
+            this.writer = Files.newBufferedWriter(path);
+            this.jsonWriter = JSONWriter.ofUTF8();
+            this.pathCount = 0;
+            this.flushCounter = 0;
+
+            this.jsonWriter.startArray();
+        }
+
+        @Override
+        public void startPath() {
+            if (pathCount > 0) {
+                jsonWriter.writeComma();
+            }
+            jsonWriter.startArray();
+            pathLength = 0;
+        }
+
+        @Override
+        public void addTransition(int transition, int from, int to) {
+            if (pathLength == 0) {
+                jsonWriter.writeInt32(from);
+            }
+            jsonWriter.writeComma();
+            jsonWriter.writeInt32(transition);
+            jsonWriter.writeComma();
+            jsonWriter.writeInt32(to);
+            pathLength++;
+
+            flushCounter++;
+            if (flushCounter >= FLUSH_PERIOD) {
+                flushCounter = 0;
+                jsonWriter.flushTo(writer);
+            }
+        }
+
+        @Override
+        public void endPath() {
+            jsonWriter.endArray();
+            pathCount++;
+        }
+
+        @Override
+        public int getPathCount() {
+            return pathCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.jsonWriter.endArray();
+            this.jsonWriter.flushTo(this.writer);
+            this.jsonWriter.close();
+            this.writer.close();
+        }
+    }
+
     private static class JSONSparseArrayWriter implements Closeable {
         private final BufferedWriter writer;
         private final JSONWriter jsonWriter;
@@ -16,8 +16,10 @@ public final class SetOfLong {
   private int thresh;
   private long table[];
   private boolean hasZero;
+  private final int initLength;
 
   public SetOfLong(int size) {
+    this.initLength = size;
     this.table = new long[size];
     this.count = 0;
     this.length = size;
@@ -29,7 +31,8 @@ public final class SetOfLong {
 
   private final void grow() {
     long[] old = table;
-    this.count = 0;
+    // Zero is not kept in the table, see put.
+    this.count = this.hasZero ? 1 : 0;
     this.length = 2 * this.length + 1;
     this.thresh = this.length / 2;
     this.table = new long[this.length];
@@ -82,6 +85,28 @@ public final class SetOfLong {
     }
   }
 
+  /*
+   * Remove all elements. If at most an eighth of the table is in use, the
+   * table shrinks (undoing grow) instead of being zeroed. Thus, the cost of
+   * clear is proportional to the number of elements, even if a set that once
+   * grew large is cleared over and over.
+   */
+  public final void clear() {
+    int len = this.length;
+    while (len > this.initLength && this.count < len / 8) {
+      len = (len - 1) / 2;
+    }
+    if (len < this.length) {
+      this.length = Math.max(len, this.initLength);
+      this.thresh = this.length / 2;
+      this.table = new long[this.length];
+    } else {
+      Arrays.fill(this.table, 0L);
+    }
+    this.count = 0;
+    this.hasZero = false;
+  }
+
   public final int size() { return this.count; }
 
   public final long sizeof() { return 20 + (8 * this.length); }
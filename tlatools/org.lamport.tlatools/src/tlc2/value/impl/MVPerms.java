@@ -67,4 +67,46 @@ public abstract class MVPerms {
     }
     return res;
   }
+
+  /**
+   * Returns the |S|*(|S|-1)/2 transpositions of each of the given symmetry sets
+   * S. They generate the same group as Permutations(S) but are built without
+   * enumerating its |S|! elements or computing the group.
+   * Note that searching a state's representative along the transpositions (see
+   * TLCState#minimizeByTranspositions) is not exact, i.e. it need not find the
+   * smallest state that the group would yield.
+   */
+  public static final IMVPerm[] transpositions(final Enumerable[] sets) {
+    final Set perms = new Set();
+    final Vect<IMVPerm> permVec = new Vect<>();
+    for (final Enumerable set : sets) {
+      final Vect<ModelValue> mvs = new Vect<>(set.size());
+      final ValueEnumeration Enum = set.elements(Enumerable.Ordering.NORMALIZED);
+      Value elem;
+      while ((elem = Enum.nextElement()) != null) {
+	if (!(elem instanceof ModelValue)) {
+	  Assert.fail("Symmetry function must have model values as domain and range.");
+	}
+	mvs.addElement((ModelValue)elem);
+      }
+      // Same order as the transpositions among the sorted Permutations(S): the
+      // ones that fix the smaller elements of S come first. The outcome of
+      // TLCState#minimizeByTranspositions depends on this order.
+      for (int i = mvs.size() - 2; i >= 0; i--) {
+	for (int j = i + 1; j < mvs.size(); j++) {
+	  final IMVPerm perm = new MVPerm();
+	  perm.put(mvs.elementAt(i), mvs.elementAt(j));
+	  perm.put(mvs.elementAt(j), mvs.elementAt(i));
+	  if (perm.size() == 2 && perms.put(perm) == null) {
+	    permVec.addElement(perm);
+	  }
+	}
+      }
+    }
+    final IMVPerm[] res = new IMVPerm[permVec.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = permVec.elementAt(i);
+    }
+    return res;
+  }
 }